@@ -140,6 +140,29 @@ public final class FingerprintMojo extends TreeMojo {
   @Parameter(defaultValue="${sa.plugin.name}", required=true, readonly=true)
   private String name;
 
+  /**
+   * Whether the analysis of unchanged dependency JARs is reused from previous
+   * builds.
+   */
+  @Parameter(property="sa.fingerprint.cache", defaultValue="true")
+  private boolean cache;
+
+  /**
+   * The directory of the fingerprint cache. If not specified, the cache is
+   * stored in {@code .cache/specialagent/fingerprint} of the local repository,
+   * so that it is shared between all modules and builds that share the local
+   * repository.
+   */
+  @Parameter(property="sa.fingerprint.cacheDir")
+  private File cacheDir;
+
+  private FingerprintCache getCache() {
+    if (!cache)
+      return null;
+
+    return new FingerprintCache(cacheDir != null ? cacheDir : new File(localRepository.getBasedir(), ".cache" + File.separator + "specialagent" + File.separator + "fingerprint"));
+  }
+
   private void setField(final Class<? super FingerprintMojo> cls, final String fieldName, final Object value) {
     try {
       final Field field = cls.getDeclaredField(fieldName);
@@ -186,7 +209,7 @@ public final class FingerprintMojo extends TreeMojo {
         final URLClassLoader root = new URLClassLoader(nonOptionalDeps, null);
         final URLClassLoader parent = new URLClassLoader(optionalDeps, root);
       ) {
-        final LibraryFingerprint fingerprint = new LibraryFingerprint(parent, compileDeps);
+        final LibraryFingerprint fingerprint = new LibraryFingerprint(parent, getCache(), compileDeps);
         fingerprint.toFile(destFile);
         if (getLog().isDebugEnabled())
           getLog().debug(fingerprint.toString());
@@ -33,6 +33,32 @@ class ClassFingerprint extends NamedFingerprint<ClassFingerprint> {
   private final MethodFingerprint[] methods;
   private final FieldFingerprint[] fields;
 
+  // The superclass and interface names are identified by their 64-bit
+  // signature hashes, rather than by IDs from a table of interned names. The
+  // fingerprints that are compared come from different sources (the
+  // fingerprint.bin of a rule, the fingerprint cache, and the scan of the
+  // runtime class path), so interned IDs would need a process-wide table that
+  // is synchronized, only grows, and cannot be persisted with a fingerprint.
+  // A hash is derived from the name alone, so it is the same for each source
+  // without a table. It is computed once per fingerprint, and compared as a
+  // long just like an ID. A matching hash is confirmed with equals(), so a
+  // collision cannot make incompatible fingerprints compatible.
+  //
+  // The caches are computed lazily, and compatible() is called concurrently
+  // (i.e. by class loading threads, and by the thread of the asynchronous
+  // link), so the caches are volatile, and each is assigned only once it is
+  // fully built. A cache that is computed by two threads at once is computed
+  // to the same value by each.
+  private transient volatile long superClassSignature;
+  private transient volatile long[] interfaceSignatures;
+  private transient volatile long[] constructorSignatures;
+  private transient volatile long[] methodSignatures;
+  private transient volatile long[] fieldSignatures;
+  private transient volatile SignatureSet interfaceSet;
+  private transient volatile SignatureSet constructorSet;
+  private transient volatile SignatureSet methodSet;
+  private transient volatile SignatureSet fieldSet;
+
   /**
    * Creates a new {@code ClassFingerprint} for the specified parameters.
    *
@@ -98,30 +124,100 @@ class ClassFingerprint extends NamedFingerprint<ClassFingerprint> {
     return this.methods;
   }
 
+  private long getSuperClassSignature() {
+    final long signature = superClassSignature;
+    return signature != 0 ? signature : (superClassSignature = SignatureSet.hash(superClass));
+  }
+
+  private long[] getInterfaceSignatures() {
+    final long[] signatures = interfaceSignatures;
+    return signatures != null ? signatures : (interfaceSignatures = SignatureSet.hashAll(interfaces));
+  }
+
+  private long[] getConstructorSignatures() {
+    long[] signatures = constructorSignatures;
+    if (signatures != null)
+      return signatures;
+
+    signatures = new long[constructors.length];
+    for (int i = 0; i < constructors.length; ++i)
+      signatures[i] = constructors[i].getSignature();
+
+    return constructorSignatures = signatures;
+  }
+
+  private long[] getMethodSignatures() {
+    long[] signatures = methodSignatures;
+    if (signatures != null)
+      return signatures;
+
+    signatures = new long[methods.length];
+    for (int i = 0; i < methods.length; ++i)
+      signatures[i] = methods[i].getSignature();
+
+    return methodSignatures = signatures;
+  }
+
+  private long[] getFieldSignatures() {
+    long[] signatures = fieldSignatures;
+    if (signatures != null)
+      return signatures;
+
+    signatures = new long[fields.length];
+    for (int i = 0; i < fields.length; ++i)
+      signatures[i] = fields[i].getSignature();
+
+    return fieldSignatures = signatures;
+  }
+
+  private SignatureSet getInterfaceSet() {
+    final SignatureSet set = interfaceSet;
+    return set != null ? set : (interfaceSet = new SignatureSet(interfaces, getInterfaceSignatures()));
+  }
+
+  private SignatureSet getConstructorSet() {
+    final SignatureSet set = constructorSet;
+    return set != null ? set : (constructorSet = new SignatureSet(constructors, getConstructorSignatures()));
+  }
+
+  private SignatureSet getMethodSet() {
+    final SignatureSet set = methodSet;
+    return set != null ? set : (methodSet = new SignatureSet(methods, getMethodSignatures()));
+  }
+
+  private SignatureSet getFieldSet() {
+    final SignatureSet set = fieldSet;
+    return set != null ? set : (fieldSet = new SignatureSet(fields, getFieldSignatures()));
+  }
+
   /**
    * Tests if the specified {@code ClassFingerprint} is compatible with this
    * fingerprint. A fingerprint {@code a} is considered to be compatible with
    * fingerprint {@code b} if {@code a} contains all, or a subset of, field,
    * method, and constructor fingerprints in the fingerprint of {@code b}.
+   * <p>
+   * The test is performed with the 64-bit signature hashes of the members of
+   * each fingerprint, which are computed once per fingerprint. Full comparison
+   * is only performed for members with matching hashes.
    *
    * @param o The fingerprint to check for compatibility with this fingerprint.
    * @return {@code true} if the specified {@code ClassFingerprint} is
    *         compatible with this fingerprint.
    */
   public boolean compatible(final ClassFingerprint o) {
-    if (superClass == null ? o.superClass != null : o.superClass != null && !superClass.equals(o.superClass))
+    if (superClass == null ? o.superClass != null : o.superClass != null && (getSuperClassSignature() != o.getSuperClassSignature() || !superClass.equals(o.superClass)))
       return false;
 
-    if (interfaces == null ? o.interfaces != null : o.interfaces != null && !AssembleUtil.containsAll(interfaces, o.interfaces))
+    if (interfaces == null ? o.interfaces != null : o.interfaces != null && !getInterfaceSet().containsAll(o.interfaces, o.getInterfaceSignatures()))
       return false;
 
-    if (constructors == null ? o.constructors != null : o.constructors != null && !AssembleUtil.containsAll(constructors, o.constructors))
+    if (constructors == null ? o.constructors != null : o.constructors != null && !getConstructorSet().containsAll(o.constructors, o.getConstructorSignatures()))
       return false;
 
-    if (methods == null ? o.methods != null : o.methods != null && !AssembleUtil.containsAll(methods, o.methods))
+    if (methods == null ? o.methods != null : o.methods != null && !getMethodSet().containsAll(o.methods, o.getMethodSignatures()))
       return false;
 
-    if (fields == null ? o.fields != null : o.fields != null && !AssembleUtil.containsAll(fields, o.fields))
+    if (fields == null ? o.fields != null : o.fields != null && !getFieldSet().containsAll(o.fields, o.getFieldSignatures()))
       return false;
 
     return true;
@@ -0,0 +1,229 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+/**
+ * A serializable recording of the {@link ClassVisitor} events of a class that
+ * are relevant to the {@link Fingerprinter}. A {@code ClassRecord} is replayed
+ * to a {@link ClassVisitor} in the same order as the events were produced by
+ * the {@link ClassReader}, thus allowing the result of the parsing of a class
+ * to be reused without reading its bytecode again.
+ *
+ * @author Seva Safris
+ */
+class ClassRecord implements Serializable {
+  private static final long serialVersionUID = -3185409146290734873L;
+
+  private static final int VISIT = 0;
+  private static final int INNER_CLASS = 1;
+  private static final int FIELD = 2;
+  private static final int ANNOTATION = 3;
+  private static final int TYPE_ANNOTATION = 4;
+  private static final int METHOD = 5;
+  private static final int METHOD_ANNOTATION = 6;
+  private static final int FIELD_INSN = 7;
+  private static final int METHOD_INSN = 8;
+  private static final int TYPE_INSN = 9;
+  private static final int LOCAL_VARIABLE = 10;
+  private static final int METHOD_END = 11;
+  private static final int END = 12;
+
+  /**
+   * Returns a new {@code ClassRecord} of the class bytecode in the specified
+   * {@code ClassReader}. If the parsing of the bytecode fails, the returned
+   * {@code ClassRecord} contains the events up to the point of failure, and
+   * the failure is rethrown upon {@link #accept(ClassVisitor)}.
+   *
+   * @param classReader The {@code ClassReader} of the class bytecode.
+   * @return A new {@code ClassRecord} of the class bytecode in the specified
+   *         {@code ClassReader}.
+   */
+  static ClassRecord record(final ClassReader classReader) {
+    final ClassRecord record = new ClassRecord();
+    try {
+      classReader.accept(record.new Recorder(), 0);
+    }
+    catch (final Exception e) {
+      record.error = e.getClass().getName() + (e.getMessage() != null ? ": " + e.getMessage() : "");
+    }
+
+    return record;
+  }
+
+  private final ArrayList<Object[]> events = new ArrayList<>();
+  private String error;
+
+  private ClassRecord() {
+  }
+
+  private void add(final Object ... event) {
+    events.add(event);
+  }
+
+  private static String[] copyOf(final String[] array) {
+    return array == null ? null : array.clone();
+  }
+
+  /**
+   * Replays the events of this {@code ClassRecord} to the specified
+   * {@code ClassVisitor}.
+   *
+   * @param visitor The {@code ClassVisitor}.
+   * @throws IllegalStateException If the parsing of the class bytecode had
+   *           failed when this {@code ClassRecord} was recorded.
+   */
+  void accept(final ClassVisitor visitor) {
+    MethodVisitor methodVisitor = null;
+    for (int i = 0, size = events.size(); i < size; ++i) {
+      final Object[] event = events.get(i);
+      final int type = (Integer)event[0];
+      if (type == VISIT) {
+        visitor.visit((Integer)event[1], (Integer)event[2], (String)event[3], (String)event[4], (String)event[5], copyOf((String[])event[6]));
+      }
+      else if (type == INNER_CLASS) {
+        visitor.visitInnerClass((String)event[1], (String)event[2], (String)event[3], (Integer)event[4]);
+      }
+      else if (type == FIELD) {
+        visitor.visitField((Integer)event[1], (String)event[2], (String)event[3], (String)event[4], event[5]);
+      }
+      else if (type == ANNOTATION) {
+        visitor.visitAnnotation((String)event[1], (Boolean)event[2]);
+      }
+      else if (type == TYPE_ANNOTATION) {
+        visitor.visitTypeAnnotation((Integer)event[1], event[2] == null ? null : TypePath.fromString((String)event[2]), (String)event[3], (Boolean)event[4]);
+      }
+      else if (type == METHOD) {
+        methodVisitor = visitor.visitMethod((Integer)event[1], (String)event[2], (String)event[3], (String)event[4], copyOf((String[])event[5]));
+      }
+      else if (type == END) {
+        visitor.visitEnd();
+      }
+      else if (methodVisitor != null) {
+        if (type == METHOD_ANNOTATION)
+          methodVisitor.visitAnnotation((String)event[1], (Boolean)event[2]);
+        else if (type == FIELD_INSN)
+          methodVisitor.visitFieldInsn((Integer)event[1], (String)event[2], (String)event[3], (String)event[4]);
+        else if (type == METHOD_INSN)
+          methodVisitor.visitMethodInsn((Integer)event[1], (String)event[2], (String)event[3], (String)event[4], (Boolean)event[5]);
+        else if (type == TYPE_INSN)
+          methodVisitor.visitTypeInsn((Integer)event[1], (String)event[2]);
+        else if (type == LOCAL_VARIABLE)
+          methodVisitor.visitLocalVariable((String)event[1], (String)event[2], (String)event[3], null, null, (Integer)event[4]);
+        else if (type == METHOD_END) {
+          methodVisitor.visitEnd();
+          methodVisitor = null;
+        }
+      }
+    }
+
+    if (error != null)
+      throw new IllegalStateException(error);
+  }
+
+  /**
+   * A {@link ClassVisitor} that records the events relevant to the
+   * {@link Fingerprinter} into this {@code ClassRecord}.
+   */
+  private final class Recorder extends ClassVisitor {
+    private final MethodVisitor methodRecorder = new MethodVisitor(api) {
+      @Override
+      public AnnotationVisitor visitAnnotation(final String desc, final boolean visible) {
+        add(METHOD_ANNOTATION, desc, visible);
+        return null;
+      }
+
+      @Override
+      public void visitFieldInsn(final int opcode, final String owner, final String name, final String desc) {
+        add(FIELD_INSN, opcode, owner, name, desc);
+      }
+
+      @Override
+      public void visitMethodInsn(final int opcode, final String owner, final String name, final String desc, final boolean itf) {
+        add(METHOD_INSN, opcode, owner, name, desc, itf);
+      }
+
+      @Override
+      public void visitTypeInsn(final int opcode, final String type) {
+        add(TYPE_INSN, opcode, type);
+      }
+
+      @Override
+      public void visitLocalVariable(final String name, final String desc, final String signature, final Label start, final Label end, final int index) {
+        add(LOCAL_VARIABLE, name, desc, signature, index);
+      }
+
+      @Override
+      public void visitEnd() {
+        add(METHOD_END);
+      }
+    };
+
+    private Recorder() {
+      super(Opcodes.ASM5);
+    }
+
+    @Override
+    public void visit(final int version, final int access, final String name, final String signature, final String superName, final String[] interfaces) {
+      add(VISIT, version, access, name, signature, superName, copyOf(interfaces));
+    }
+
+    @Override
+    public void visitInnerClass(final String name, final String outerName, final String innerName, final int access) {
+      add(INNER_CLASS, name, outerName, innerName, access);
+    }
+
+    @Override
+    public FieldVisitor visitField(final int access, final String name, final String desc, final String signature, final Object value) {
+      add(FIELD, access, name, desc, signature, value);
+      return null;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(final String desc, final boolean visible) {
+      add(ANNOTATION, desc, visible);
+      return null;
+    }
+
+    @Override
+    public AnnotationVisitor visitTypeAnnotation(final int typeRef, final TypePath typePath, final String desc, final boolean visible) {
+      add(TYPE_ANNOTATION, typeRef, typePath == null ? null : typePath.toString(), desc, visible);
+      return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(final int access, final String name, final String desc, final String signature, final String[] exceptions) {
+      add(METHOD, access, name, desc, signature, copyOf(exceptions));
+      return methodRecorder;
+    }
+
+    @Override
+    public void visitEnd() {
+      add(END);
+    }
+  }
+}
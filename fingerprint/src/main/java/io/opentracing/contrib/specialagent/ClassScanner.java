@@ -15,8 +15,8 @@
 
 package io.opentracing.contrib.specialagent;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
@@ -31,20 +31,27 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
+import io.opentracing.contrib.specialagent.ClassSource.ClassPath;
+
 class ClassScanner extends ClassVisitor {
   private static final Logger logger = Logger.getLogger(ClassScanner.class.getName());
 
-  static ClassFingerprint fingerprint(final ClassLoader classLoader, final String resourcePath, final Set<String> innerClassExcludes) throws IOException {
+  static ClassFingerprint fingerprint(final ClassPath classPath, final String resourcePath, final Set<String> innerClassExcludes) throws IOException {
+    return fingerprint(classPath, resourcePath, null, innerClassExcludes);
+  }
+
+  static ClassFingerprint fingerprint(final ClassPath classPath, final String resourcePath, final byte[] bytes, final Set<String> innerClassExcludes) throws IOException {
     final List<MethodFingerprint> methods = new ArrayList<>();
     final List<FieldFingerprint> fields = new ArrayList<>();
-    final ClassScanner scanner = scan(classLoader, resourcePath, methods, fields, innerClassExcludes);
+    final ClassScanner scanner = scan(classPath, resourcePath, bytes, methods, fields, innerClassExcludes);
     return scanner == null ? null : new ClassFingerprint(scanner.className, scanner.superClass, scanner.interfaces, scanner.constructors, methods, fields);
   }
 
-  private static ClassScanner scan(final ClassLoader classLoader, final String resourcePath, final List<MethodFingerprint> methods, final List<FieldFingerprint> fields, final Set<String> innerClassExcludes) throws IOException {
-    final ClassScanner inspector = new ClassScanner(classLoader, methods, fields, innerClassExcludes);
-    try (final InputStream in = classLoader.getResourceAsStream(resourcePath)) {
-      new ClassReader(in).accept(inspector, 0);
+  private static ClassScanner scan(final ClassPath classPath, final String resourcePath, final byte[] bytes, final List<MethodFingerprint> methods, final List<FieldFingerprint> fields, final Set<String> innerClassExcludes) throws IOException {
+    final ClassScanner inspector = new ClassScanner(classPath, methods, fields, innerClassExcludes);
+    try {
+      new ClassReader(bytes != null ? bytes : classPath.getBytes(resourcePath)).accept(inspector, 0);
+
       inspector.scanSupers();
       return inspector;
     }
@@ -52,19 +59,19 @@ class ClassScanner extends ClassVisitor {
       if (logger.isLoggable(Level.FINE))
         logger.log(Level.FINE, (e.getMessage() != null ? e.getMessage() + ": " : "") + resourcePath, e);
 
-      if (e instanceof IOException && !"Class not found".equals(e.getMessage()))
+      if (e instanceof IOException && !(e instanceof FileNotFoundException))
         throw e;
 
       return null;
     }
   }
 
-  private static void scanInterfaces(final String[] interfaces, final ClassLoader classLoader, final List<MethodFingerprint> methods, final List<FieldFingerprint> fields, final Set<String> innerClassExcludes) throws IOException {
+  private static void scanInterfaces(final String[] interfaces, final ClassPath classPath, final List<MethodFingerprint> methods, final List<FieldFingerprint> fields, final Set<String> innerClassExcludes) throws IOException {
     for (final String cls : interfaces) {
       if (!FingerprintUtil.isExcluded(cls)) {
-        final ClassScanner inspector = ClassScanner.scan(classLoader, cls.replace('.', '/').concat(".class"), methods, fields, innerClassExcludes);
+        final ClassScanner inspector = ClassScanner.scan(classPath, cls.replace('.', '/').concat(".class"), null, methods, fields, innerClassExcludes);
         if (inspector != null && inspector.interfaces != null)
-          scanInterfaces(inspector.interfaces, classLoader, methods, fields, innerClassExcludes);
+          scanInterfaces(inspector.interfaces, classPath, methods, fields, innerClassExcludes);
       }
     }
   }
@@ -76,12 +83,12 @@ class ClassScanner extends ClassVisitor {
   private String className;
   private String superClass;
   private String[] interfaces;
-  private final ClassLoader classLoader;
+  private final ClassPath classPath;
   private final Set<String> innerClassExcludes;
 
-  private ClassScanner(final ClassLoader classLoader, final List<MethodFingerprint> methods, final List<FieldFingerprint> fields, final Set<String> innerClassExcludes) {
+  private ClassScanner(final ClassPath classPath, final List<MethodFingerprint> methods, final List<FieldFingerprint> fields, final Set<String> innerClassExcludes) {
     super(Opcodes.ASM4);
-    this.classLoader = classLoader;
+    this.classPath = classPath;
     this.methods = methods;
     this.fields = fields;
     this.innerClassExcludes = innerClassExcludes;
@@ -90,12 +97,12 @@ class ClassScanner extends ClassVisitor {
   private void scanSupers() throws IOException {
     String superClass = this.superClass;
     while (superClass != null && !FingerprintUtil.isExcluded(superClass)) {
-      final ClassScanner next = ClassScanner.scan(classLoader, superClass.replace('.', '/').concat(".class"), methods, fields, innerClassExcludes);
+      final ClassScanner next = ClassScanner.scan(classPath, superClass.replace('.', '/').concat(".class"), null, methods, fields, innerClassExcludes);
       superClass = next == null ? null : next.superClass;
     }
 
     if (interfaces != null)
-      scanInterfaces(interfaces, classLoader, methods, fields, innerClassExcludes);
+      scanInterfaces(interfaces, classPath, methods, fields, innerClassExcludes);
   }
 
   @Override
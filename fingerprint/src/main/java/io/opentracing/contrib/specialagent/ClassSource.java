@@ -0,0 +1,387 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * A source of class bytecode in a JAR file or a directory, which is opened
+ * once, and is shared between the enumeration of the classes and the reading
+ * of their bytecode. JAR files are opened with random access via
+ * {@link JarFile}, so the bytecode of each class is read directly from its
+ * entry, instead of through a second lookup of the resource in a
+ * {@code ClassLoader}.
+ * <p>
+ * The {@link #getBytes(String)} method is thread-safe.
+ *
+ * @author Seva Safris
+ */
+abstract class ClassSource implements Closeable {
+  /**
+   * Returns a new {@code ClassSource} for the JAR file or directory at the
+   * specified {@code URL}.
+   *
+   * @param url The {@code URL} of the JAR file or directory.
+   * @return A new {@code ClassSource} for the JAR file or directory at the
+   *         specified {@code URL}.
+   * @throws IOException If an I/O error has occurred.
+   */
+  static ClassSource of(final URL url) throws IOException {
+    final File file;
+    try {
+      file = new File(url.toURI());
+    }
+    catch (final URISyntaxException e) {
+      throw new IllegalArgumentException(e);
+    }
+
+    return url.getPath().endsWith(".jar") ? new Jar(file) : new Dir(file);
+  }
+
+  private static boolean isClass(final String resourcePath) {
+    return resourcePath.endsWith(".class") && !resourcePath.startsWith("META-INF/") && !resourcePath.startsWith("module-info");
+  }
+
+  private static byte[] readFully(final InputStream in, final int size) throws IOException {
+    final byte[] bytes = new byte[size];
+    for (int off = 0, len; off < size; off += len)
+      if ((len = in.read(bytes, off, size - off)) == -1)
+        throw new EOFException();
+
+    return bytes;
+  }
+
+  private final File file;
+
+  private ClassSource(final File file) {
+    this.file = file;
+  }
+
+  /**
+   * Returns the JAR file or directory of this {@code ClassSource}.
+   *
+   * @return The JAR file or directory of this {@code ClassSource}.
+   */
+  final File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns whether this {@code ClassSource} is a JAR file.
+   *
+   * @return Whether this {@code ClassSource} is a JAR file.
+   */
+  abstract boolean isJar();
+
+  /**
+   * Returns the resource paths of the classes in this {@code ClassSource}.
+   * <p>
+   * <i><b>Note:</b> Classes under {@code /META-INF} or {@code /module-info} are
+   * not included</i>.
+   *
+   * @return The resource paths of the classes in this {@code ClassSource}.
+   * @throws IOException If an I/O error has occurred.
+   */
+  abstract List<String> getResourcePaths() throws IOException;
+
+  /**
+   * Returns whether the class at the specified resource path exists in this
+   * {@code ClassSource}.
+   *
+   * @param resourcePath The resource path of the class.
+   * @return Whether the class at the specified resource path exists in this
+   *         {@code ClassSource}.
+   */
+  abstract boolean contains(String resourcePath);
+
+  /**
+   * Returns the bytecode of the class at the specified resource path.
+   *
+   * @param resourcePath The resource path of the class.
+   * @return The bytecode of the class at the specified resource path.
+   * @throws FileNotFoundException If the class does not exist in this
+   *           {@code ClassSource}.
+   * @throws IOException If an I/O error has occurred.
+   */
+  abstract byte[] getBytes(String resourcePath) throws IOException;
+
+  /**
+   * The class path of a {@code ClassLoader}, from which the bytecode of a
+   * class is read by its resource path. A class is read from the parent of the
+   * {@code ClassLoader} first, as it would be loaded. Otherwise, for a
+   * {@code ClassPath} that is opened with {@link #open(URLClassLoader)}, the
+   * class is read from the first of the JARs and directories of the
+   * {@code URLClassLoader} that contains it, which are opened once as
+   * {@code ClassSource} objects. A {@code ClassPath} of any other
+   * {@code ClassLoader} reads all classes from the {@code ClassLoader}.
+   */
+  static final class ClassPath implements Closeable {
+    // Delegates to the bootstrap class loader only
+    private static final ClassLoader bootstrap = new URLClassLoader(new URL[0], null);
+
+    /**
+     * Returns a new {@code ClassPath} of the specified {@code URLClassLoader},
+     * of which each JAR file or directory is opened as a {@code ClassSource}.
+     *
+     * @param classLoader The {@code URLClassLoader}.
+     * @return A new {@code ClassPath} of the specified {@code URLClassLoader}.
+     * @throws IOException If an I/O error has occurred.
+     */
+    static ClassPath open(final URLClassLoader classLoader) throws IOException {
+      final URL[] urls = classLoader.getURLs();
+      final ClassPath classPath = new ClassPath(classLoader.getParent() != null ? classLoader.getParent() : bootstrap, new ClassSource[urls.length]);
+      try {
+        for (int i = 0; i < urls.length; ++i)
+          classPath.sources[i] = ClassSource.of(urls[i]);
+
+        return classPath;
+      }
+      catch (final IOException | RuntimeException e) {
+        classPath.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Returns a new {@code ClassPath} that reads all classes from the
+     * specified {@code ClassLoader}.
+     *
+     * @param classLoader The {@code ClassLoader}.
+     * @return A new {@code ClassPath} that reads all classes from the
+     *         specified {@code ClassLoader}.
+     */
+    static ClassPath of(final ClassLoader classLoader) {
+      return new ClassPath(classLoader, new ClassSource[0]);
+    }
+
+    private final ClassLoader parent;
+    private final ClassSource[] sources;
+
+    private ClassPath(final ClassLoader parent, final ClassSource[] sources) {
+      this.parent = parent;
+      this.sources = sources;
+    }
+
+    /**
+     * Returns the {@code ClassSource} objects of this {@code ClassPath}, in
+     * the order of the {@code URL} objects of the {@code URLClassLoader}.
+     *
+     * @return The {@code ClassSource} objects of this {@code ClassPath}.
+     */
+    List<ClassSource> getSources() {
+      return Arrays.asList(sources);
+    }
+
+    /**
+     * Returns the resource paths of the classes in the specified
+     * {@code ClassSource} of this {@code ClassPath}, except for the classes
+     * that are also in a preceding {@code ClassSource}, which the
+     * {@code URLClassLoader} would load from the preceding
+     * {@code ClassSource}.
+     *
+     * @param source The {@code ClassSource}.
+     * @return The resource paths of the classes in the specified
+     *         {@code ClassSource} that are not in a preceding
+     *         {@code ClassSource}.
+     * @throws IOException If an I/O error has occurred.
+     */
+    List<String> getResourcePaths(final ClassSource source) throws IOException {
+      final List<String> resourcePaths = source.getResourcePaths();
+      for (int i = 0; sources[i] != source; ++i)
+        for (int j = resourcePaths.size() - 1; j >= 0; --j)
+          if (sources[i].contains(resourcePaths.get(j)))
+            resourcePaths.remove(j);
+
+      return resourcePaths;
+    }
+
+    /**
+     * Returns the {@code ClassSource} from which the class at the specified
+     * resource path is read, or {@code null} if the class is read from the
+     * {@code ClassLoader} (or its parent), or does not exist.
+     *
+     * @param resourcePath The resource path of the class.
+     * @return The {@code ClassSource} from which the class at the specified
+     *         resource path is read, or {@code null} if the class is read from
+     *         the {@code ClassLoader}, or does not exist.
+     */
+    ClassSource getSource(final String resourcePath) {
+      return sources.length == 0 || parent.getResource(resourcePath) != null ? null : find(resourcePath);
+    }
+
+    private ClassSource find(final String resourcePath) {
+      for (final ClassSource source : sources)
+        if (source.contains(resourcePath))
+          return source;
+
+      return null;
+    }
+
+    /**
+     * Returns the bytecode of the class at the specified resource path.
+     *
+     * @param resourcePath The resource path of the class.
+     * @return The bytecode of the class at the specified resource path.
+     * @throws FileNotFoundException If the class does not exist in this
+     *           {@code ClassPath}.
+     * @throws IOException If an I/O error has occurred.
+     */
+    byte[] getBytes(final String resourcePath) throws IOException {
+      try (final InputStream in = parent.getResourceAsStream(resourcePath)) {
+        if (in != null)
+          return AssembleUtil.readBytes(in);
+      }
+
+      final ClassSource source = find(resourcePath);
+      if (source == null)
+        throw new FileNotFoundException(resourcePath);
+
+      return source.getBytes(resourcePath);
+    }
+
+    @Override
+    public void close() throws IOException {
+      IOException exception = null;
+      for (final ClassSource source : sources) {
+        try {
+          if (source != null)
+            source.close();
+        }
+        catch (final IOException e) {
+          if (exception == null)
+            exception = e;
+        }
+      }
+
+      if (exception != null)
+        throw exception;
+    }
+  }
+
+  private static final class Jar extends ClassSource {
+    private final JarFile jarFile;
+
+    private Jar(final File file) throws IOException {
+      super(file);
+      this.jarFile = new JarFile(file, false);
+    }
+
+    @Override
+    boolean isJar() {
+      return true;
+    }
+
+    @Override
+    List<String> getResourcePaths() {
+      final List<String> resourcePaths = new ArrayList<>();
+      final Enumeration<JarEntry> entries = jarFile.entries();
+      while (entries.hasMoreElements()) {
+        final String name = entries.nextElement().getName();
+        if (isClass(name))
+          resourcePaths.add(name);
+      }
+
+      return resourcePaths;
+    }
+
+    @Override
+    boolean contains(final String resourcePath) {
+      return jarFile.getJarEntry(resourcePath) != null;
+    }
+
+    @Override
+    byte[] getBytes(final String resourcePath) throws IOException {
+      final JarEntry entry = jarFile.getJarEntry(resourcePath);
+      if (entry == null)
+        throw new FileNotFoundException(getFile() + "!/" + resourcePath);
+
+      try (final InputStream in = jarFile.getInputStream(entry)) {
+        return entry.getSize() != -1 ? readFully(in, (int)entry.getSize()) : AssembleUtil.readBytes(in);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      jarFile.close();
+    }
+  }
+
+  private static final class Dir extends ClassSource {
+    private Dir(final File file) {
+      super(file);
+    }
+
+    @Override
+    boolean isJar() {
+      return false;
+    }
+
+    @Override
+    List<String> getResourcePaths() {
+      final List<String> resourcePaths = new ArrayList<>();
+      final Path path = getFile().toPath();
+      AssembleUtil.recurseDir(getFile(), new Predicate<File>() {
+        @Override
+        public boolean test(final File t) {
+          if (t.isDirectory())
+            return true;
+
+          final String name = path.relativize(t.toPath()).toString().replace(File.separatorChar, '/');
+          if (isClass(name))
+            resourcePaths.add(name);
+
+          return true;
+        }
+      });
+
+      return resourcePaths;
+    }
+
+    @Override
+    boolean contains(final String resourcePath) {
+      return new File(getFile(), resourcePath).isFile();
+    }
+
+    @Override
+    byte[] getBytes(final String resourcePath) throws IOException {
+      final File file = new File(getFile(), resourcePath);
+      if (!file.isFile())
+        throw new FileNotFoundException(file.getPath());
+
+      return Files.readAllBytes(file.toPath());
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
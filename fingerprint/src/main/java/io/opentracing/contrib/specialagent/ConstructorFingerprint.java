@@ -28,6 +28,8 @@ class ConstructorFingerprint extends Fingerprint implements Comparable<Construct
 
   private final String[] parameterTypes;
   private final String[] exceptionTypes;
+  // Computed lazily, and volatile so that a concurrent read is not torn
+  private transient volatile long signature;
 
   /**
    * Creates a new {@code ConstructorFingerprint} for the specified arrays of
@@ -57,6 +59,19 @@ class ConstructorFingerprint extends Fingerprint implements Comparable<Construct
     return this.exceptionTypes;
   }
 
+  /**
+   * Returns the 64-bit hash of the parameter and exception types of this
+   * fingerprint, which are the properties considered by
+   * {@link #compareTo(ConstructorFingerprint)}.
+   *
+   * @return The 64-bit hash of the parameter and exception types of this
+   *         fingerprint.
+   */
+  long getSignature() {
+    final long signature = this.signature;
+    return signature != 0 ? signature : (this.signature = SignatureSet.hash(parameterTypes, exceptionTypes));
+  }
+
   @Override
   public int compareTo(final ConstructorFingerprint o) {
     final int comparison = AssembleUtil.compare(parameterTypes, o.parameterTypes);
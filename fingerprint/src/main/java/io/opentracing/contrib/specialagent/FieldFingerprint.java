@@ -24,6 +24,8 @@ class FieldFingerprint extends NamedFingerprint<FieldFingerprint> {
   private static final long serialVersionUID = 3516568839736210165L;
 
   private final String type;
+  // Computed lazily, and volatile so that a concurrent read is not torn
+  private transient volatile long signature;
 
   /**
    * Creates a new {@code FieldFingerprint} for the specified name and type.
@@ -36,6 +38,17 @@ class FieldFingerprint extends NamedFingerprint<FieldFingerprint> {
     this.type = type;
   }
 
+  /**
+   * Returns the 64-bit hash of the name of this fingerprint, which is the
+   * property considered by {@link #compareTo(FieldFingerprint)}.
+   *
+   * @return The 64-bit hash of the name of this fingerprint.
+   */
+  long getSignature() {
+    final long signature = this.signature;
+    return signature != 0 ? signature : (this.signature = SignatureSet.hash(getName()));
+  }
+
   @Override
   public boolean equals(final Object obj) {
     if (obj == this)
@@ -45,7 +58,7 @@ class FieldFingerprint extends NamedFingerprint<FieldFingerprint> {
       return false;
 
     final FieldFingerprint that = (FieldFingerprint)obj;
-    return getName().equals(that.getName()) && type.equals(that.type);
+    return getName().equals(that.getName()) && (type != null ? type.equals(that.type) : that.type == null);
   }
 
   @Override
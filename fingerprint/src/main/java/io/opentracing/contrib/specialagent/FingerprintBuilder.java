@@ -17,11 +17,48 @@ package io.opentracing.contrib.specialagent;
 
 import java.io.IOException;
 import java.net.URLClassLoader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.opentracing.contrib.specialagent.ClassSource.ClassPath;
 
 class FingerprintBuilder {
   static boolean debugVisitor = false;
   static Phase debugLog = null;
 
+  /**
+   * The number of threads that record the classes of a class path in
+   * parallel, or {@code 1} to record the classes sequentially.
+   */
+  static int parallelism = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The maximum number of classes that are recorded ahead of the
+   * {@link Fingerprinter}, which bounds the number of {@link ClassRecord}
+   * objects that are held at once.
+   */
+  private static final int WINDOW = 1024;
+
+  private static final ThreadFactory threadFactory = new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread = new Thread(runnable, "fingerprint-" + count.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  };
+
   private static void debug(final LogSet logs) {
     if (debugLog != null)
       System.out.println(logs.toString(debugLog));
@@ -29,35 +66,120 @@ class FingerprintBuilder {
 
   static ClassFingerprint[] build(final ClassLoader classLoader, final int depth, final Phase phase, final Class<?> ... classes) throws IOException {
     final LogSet logs = new LogSet(debugVisitor);
-    final Fingerprinter fingerprinter = new Fingerprinter(classLoader, logs, debugVisitor);
-    for (final Class<?> cls : classes)
-      fingerprinter.fingerprint(Phase.LOAD, cls.getName().replace('.', '/').concat(".class"));
+    try (final ClassPath classPath = ClassPath.of(classLoader)) {
+      final Fingerprinter fingerprinter = new Fingerprinter(classPath, logs, debugVisitor);
+      for (final Class<?> cls : classes)
+        fingerprinter.fingerprint(Phase.LOAD, cls.getName().replace('.', '/').concat(".class"));
+
+      fingerprinter.compass(depth);
+    }
 
-    fingerprinter.compass(depth);
     debug(logs);
     return logs.collate(phase);
   }
 
   static ClassFingerprint[] build(final URLClassLoader classLoader, final int depth, final Phase phase) throws IOException {
+    return build(classLoader, null, depth, phase);
+  }
+
+  /**
+   * Builds the {@link ClassFingerprint} array of the classes in the specified
+   * {@code URLClassLoader}.
+   * <p>
+   * Each JAR or directory in the {@code URLClassLoader} is opened once as a
+   * {@link ClassSource}, from which the classes are enumerated. A class that
+   * is also in a preceding {@link ClassSource} is skipped, because the
+   * {@code URLClassLoader} loads the class from the first JAR or directory
+   * that contains it. The classes of all JARs and directories are read and
+   * parsed into {@link ClassRecord} objects by a single executor of
+   * {@link #parallelism} threads, no more than {@link #WINDOW} classes ahead
+   * of the single {@link Fingerprinter}, to which the records are replayed in
+   * the order of the classes in the class path. Since the {@link LogSet} is
+   * thereby updated in the same order as with a sequential scan, the result is
+   * identical to that of a sequential scan.
+   *
+   * @param classLoader The {@code URLClassLoader}.
+   * @param cache The {@link FingerprintCache} (can be null).
+   * @param depth The depth of the compass.
+   * @param phase The {@link Phase} by which to collate the logs.
+   * @return The {@link ClassFingerprint} array of the classes in the specified
+   *         {@code URLClassLoader}.
+   * @throws IOException If an I/O error has occurred.
+   */
+  static ClassFingerprint[] build(final URLClassLoader classLoader, final FingerprintCache cache, final int depth, final Phase phase) throws IOException {
     final LogSet logs = new LogSet(debugVisitor);
-    final Fingerprinter fingerprinter = new Fingerprinter(classLoader, logs, debugVisitor);
-    FingerprintUtil.forEachClass(classLoader, new BiConsumer<URLClassLoader,String>() {
-      @Override
-      public void accept(final URLClassLoader t, final String u) {
+    try (final ClassPath classPath = ClassPath.open(classLoader)) {
+      final Fingerprinter fingerprinter = new Fingerprinter(classPath, logs, cache, debugVisitor);
+      final List<ClassSource> sources = new ArrayList<>();
+      final List<String> resourcePaths = new ArrayList<>();
+      for (final ClassSource source : classPath.getSources()) {
+        for (final String resourcePath : classPath.getResourcePaths(source)) {
+          sources.add(source);
+          resourcePaths.add(resourcePath);
+        }
+      }
+
+      final int threads = Math.min(parallelism, resourcePaths.size());
+      if (debugVisitor || threads <= 1) {
+        for (int i = 0; i < resourcePaths.size(); ++i)
+          fingerprinter.fingerprint(Phase.LOAD, resourcePaths.get(i), fingerprinter.record(sources.get(i), resourcePaths.get(i)));
+      }
+      else {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory);
         try {
-          fingerprinter.fingerprint(Phase.LOAD, u);
+          final Queue<Future<ClassRecord>> records = new ArrayDeque<>();
+          for (int i = 0, submitted = 0; i < resourcePaths.size(); ++i) {
+            for (; submitted < resourcePaths.size() && submitted - i < WINDOW; ++submitted)
+              records.add(executor.submit(newRecorder(fingerprinter, sources.get(submitted), resourcePaths.get(submitted))));
+
+            fingerprinter.fingerprint(Phase.LOAD, resourcePaths.get(i), get(records.remove()));
+          }
         }
-        catch (final IOException e) {
-          throw new IllegalStateException(e);
+        finally {
+          executor.shutdownNow();
         }
       }
-    });
 
-    fingerprinter.compass(depth);
+      fingerprinter.compass(depth);
+    }
+
+    if (cache != null)
+      cache.flush();
+
     debug(logs);
     return logs.collate(phase);
   }
 
+  private static Callable<ClassRecord> newRecorder(final Fingerprinter fingerprinter, final ClassSource source, final String resourcePath) {
+    return new Callable<ClassRecord>() {
+      @Override
+      public ClassRecord call() {
+        return fingerprinter.record(source, resourcePath);
+      }
+    };
+  }
+
+  /**
+   * Returns the {@link ClassRecord} of the specified future, or {@code null}
+   * if its class could not be recorded. {@link Future#get()} establishes the
+   * happens-before relationship for the record.
+   */
+  private static ClassRecord get(final Future<ClassRecord> future) {
+    try {
+      return future.get();
+    }
+    catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+    catch (final ExecutionException e) {
+      if (e.getCause() instanceof Error)
+        throw (Error)e.getCause();
+
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
   private FingerprintBuilder() {
   }
 }
\ No newline at end of file
@@ -0,0 +1,209 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * A persistent cache of {@link ClassRecord} objects of classes in JAR files.
+ * The records of each JAR are stored in a separate file in the cache
+ * directory, the name of which is composed of the name of the JAR (i.e.
+ * {@code artifactId-version[-classifier].jar}) and the SHA-1 digest of its
+ * content, as well as the {@link #VERSION} of the cache format. Therefore, a
+ * JAR that has not changed since a previous build resolves to the same cache
+ * file, and its classes are not read or parsed again, while a changed JAR (or
+ * a change to the analysis of the classes) resolves to a new cache file. A
+ * cache file that cannot be read is discarded, and the classes of its JAR are
+ * read and parsed again.
+ * <p>
+ * Classes that are not in JAR files (i.e. classes in a project's output
+ * directory) are not cached.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Seva Safris
+ */
+class FingerprintCache {
+  private static final Logger logger = Logger.getLogger(FingerprintCache.class.getName());
+
+  /**
+   * The version of the cache format, which must be incremented with every
+   * change to {@link ClassRecord}, or to the events that {@link Fingerprinter}
+   * consumes from it, so that the cache files of a previous version are not
+   * replayed.
+   */
+  static final int VERSION = 1;
+
+  private static final class Entry {
+    private final File file;
+    private final HashMap<String,ClassRecord> records;
+    private boolean modified;
+
+    private Entry(final File file, final HashMap<String,ClassRecord> records) {
+      this.file = file;
+      this.records = records;
+    }
+
+    private synchronized ClassRecord get(final String resourcePath) {
+      return records.get(resourcePath);
+    }
+
+    private synchronized void put(final String resourcePath, final ClassRecord record) {
+      records.put(resourcePath, record);
+      modified = true;
+    }
+  }
+
+  private final Map<File,Entry> jarToEntry = new HashMap<>();
+  private final File dir;
+
+  /**
+   * Creates a new {@code FingerprintCache} in the specified directory.
+   *
+   * @param dir The directory in which the cache files are stored.
+   * @throws NullPointerException If {@code dir} is null.
+   */
+  FingerprintCache(final File dir) {
+    if (dir == null)
+      throw new NullPointerException("dir == null");
+
+    this.dir = dir;
+  }
+
+  /**
+   * Returns the {@link ClassRecord} of the class at the specified resource
+   * path in the specified JAR {@link ClassSource}.
+   *
+   * @param source The JAR {@link ClassSource}.
+   * @param resourcePath The resource path of the class.
+   * @return The {@link ClassRecord} of the class at the specified resource
+   *         path in the specified JAR {@link ClassSource}.
+   * @throws IllegalArgumentException If {@code source} is not a JAR.
+   * @throws IOException If an I/O error has occurred.
+   */
+  ClassRecord getRecord(final ClassSource source, final String resourcePath) throws IOException {
+    if (!source.isJar())
+      throw new IllegalArgumentException("Not a JAR: " + source.getFile());
+
+    final Entry entry = getEntry(source.getFile());
+    ClassRecord record = entry.get(resourcePath);
+    if (record == null)
+      entry.put(resourcePath, record = ClassRecord.record(new ClassReader(source.getBytes(resourcePath))));
+
+    return record;
+  }
+
+  @SuppressWarnings("unchecked")
+  private synchronized Entry getEntry(final File jarFile) throws IOException {
+    Entry entry = jarToEntry.get(jarFile);
+    if (entry != null)
+      return entry;
+
+    final File file = new File(dir, jarFile.getName() + "-" + digest(jarFile) + "-v" + VERSION + ".bin");
+    HashMap<String,ClassRecord> records = null;
+    if (file.exists()) {
+      try (final ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+        records = (HashMap<String,ClassRecord>)in.readObject();
+        for (final Map.Entry<String,ClassRecord> record : records.entrySet())
+          if (record.getKey() == null || !(record.getValue() instanceof ClassRecord))
+            throw new ClassCastException("Unexpected cache record: " + record.getKey());
+      }
+      catch (final ClassNotFoundException | IOException | RuntimeException e) {
+        // The cache is only an optimization, so a file that cannot be read is
+        // discarded, and is replaced upon the next flush
+        logger.log(Level.WARNING, "Discarding unreadable fingerprint cache file: " + file + ": " + e);
+        records = null;
+        file.delete();
+      }
+    }
+
+    jarToEntry.put(jarFile, entry = new Entry(file, records != null ? records : new HashMap<String,ClassRecord>()));
+    return entry;
+  }
+
+  /**
+   * Writes the records of the JARs that were modified since the last flush to
+   * the cache directory. Each cache file is written to a temporary file first,
+   * and is then moved into place, so that concurrent builds sharing the same
+   * cache directory never observe a partially written file. Since the cache is
+   * only an optimization, a failure to write a cache file is logged, and is
+   * otherwise ignored.
+   */
+  synchronized void flush() {
+    for (final Entry entry : jarToEntry.values()) {
+      if (!entry.modified)
+        continue;
+
+      File tmp = null;
+      try {
+        dir.mkdirs();
+        tmp = File.createTempFile(entry.file.getName(), ".tmp", dir);
+        try (final ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(tmp))) {
+          out.writeObject(entry.records);
+        }
+
+        Files.move(tmp.toPath(), entry.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        entry.modified = false;
+      }
+      catch (final IOException e) {
+        logger.log(Level.WARNING, "Unable to write fingerprint cache file: " + entry.file, e);
+      }
+      finally {
+        if (tmp != null)
+          tmp.delete();
+      }
+    }
+  }
+
+  private static String digest(final File file) throws IOException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    }
+    catch (final NoSuchAlgorithmException e) {
+      throw new UnsupportedOperationException(e);
+    }
+
+    try (final InputStream in = new FileInputStream(file)) {
+      final byte[] buffer = new byte[8192];
+      for (int len; (len = in.read(buffer)) != -1;)
+        digest.update(buffer, 0, len);
+    }
+
+    final byte[] bytes = digest.digest();
+    final StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (final byte b : bytes)
+      builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+
+    return builder.toString();
+  }
+}
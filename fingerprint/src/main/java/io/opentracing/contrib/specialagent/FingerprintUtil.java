@@ -15,16 +15,12 @@
 
 package io.opentracing.contrib.specialagent;
 
-import java.io.File;
 import java.io.IOException;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.nio.file.Path;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import org.objectweb.asm.Opcodes;
 
+import io.opentracing.contrib.specialagent.ClassSource.ClassPath;
+
 final class FingerprintUtil {
   private static final String[] excludePrefixes = {"io.opentracing.", "java.", "javax.crypto.", "javax.net.", "javax.security.", "javax.crypto.", "net.bytebuddy.", "org.ietf.jgss", "org.jcp.xml.dsig.internal.", "org.jvnet.staxex.", "org.w3c.dom.", "org.xml.sax.", "sun."};
 
@@ -68,37 +64,21 @@ final class FingerprintUtil {
     return (opcode & Opcodes.INVOKESPECIAL) != 0;
   }
 
-  static void forEachClass(final URLClassLoader classLoader, final BiConsumer<URLClassLoader,String> consumer) throws IOException {
-    for (final URL url : classLoader.getURLs()) {
-      if (url.getPath().endsWith(".jar")) {
-        try (final ZipInputStream in = new ZipInputStream(url.openStream())) {
-          for (ZipEntry entry; (entry = in.getNextEntry()) != null;) {
-            final String name = entry.getName();
-            if (name.endsWith(".class") && !name.startsWith("META-INF/") && !name.startsWith("module-info")) {
-              consumer.accept(classLoader, name);
-            }
-          }
-        }
-      }
-      else {
-        final File file = new File(url.getPath());
-        final Path path = file.toPath();
-        AssembleUtil.recurseDir(file, new Predicate<File>() {
-          @Override
-          public boolean test(final File t) {
-            if (t.isDirectory())
-              return true;
-
-            final String name = path.relativize(t.toPath()).toString();
-            if (name.endsWith(".class") && !name.startsWith("META-INF/") && !name.startsWith("module-info")) {
-              consumer.accept(classLoader, name);
-            }
-
-            return true;
-          }
-        });
-      }
-    }
+  /**
+   * Calls the specified consumer with the {@link ClassSource} and resource
+   * path of each class in the JARs and directories of the specified
+   * {@link ClassPath}. A class that is also in a preceding JAR or directory is
+   * skipped, because the {@code URLClassLoader} loads the class from the first
+   * JAR or directory that contains it.
+   *
+   * @param classPath The {@link ClassPath}.
+   * @param consumer The consumer.
+   * @throws IOException If an I/O error has occurred.
+   */
+  static void forEachClass(final ClassPath classPath, final BiConsumer<ClassSource,String> consumer) throws IOException {
+    for (final ClassSource source : classPath.getSources())
+      for (final String resourcePath : classPath.getResourcePaths(source))
+        consumer.accept(source, resourcePath);
   }
 
   private FingerprintUtil() {
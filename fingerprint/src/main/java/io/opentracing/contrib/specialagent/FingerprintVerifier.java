@@ -26,6 +26,8 @@ import java.util.logging.Logger;
 
 import org.objectweb.asm.ClassVisitor;
 
+import io.opentracing.contrib.specialagent.ClassSource.ClassPath;
+
 /**
  * An ASM {@link ClassVisitor} that verifies {@link Fingerprint} objects for
  * classes in a {@code ClassLoader}.
@@ -60,19 +62,22 @@ class FingerprintVerifier {
    * @throws IOException If an I/O error has occurred.
    */
   ClassFingerprint[] fingerprint(final URLClassLoader classLoader) throws IOException {
-    FingerprintUtil.forEachClass(classLoader, new BiConsumer<URLClassLoader,String>() {
-      @Override
-      public void accept(final URLClassLoader t, final String u) {
-        try {
-          final ClassFingerprint classFingerprint = fingerprint(classLoader, u);
-          if (classFingerprint != null)
-            classNameToFingerprint.put(classFingerprint.getName(), classFingerprint);
-        }
-        catch (final IOException e) {
-          throw new IllegalStateException(e);
+    try (final ClassPath classPath = ClassPath.open(classLoader)) {
+      FingerprintUtil.forEachClass(classPath, new BiConsumer<ClassSource,String>() {
+        @Override
+        public void accept(final ClassSource t, final String u) {
+          try {
+            final ClassFingerprint classFingerprint = ClassScanner.fingerprint(classPath, u, t.getBytes(u), innerClassExcludes);
+            if (classFingerprint != null)
+              classNameToFingerprint.put(classFingerprint.getName(), classFingerprint);
+          }
+          catch (final IOException e) {
+            throw new IllegalStateException(e);
+          }
         }
-      }
-    });
+      });
+    }
+
     classNameToFingerprint.keySet().removeAll(innerClassExcludes);
     return AssembleUtil.sort(classNameToFingerprint.values().toArray(new ClassFingerprint[classNameToFingerprint.size()]));
   }
@@ -92,6 +97,8 @@ class FingerprintVerifier {
     if (logger.isLoggable(Level.FINEST))
       logger.finest(AssembleUtil.getNameId(this) + "#fingerprint(" + AssembleUtil.getNameId(classLoader) + ", \"" + resourcePath + "\")");
 
-    return ClassScanner.fingerprint(classLoader, resourcePath, innerClassExcludes);
+    try (final ClassPath classPath = ClassPath.of(classLoader)) {
+      return ClassScanner.fingerprint(classPath, resourcePath, innerClassExcludes);
+    }
   }
 }
\ No newline at end of file
@@ -15,8 +15,8 @@
 
 package io.opentracing.contrib.specialagent;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -37,22 +37,33 @@ import org.objectweb.asm.TypePath;
 import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureVisitor;
 
+import io.opentracing.contrib.specialagent.ClassSource.ClassPath;
+
 class Fingerprinter extends ClassVisitor {
   private static final Logger logger = Logger.getLogger(Fingerprinter.class.getName());
   private static final Pattern synthetic = Pattern.compile("access\\$\\d+");
 
   private final Set<String> innerClassExcludes = new HashSet<>();
-  private final ClassLoader classLoader;
+  private final ClassPath classPath;
   private final LogSet logs;
+  private final FingerprintCache cache;
+  private final boolean debug;
   private final SignatureVisitor signatureVisitor;
 
   private String superClass;
   private String[] interfaces;
 
-  Fingerprinter(final ClassLoader classLoader, final LogSet logs, final boolean debug) {
+  Fingerprinter(final ClassPath classPath, final LogSet logs, final boolean debug) {
+    this(classPath, logs, null, debug);
+  }
+
+  Fingerprinter(final ClassPath classPath, final LogSet logs, final FingerprintCache cache, final boolean debug) {
     super(Opcodes.ASM5, debug ? new LoggingClassVisitor(Opcodes.ASM5) : null);
-    this.classLoader = classLoader;
+    this.classPath = classPath;
     this.logs = logs;
+    // The debug visitors log all events, but a ClassRecord only replays the events relevant to the fingerprint
+    this.cache = debug ? null : cache;
+    this.debug = debug;
     this.signatureVisitor = debug ? new LoggingSignatureVisitor(api) {
       @Override
       public void visitClassType(final String name) {
@@ -66,17 +77,54 @@ class Fingerprinter extends ClassVisitor {
     };
   }
 
+  /**
+   * Returns the {@link ClassRecord} of the class at the specified resource
+   * path in the specified {@link ClassSource}, or {@code null} if the class
+   * cannot be recorded. This method does not modify the state of this
+   * {@code Fingerprinter}, and can therefore be called concurrently.
+   *
+   * @param source The {@link ClassSource}.
+   * @param resourcePath The resource path of the class.
+   * @return The {@link ClassRecord} of the class at the specified resource
+   *         path, or {@code null} if the class cannot be recorded.
+   */
+  ClassRecord record(final ClassSource source, final String resourcePath) {
+    if (debug)
+      return null;
+
+    try {
+      return cache != null && source.isJar() ? cache.getRecord(source, resourcePath) : ClassRecord.record(new ClassReader(source.getBytes(resourcePath)));
+    }
+    catch (final Exception e) {
+      // The failure is reproduced when the class is fingerprinted without a record
+      return null;
+    }
+  }
+
   void fingerprint(final Phase phase, final String resourcePath) throws IOException {
+    fingerprint(phase, resourcePath, null);
+  }
+
+  void fingerprint(final Phase phase, final String resourcePath, ClassRecord record) throws IOException {
     this.phase = phase;
     this.filtering = false;
-    try (final InputStream in = classLoader.getResourceAsStream(resourcePath)) {
-      new ClassReader(in).accept(this, 0);
+    try {
+      if (record == null && cache != null) {
+        final ClassSource source = classPath.getSource(resourcePath);
+        if (source != null && source.isJar())
+          record = cache.getRecord(source, resourcePath);
+      }
+
+      if (record != null)
+        record.accept(this);
+      else
+        new ClassReader(classPath.getBytes(resourcePath)).accept(this, 0);
     }
     catch (final Exception e) {
       if (logger.isLoggable(Level.FINE))
         logger.log(Level.FINE, (e.getMessage() != null ? e.getMessage() + ": " : "") + resourcePath, e);
 
-      if (e instanceof IOException && !"Class not found".equals(e.getMessage()))
+      if (e instanceof IOException && !(e instanceof FileNotFoundException))
         throw e;
     }
   }
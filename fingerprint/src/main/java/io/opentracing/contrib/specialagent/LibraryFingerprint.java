@@ -73,11 +73,29 @@ class LibraryFingerprint extends Fingerprint {
    * @throws IOException If an I/O error has occurred.
    */
   LibraryFingerprint(final ClassLoader parent, final URL ... scanUrls) throws IOException {
+    this(parent, null, scanUrls);
+  }
+
+  /**
+   * Creates a new {@code LibraryFingerprint} with the specified {@code URL}
+   * objects referencing JAR files, reusing the analysis of unchanged JAR files
+   * from the specified {@link FingerprintCache}.
+   *
+   * @param parent The parent {@code ClassLoader} to use for resolution of
+   *          classes that should not be part of the fingerprint.
+   * @param cache The {@link FingerprintCache} (can be null).
+   * @param scanUrls The {@code URL} objects referencing JAR files.
+   * @throws NullPointerException If {@code manifest} or {@code urls} is null.
+   * @throws IllegalArgumentException If the number of members in {@code urls}
+   *           is zero.
+   * @throws IOException If an I/O error has occurred.
+   */
+  LibraryFingerprint(final ClassLoader parent, final FingerprintCache cache, final URL ... scanUrls) throws IOException {
     if (scanUrls.length == 0)
       throw new IllegalArgumentException("Number of scan URLs must be greater than 0");
 
     try (final URLClassLoader classLoader = new URLClassLoader(scanUrls, parent)) {
-      this.classes = FingerprintBuilder.build(classLoader, 0, Phase.LOAD);
+      this.classes = FingerprintBuilder.build(classLoader, cache, 0, Phase.LOAD);
     }
   }
 
@@ -28,6 +28,8 @@ class MethodFingerprint extends NamedFingerprint<MethodFingerprint> {
   private final String returnType;
   private final String[] parameterTypes;
   private final String[] exceptionTypes;
+  // Computed lazily, and volatile so that a concurrent read is not torn
+  private transient volatile long signature;
 
   /**
    * Creates a new {@code MethodFingerprint} for the specified {@code Method}.
@@ -67,6 +69,19 @@ class MethodFingerprint extends NamedFingerprint<MethodFingerprint> {
     return this.exceptionTypes;
   }
 
+  /**
+   * Returns the 64-bit hash of the name and parameter types of this
+   * fingerprint, which are the properties considered by
+   * {@link #compareTo(MethodFingerprint)}.
+   *
+   * @return The 64-bit hash of the name and parameter types of this
+   *         fingerprint.
+   */
+  long getSignature() {
+    final long signature = this.signature;
+    return signature != 0 ? signature : (this.signature = SignatureSet.hash(getName(), parameterTypes));
+  }
+
   @Override
   public int compareTo(final MethodFingerprint o) {
     int comparison = super.compareTo(o);
@@ -0,0 +1,185 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+/**
+ * An open-addressing hash set of members (i.e. constructor, method and field
+ * fingerprints, or type names), keyed by the precomputed 64-bit signature hash
+ * of each member. A matching hash is confirmed with
+ * {@link Comparable#compareTo(Object)}, so a collision of two different
+ * members with the same hash is resolved by falling back to full comparison.
+ *
+ * @author Seva Safris
+ */
+class SignatureSet {
+  private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long PRIME = 0x100000001b3L;
+
+  /**
+   * Returns the 64-bit FNV-1a hash of the specified string, combined with the
+   * specified hash.
+   *
+   * @param hash The hash to combine.
+   * @param string The string to hash (can be null).
+   * @return The 64-bit FNV-1a hash of the specified string, combined with the
+   *         specified hash.
+   */
+  static long hash(long hash, final String string) {
+    if (string == null)
+      return (hash ^ 0xff) * PRIME;
+
+    for (int i = 0; i < string.length(); ++i)
+      hash = (hash ^ string.charAt(i)) * PRIME;
+
+    // Terminate the string, so that ["ab", "c"] and ["a", "bc"] differ
+    return (hash ^ 0xfe) * PRIME;
+  }
+
+  /**
+   * Returns the 64-bit FNV-1a hash of the specified strings, combined with the
+   * specified hash.
+   *
+   * @param hash The hash to combine.
+   * @param strings The strings to hash (can be null).
+   * @return The 64-bit FNV-1a hash of the specified strings, combined with the
+   *         specified hash.
+   */
+  static long hash(long hash, final String[] strings) {
+    if (strings == null)
+      return (hash ^ 0xfd) * PRIME;
+
+    for (int i = 0; i < strings.length; ++i)
+      hash = hash(hash, strings[i]);
+
+    return (hash ^ 0xfc) * PRIME;
+  }
+
+  /**
+   * Returns the 64-bit signature hash of the specified name.
+   *
+   * @param name The name.
+   * @return The 64-bit signature hash of the specified name.
+   */
+  static long hash(final String name) {
+    return hash(OFFSET_BASIS, name);
+  }
+
+  /**
+   * Returns the 64-bit signature hash of the specified name and strings.
+   *
+   * @param name The name.
+   * @param strings The strings (can be null).
+   * @return The 64-bit signature hash of the specified name and strings.
+   */
+  static long hash(final String name, final String[] strings) {
+    return hash(hash(OFFSET_BASIS, name), strings);
+  }
+
+  /**
+   * Returns the 64-bit signature hash of the specified strings.
+   *
+   * @param strings The first strings (can be null).
+   * @param more The second strings (can be null).
+   * @return The 64-bit signature hash of the specified strings.
+   */
+  static long hash(final String[] strings, final String[] more) {
+    return hash(hash(OFFSET_BASIS, strings), more);
+  }
+
+  /**
+   * Returns an array of the signature hashes of the specified names.
+   *
+   * @param names The names.
+   * @return An array of the signature hashes of the specified names.
+   */
+  static long[] hashAll(final String[] names) {
+    final long[] hashes = new long[names.length];
+    for (int i = 0; i < names.length; ++i)
+      hashes[i] = hash(names[i]);
+
+    return hashes;
+  }
+
+  private final Comparable<?>[] members;
+  private final long[] hashes;
+  private final int[] slots;
+  private final int mask;
+
+  /**
+   * Creates a new {@code SignatureSet} of the specified members.
+   *
+   * @param members The members.
+   * @param hashes The signature hashes of the members, with each index
+   *          corresponding to the same index in {@code members}.
+   * @throws IllegalArgumentException If the length of {@code members} and
+   *           {@code hashes} are not equal.
+   */
+  SignatureSet(final Comparable<?>[] members, final long[] hashes) {
+    if (members.length != hashes.length)
+      throw new IllegalArgumentException("members.length (" + members.length + ") != hashes.length (" + hashes.length + ")");
+
+    this.members = members;
+    this.hashes = hashes;
+
+    // Keep the load factor under 0.5
+    int capacity = 2;
+    while (capacity < members.length * 2)
+      capacity <<= 1;
+
+    this.mask = capacity - 1;
+    this.slots = new int[capacity];
+    for (int i = 0; i < members.length; ++i) {
+      int slot = (int)(hashes[i] ^ (hashes[i] >>> 32)) & mask;
+      while (slots[slot] != 0)
+        slot = (slot + 1) & mask;
+
+      // Store index + 1, because 0 denotes an empty slot
+      slots[slot] = i + 1;
+    }
+  }
+
+  /**
+   * Tests whether this set contains the specified member.
+   *
+   * @param member The member.
+   * @param hash The signature hash of the member.
+   * @return {@code true} if this set contains the specified member.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  boolean contains(final Comparable<?> member, final long hash) {
+    for (int slot = (int)(hash ^ (hash >>> 32)) & mask, index; (index = slots[slot]) != 0; slot = (slot + 1) & mask)
+      if (hashes[--index] == hash && ((Comparable)members[index]).compareTo(member) == 0)
+        return true;
+
+    return false;
+  }
+
+  /**
+   * Tests whether this set contains all of the specified members.
+   *
+   * @param members The members.
+   * @param hashes The signature hashes of the members, with each index
+   *          corresponding to the same index in {@code members}.
+   * @return {@code true} if this set contains all of the specified members.
+   */
+  boolean containsAll(final Comparable<?>[] members, final long[] hashes) {
+    for (int i = 0; i < members.length; ++i)
+      if (!contains(members[i], hashes[i]))
+        return false;
+
+    return true;
+  }
+}
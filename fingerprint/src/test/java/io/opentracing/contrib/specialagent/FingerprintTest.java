@@ -17,13 +17,21 @@ package io.opentracing.contrib.specialagent;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 import java.util.logging.Logger;
 
 import org.junit.Ignore;
 import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
 
 public class FingerprintTest {
   private static final Logger logger = Logger.getLogger(FingerprintTest.class.getName());
@@ -36,6 +44,176 @@ public class FingerprintTest {
     System.out.println(AssembleUtil.toIndentedString(classFingerprints));
   }
 
+  @Test
+  public void testCompatible() {
+    final MethodFingerprint get = new MethodFingerprint("get", "java.lang.Object", new String[] {"int"}, null);
+    final MethodFingerprint set = new MethodFingerprint("set", null, new String[] {"int", "java.lang.Object"}, null);
+    final MethodFingerprint size = new MethodFingerprint("size", "int", null, null);
+    final ConstructorFingerprint constructor = new ConstructorFingerprint(new String[] {"int"}, null);
+    final FieldFingerprint field = new FieldFingerprint("modCount", "int");
+
+    final ClassFingerprint runtime = new ClassFingerprint("a.List", "a.AbstractList", new String[] {"a.Collection", "a.RandomAccess"}, Arrays.asList(constructor), Arrays.asList(get, set, size), Arrays.asList(field));
+    final ClassFingerprint subset = new ClassFingerprint("a.List", "a.AbstractList", new String[] {"a.RandomAccess"}, Arrays.asList(constructor), Arrays.asList(size, get), null);
+    assertTrue(runtime.compatible(subset));
+    assertTrue(runtime.compatible(runtime));
+    assertFalse(subset.compatible(runtime));
+
+    final ClassFingerprint superClass = new ClassFingerprint("a.List", "a.AbstractCollection", null, null, null, null);
+    assertFalse(runtime.compatible(superClass));
+
+    final ClassFingerprint interfaces = new ClassFingerprint("a.List", "a.AbstractList", new String[] {"a.Serializable"}, null, null, null);
+    assertFalse(runtime.compatible(interfaces));
+
+    final MethodFingerprint getLong = new MethodFingerprint("get", "java.lang.Object", new String[] {"long"}, null);
+    final ClassFingerprint method = new ClassFingerprint("a.List", "a.AbstractList", null, null, Arrays.asList(getLong), null);
+    assertFalse(runtime.compatible(method));
+
+    final ConstructorFingerprint defaultConstructor = new ConstructorFingerprint(null, null);
+    final ClassFingerprint constructors = new ClassFingerprint("a.List", "a.AbstractList", null, Arrays.asList(defaultConstructor), null, null);
+    assertFalse(runtime.compatible(constructors));
+
+    final ClassFingerprint fields = new ClassFingerprint("a.List", "a.AbstractList", null, null, null, Arrays.asList(new FieldFingerprint("size", "int")));
+    assertFalse(runtime.compatible(fields));
+  }
+
+  private static URL getJarURL(final String resourcePath) throws IOException {
+    final Enumeration<URL> urls = Thread.currentThread().getContextClassLoader().getResources(resourcePath);
+    while (urls.hasMoreElements()) {
+      final URL url = urls.nextElement();
+      if ("jar".equals(url.getProtocol()))
+        return new URL("file", "", url.getPath().substring(5, url.getPath().indexOf('!')));
+    }
+
+    fail("Could not find JAR resource");
+    return null;
+  }
+
+  @Test
+  public void testCache() throws IOException {
+    final URL jarURL = getJarURL("javax/el/ELClass.class");
+    final File dir = Files.createTempDirectory("fingerprint").toFile();
+    try {
+      final LibraryFingerprint expected = new LibraryFingerprint(ClassLoader.getSystemClassLoader(), jarURL);
+
+      final LibraryFingerprint recorded = new LibraryFingerprint(ClassLoader.getSystemClassLoader(), new FingerprintCache(dir), jarURL);
+      assertEquals(1, dir.listFiles().length);
+      assertEquals(expected, recorded);
+      assertEquals(expected.toString(), recorded.toString());
+
+      final long lastModified = dir.listFiles()[0].lastModified();
+      final LibraryFingerprint replayed = new LibraryFingerprint(ClassLoader.getSystemClassLoader(), new FingerprintCache(dir), jarURL);
+      assertEquals(lastModified, dir.listFiles()[0].lastModified());
+      assertEquals(expected, replayed);
+      assertEquals(expected.toString(), replayed.toString());
+    }
+    finally {
+      for (final File file : dir.listFiles())
+        file.delete();
+
+      dir.delete();
+    }
+  }
+
+  @Test
+  public void testCacheUnreadable() throws IOException {
+    final URL jarURL = getJarURL("javax/el/ELClass.class");
+    final File dir = Files.createTempDirectory("fingerprint").toFile();
+    try {
+      final LibraryFingerprint expected = new LibraryFingerprint(ClassLoader.getSystemClassLoader(), new FingerprintCache(dir), jarURL);
+      final File file = dir.listFiles()[0];
+      assertTrue(file.getName(), file.getName().endsWith("-v" + FingerprintCache.VERSION + ".bin"));
+
+      // A corrupt cache file is discarded, and is written again
+      Files.write(file.toPath(), new byte[] {1, 2, 3});
+      final LibraryFingerprint recorded = new LibraryFingerprint(ClassLoader.getSystemClassLoader(), new FingerprintCache(dir), jarURL);
+      assertEquals(expected, recorded);
+      assertTrue(file.length() > 3);
+
+      final LibraryFingerprint replayed = new LibraryFingerprint(ClassLoader.getSystemClassLoader(), new FingerprintCache(dir), jarURL);
+      assertEquals(expected, replayed);
+    }
+    finally {
+      for (final File file : dir.listFiles())
+        file.delete();
+
+      dir.delete();
+    }
+  }
+
+  private static File newJar(final File dir, final String name, final String className, final String methodName) throws IOException {
+    final ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, className.replace('.', '/'), null, "java/lang/Object", null);
+    classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, methodName, "()V", null, null).visitEnd();
+    classWriter.visitEnd();
+
+    final File file = new File(dir, name);
+    try (final JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+      out.putNextEntry(new JarEntry(className.replace('.', '/').concat(".class")));
+      out.write(classWriter.toByteArray());
+      out.closeEntry();
+    }
+
+    return file;
+  }
+
+  @Test
+  public void testDuplicateClass() throws IOException {
+    final File dir = Files.createTempDirectory("fingerprint").toFile();
+    try {
+      final File first = newJar(dir, "first.jar", "dup.Dup", "first");
+      final File second = newJar(dir, "second.jar", "dup.Dup", "second");
+      final File other = newJar(dir, "other.jar", "dup.Other", "other");
+
+      // The class is fingerprinted from the first JAR that contains it, as it
+      // would be loaded by the URLClassLoader
+      final LibraryFingerprint fingerprint = new LibraryFingerprint(null, first.toURI().toURL(), second.toURI().toURL(), other.toURI().toURL());
+      final ClassFingerprint[] classes = fingerprint.getClasses();
+      assertEquals(2, classes.length);
+      assertEquals("dup.Dup", classes[0].getName());
+      assertEquals(1, classes[0].getMethods().length);
+      assertEquals("first", classes[0].getMethods()[0].getName());
+      assertEquals("dup.Other", classes[1].getName());
+
+      final LibraryFingerprint swapped = new LibraryFingerprint(null, second.toURI().toURL(), first.toURI().toURL());
+      assertEquals("second", swapped.getClasses()[0].getMethods()[0].getName());
+    }
+    finally {
+      for (final File file : dir.listFiles())
+        file.delete();
+
+      dir.delete();
+    }
+  }
+
+  private static byte[] toBytes(final LibraryFingerprint fingerprint, final File file) throws IOException {
+    fingerprint.toFile(file);
+    return Files.readAllBytes(file.toPath());
+  }
+
+  @Test
+  public void testParallel() throws IOException {
+    // JARs of different sizes, the classes of which are recorded together
+    final URL[] scanUrls = {getJarURL("javax/el/ELClass.class"), getJarURL("org/hamcrest/Matcher.class"), getJarURL("org/junit/Test.class"), getJarURL("org/objectweb/asm/ClassWriter.class")};
+    final int parallelism = FingerprintBuilder.parallelism;
+    final File file = File.createTempFile("fingerprint", ".bin");
+    try {
+      FingerprintBuilder.parallelism = 1;
+      final LibraryFingerprint sequential = new LibraryFingerprint(null, scanUrls);
+
+      // More threads than the build would use by default, so that the
+      // records are replayed out of the order in which they are recorded
+      FingerprintBuilder.parallelism = 8;
+      final LibraryFingerprint parallel = new LibraryFingerprint(null, scanUrls);
+
+      assertEquals(sequential, parallel);
+      assertArrayEquals(toBytes(sequential, file), toBytes(parallel, file));
+    }
+    finally {
+      FingerprintBuilder.parallelism = parallelism;
+      file.delete();
+    }
+  }
+
   @Test
   @Ignore
   public void test1() throws IOException {
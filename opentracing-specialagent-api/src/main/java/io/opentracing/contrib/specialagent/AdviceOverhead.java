@@ -0,0 +1,372 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.jar.asm.AnnotationVisitor;
+import net.bytebuddy.jar.asm.ClassReader;
+import net.bytebuddy.jar.asm.ClassVisitor;
+import net.bytebuddy.jar.asm.ClassWriter;
+import net.bytebuddy.jar.asm.MethodVisitor;
+import net.bytebuddy.jar.asm.Opcodes;
+import net.bytebuddy.jar.asm.Type;
+import net.bytebuddy.utility.OpenedClassReader;
+
+/**
+ * Accounting of the time spent in the {@link Advice.OnMethodEnter} and
+ * {@link Advice.OnMethodExit} methods of each rule, as enabled with the
+ * {@code sa.instrumentation.plugins.overhead} system property.
+ * <p>
+ * If enabled, the bytecode of the advice methods of each rule is rewritten
+ * (by {@link #instrument(byte[],String)}) before it is inlined into the
+ * instrumented methods, such that each advice method reads
+ * {@link System#nanoTime()} into a local variable upon entry, and calls
+ * {@link #record(int,long)} before each return. The elapsed time and the count
+ * of invocations are added to counters of the rule that are striped by thread,
+ * so that concurrent invocations on different threads do not contend on the
+ * same counter. The elapsed time is also added to a histogram of power-of-two
+ * buckets, from which the percentiles are approximated.
+ * <p>
+ * If an advice method completes abruptly (i.e. by throwing an exception), its
+ * invocation is not recorded. If not enabled, the bytecode of the advice
+ * methods is not rewritten, and this class incurs no cost at all.
+ *
+ * @author Seva Safris
+ */
+public final class AdviceOverhead {
+  static final String PROPERTY = "sa.instrumentation.plugins.overhead";
+  static final boolean enabled = Boolean.getBoolean(PROPERTY);
+
+  private static final String ADVICE_OVERHEAD = Type.getInternalName(AdviceOverhead.class);
+  private static final String ON_METHOD_ENTER = Type.getDescriptor(Advice.OnMethodEnter.class);
+  private static final String ON_METHOD_EXIT = Type.getDescriptor(Advice.OnMethodExit.class);
+
+  private static final int BUCKETS = 40;
+  private static final int COUNT = 0;
+  private static final int TOTAL = 1;
+  private static final int BUCKET = 2;
+  // Each stripe is padded to a multiple of 8 longs (64 bytes)
+  private static final int WIDTH = (BUCKET + BUCKETS + 7) & ~7;
+  private static final int STRIPES;
+
+  static {
+    int stripes = 1;
+    for (final int processors = Runtime.getRuntime().availableProcessors(); stripes < processors && stripes < 16;)
+      stripes <<= 1;
+
+    STRIPES = stripes;
+  }
+
+  private static final Map<String,Integer> ruleClassNameToId = new HashMap<>();
+
+  /**
+   * Snapshot of the counters of the registered rules, indexed by id. The array
+   * is never modified after it is published, and is replaced as a whole
+   * (copy-on-write) when a rule is registered.
+   */
+  private static volatile Counters[] counters = {};
+
+  /**
+   * Counters of invocations, elapsed time, and histogram of elapsed time of
+   * the advice methods of one rule, striped by thread.
+   */
+  private static final class Counters {
+    private final String ruleClassName;
+    private final AtomicLongArray stripes = new AtomicLongArray(STRIPES * WIDTH);
+
+    private Counters(final String ruleClassName) {
+      this.ruleClassName = ruleClassName;
+    }
+
+    private void record(final long nanos) {
+      final int offset = (int)(Thread.currentThread().getId() & (STRIPES - 1)) * WIDTH;
+      stripes.incrementAndGet(offset + COUNT);
+      stripes.addAndGet(offset + TOTAL, nanos);
+      stripes.incrementAndGet(offset + BUCKET + Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1));
+    }
+
+    private Snapshot snapshot() {
+      long count = 0;
+      long total = 0;
+      final long[] buckets = new long[BUCKETS];
+      for (int offset = 0; offset < stripes.length(); offset += WIDTH) {
+        count += stripes.get(offset + COUNT);
+        total += stripes.get(offset + TOTAL);
+        for (int i = 0; i < BUCKETS; ++i)
+          buckets[i] += stripes.get(offset + BUCKET + i);
+      }
+
+      return new Snapshot(ruleClassName, count, total, buckets);
+    }
+
+    private void reset() {
+      for (int i = 0; i < stripes.length(); ++i)
+        stripes.set(i, 0);
+    }
+  }
+
+  /**
+   * A point-in-time view of the counters of one rule. Since the stripes are
+   * read one by one without synchronization, the values of a snapshot that is
+   * taken concurrently with invocations of advice methods may be off by the
+   * invocations that are in flight.
+   */
+  static final class Snapshot {
+    private final String ruleClassName;
+    private final long count;
+    private final long totalNanos;
+    private final long[] buckets;
+
+    private Snapshot(final String ruleClassName, final long count, final long totalNanos, final long[] buckets) {
+      this.ruleClassName = ruleClassName;
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.buckets = buckets;
+    }
+
+    /**
+     * @return The name of the rule class.
+     */
+    String getRuleClassName() {
+      return this.ruleClassName;
+    }
+
+    /**
+     * @return The count of invocations of the advice methods of the rule.
+     */
+    long getCount() {
+      return this.count;
+    }
+
+    /**
+     * @return The total time spent in the advice methods of the rule, in
+     *         nanoseconds.
+     */
+    long getTotalNanos() {
+      return this.totalNanos;
+    }
+
+    /**
+     * @return The mean time spent in an invocation of an advice method of the
+     *         rule, in nanoseconds.
+     */
+    long getMeanNanos() {
+      return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * Returns the upper bound of the time spent in the specified percentile of
+     * invocations of the advice methods of the rule, in nanoseconds. Since the
+     * histogram buckets are powers of two, the returned value is at most twice
+     * the actual percentile.
+     *
+     * @param percentile The percentile, between {@code 0} and {@code 100}.
+     * @return The upper bound of the time spent in the specified percentile of
+     *         invocations, in nanoseconds.
+     * @throws IllegalArgumentException If the percentile is not between
+     *           {@code 0} and {@code 100}.
+     */
+    long getPercentileNanos(final double percentile) {
+      if (percentile < 0 || percentile > 100)
+        throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+
+      if (count == 0)
+        return 0;
+
+      final long rank = Math.max(1, (long)Math.ceil(count * percentile / 100));
+      long cumulative = 0;
+      for (int i = 0; i < BUCKETS; ++i)
+        if ((cumulative += buckets[i]) >= rank)
+          return i == 0 ? 0 : (1L << i) - 1;
+
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+      return ruleClassName + ": count=" + count + ", mean=" + getMeanNanos() + "ns, p50<=" + getPercentileNanos(50) + "ns, p99<=" + getPercentileNanos(99) + "ns, total=" + (totalNanos / 1000000) + "ms";
+    }
+  }
+
+  /**
+   * Records an invocation of an advice method of the rule with the specified
+   * id. This method is called from the rewritten bytecode of advice methods,
+   * and is not meant to be called otherwise.
+   *
+   * @param id The id of the rule, as registered in
+   *          {@link #instrument(byte[],String)}.
+   * @param start The value of {@link System#nanoTime()} upon entry to the
+   *          advice method.
+   */
+  public static void record(final int id, final long start) {
+    counters[id].record(System.nanoTime() - start);
+  }
+
+  private static synchronized int register(final String ruleClassName) {
+    final Integer id = ruleClassNameToId.get(ruleClassName);
+    if (id != null)
+      return id;
+
+    final Counters[] counters = Arrays.copyOf(AdviceOverhead.counters, AdviceOverhead.counters.length + 1);
+    counters[counters.length - 1] = new Counters(ruleClassName);
+    ruleClassNameToId.put(ruleClassName, counters.length - 1);
+    AdviceOverhead.counters = counters;
+    return counters.length - 1;
+  }
+
+  /**
+   * Returns snapshots of the counters of all rules, the advice methods of
+   * which were rewritten, in the order of the names of the rule classes.
+   *
+   * @return Snapshots of the counters of all rules.
+   */
+  static Map<String,Snapshot> getSnapshots() {
+    final Map<String,Snapshot> snapshots = new TreeMap<>();
+    for (final Counters counter : counters)
+      snapshots.put(counter.ruleClassName, counter.snapshot());
+
+    return snapshots;
+  }
+
+  /**
+   * Resets the counters of all rules to zero.
+   */
+  static void reset() {
+    for (final Counters counter : counters)
+      counter.reset();
+  }
+
+  /**
+   * Returns the specified bytecode of a class, with the
+   * {@link Advice.OnMethodEnter} and {@link Advice.OnMethodExit} methods
+   * rewritten to record their invocations in the counters of the specified
+   * rule. If the class declares no advice methods, the specified bytecode is
+   * returned as is.
+   *
+   * @param bytes The bytecode of the class.
+   * @param ruleClassName The name of the rule class, to the counters of which
+   *          the invocations are to be recorded.
+   * @return The rewritten bytecode of the class.
+   */
+  static byte[] instrument(final byte[] bytes, final String ruleClassName) {
+    // First pass: find the advice methods, and the size of their local variables
+    final Map<String,Integer> adviceToMaxLocals = new HashMap<>();
+    final ClassReader classReader = OpenedClassReader.of(bytes);
+    classReader.accept(new ClassVisitor(OpenedClassReader.ASM_API) {
+      @Override
+      public MethodVisitor visitMethod(final int access, final String name, final String descriptor, final String signature, final String[] exceptions) {
+        return new MethodVisitor(OpenedClassReader.ASM_API) {
+          private boolean isAdvice;
+
+          @Override
+          public AnnotationVisitor visitAnnotation(final String annotationDescriptor, final boolean visible) {
+            isAdvice |= ON_METHOD_ENTER.equals(annotationDescriptor) || ON_METHOD_EXIT.equals(annotationDescriptor);
+            return null;
+          }
+
+          @Override
+          public void visitMaxs(final int maxStack, final int maxLocals) {
+            if (isAdvice)
+              adviceToMaxLocals.put(name + descriptor, maxLocals);
+          }
+        };
+      }
+    }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+    if (adviceToMaxLocals.size() == 0)
+      return bytes;
+
+    // Second pass: rewrite the advice methods
+    final int id = register(ruleClassName);
+    final ClassWriter classWriter = new ClassWriter(0);
+    classReader.accept(new ClassVisitor(OpenedClassReader.ASM_API, classWriter) {
+      @Override
+      public MethodVisitor visitMethod(final int access, final String name, final String descriptor, final String signature, final String[] exceptions) {
+        final MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+        final Integer maxLocals = adviceToMaxLocals.get(name + descriptor);
+        return maxLocals == null ? methodVisitor : new RecordVisitor(methodVisitor, id, maxLocals);
+      }
+    }, ClassReader.EXPAND_FRAMES);
+
+    return classWriter.toByteArray();
+  }
+
+  /**
+   * A {@link MethodVisitor} that stores {@link System#nanoTime()} in a new
+   * local variable upon entry to an advice method, and calls
+   * {@link #record(int,long)} before each return. The new local variable is
+   * appended to the (expanded) stack map frames of the method.
+   */
+  private static final class RecordVisitor extends MethodVisitor {
+    private final int id;
+    private final int startIndex;
+
+    private RecordVisitor(final MethodVisitor methodVisitor, final int id, final int startIndex) {
+      super(OpenedClassReader.ASM_API, methodVisitor);
+      this.id = id;
+      this.startIndex = startIndex;
+    }
+
+    @Override
+    public void visitCode() {
+      super.visitCode();
+      super.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/System", "nanoTime", "()J", false);
+      super.visitVarInsn(Opcodes.LSTORE, startIndex);
+    }
+
+    @Override
+    public void visitFrame(final int type, final int numLocal, final Object[] local, final int numStack, final Object[] stack) {
+      if (type != Opcodes.F_NEW) {
+        super.visitFrame(type, numLocal, local, numStack, stack);
+        return;
+      }
+
+      int slots = 0;
+      for (int i = 0; i < numLocal; ++i)
+        slots += local[i] == Opcodes.LONG || local[i] == Opcodes.DOUBLE ? 2 : 1;
+
+      final Object[] locals = Arrays.copyOf(local, numLocal + startIndex - slots + 1);
+      Arrays.fill(locals, numLocal, locals.length - 1, Opcodes.TOP);
+      locals[locals.length - 1] = Opcodes.LONG;
+      super.visitFrame(type, locals.length, locals, numStack, stack);
+    }
+
+    @Override
+    public void visitInsn(final int opcode) {
+      if (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) {
+        super.visitLdcInsn(id);
+        super.visitVarInsn(Opcodes.LLOAD, startIndex);
+        super.visitMethodInsn(Opcodes.INVOKESTATIC, ADVICE_OVERHEAD, "record", "(IJ)V", false);
+      }
+
+      super.visitInsn(opcode);
+    }
+
+    @Override
+    public void visitMaxs(final int maxStack, final int maxLocals) {
+      super.visitMaxs(maxStack + 3, maxLocals + 2);
+    }
+  }
+
+  private AdviceOverhead() {
+  }
+}
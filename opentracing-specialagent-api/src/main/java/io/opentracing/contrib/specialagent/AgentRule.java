@@ -15,8 +15,13 @@
 
 package io.opentracing.contrib.specialagent;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,39 +33,337 @@ import net.bytebuddy.agent.builder.AgentBuilder;
  * @author Seva Safris
  */
 public abstract class AgentRule {
-  public static final ThreadLocal<Integer> latch = new ThreadLocal<Integer>() {
+  /**
+   * The per-thread depth of calls into the tracer. The depth is held in the
+   * first (and only) member of the array, so that it is incremented and
+   * decremented in place, without boxing and without a second
+   * {@link ThreadLocal} lookup.
+   */
+  public static final ThreadLocal<int[]> latch = new ThreadLocal<int[]>() {
     @Override
-    protected Integer initialValue() {
-      return 0;
+    protected int[] initialValue() {
+      return new int[1];
     }
   };
 
+  /**
+   * Tests whether an intercepted call should be traced, which is the case if
+   * the call is not made from within the tracer itself.
+   * <p>
+   * Advice methods pass the {@code @Advice.Origin String} of the intercepted
+   * method as the {@code origin} argument. ByteBuddy renders this string once
+   * at instrumentation time, and inlines it into the instrumented method as a
+   * constant. Therefore, the {@code origin} is not materialized per call, and
+   * this method does not allocate, unless {@link Level#FINER} is loggable.
+   *
+   * @param origin The origin of the intercepted call.
+   * @return {@code true} if the intercepted call should be traced.
+   */
   public static boolean isEnabled(final String origin) {
-    final boolean enabled = latch.get() == 0;
+    final boolean enabled = latch.get()[0] == 0;
     if (enabled && logger.isLoggable(Level.FINER))
       logger.finer("-------> Intercept from: " + origin);
 
     return enabled;
   }
 
+  /**
+   * Tests whether an intercepted call of the specified rule class should be
+   * traced, which is the case if the plugin of the rule is enabled (see
+   * {@link #setPluginEnabled(String,boolean)}), and if the call is not made
+   * from within the tracer itself (see {@link #isEnabled(String)}).
+   * <p>
+   * If all plugins are enabled, which is the common case, this method costs a
+   * single volatile read more than {@link #isEnabled(String)}.
+   *
+   * @param agentRuleClass The rule class.
+   * @param origin The origin of the intercepted call.
+   * @return {@code true} if the intercepted call should be traced.
+   */
+  public static boolean isEnabled(final Class<? extends AgentRule> agentRuleClass, final String origin) {
+    final Set<String> disabledPluginNames = AgentRule.disabledPluginNames;
+    if (disabledPluginNames.size() > 0 && disabledPluginNames.contains(classNameToName.get(agentRuleClass.getName())))
+      return false;
+
+    return isEnabled(origin);
+  }
 
   static final Map<String,String> classNameToName = new HashMap<>();
 
+  /**
+   * Snapshot of the names of the plugins that are disabled at runtime. The set
+   * is never modified after it is published, and is replaced as a whole
+   * (copy-on-write) by {@link #setPluginEnabled(String,boolean)}.
+   */
+  private static volatile Set<String> disabledPluginNames = Collections.emptySet();
+
+  /**
+   * Returns the names of the loaded plugins.
+   *
+   * @return The names of the loaded plugins.
+   */
+  public static Set<String> getPluginNames() {
+    return new TreeSet<>(classNameToName.values());
+  }
+
+  /**
+   * Tests whether the plugin with the specified name is enabled at runtime.
+   *
+   * @param pluginName The name of the plugin.
+   * @return Whether the plugin with the specified name is enabled at runtime.
+   */
+  public static boolean isPluginEnabled(final String pluginName) {
+    return !disabledPluginNames.contains(pluginName);
+  }
+
+  /**
+   * Enables or disables the plugin with the specified name at runtime. The
+   * advice of a disabled plugin remains in place, but the intercepted calls of
+   * its rules are not traced, as if called from within the tracer itself.
+   * <p>
+   * <i><b>Note:</b> This does not affect plugins that were not loaded at
+   * startup, as specified by the
+   * {@code sa.instrumentation.plugin.${PLUGIN_NAME}.enable} system
+   * property</i>.
+   *
+   * @param pluginName The name of the plugin.
+   * @param enabled Whether the plugin is to be enabled.
+   * @throws NullPointerException If {@code pluginName} is null.
+   */
+  public static synchronized void setPluginEnabled(final String pluginName, final boolean enabled) {
+    if (pluginName == null)
+      throw new NullPointerException("pluginName == null");
+
+    if (enabled == isPluginEnabled(pluginName))
+      return;
+
+    final Set<String> disabledPluginNames = new HashSet<>(AgentRule.disabledPluginNames);
+    if (enabled)
+      disabledPluginNames.remove(pluginName);
+    else
+      disabledPluginNames.add(pluginName);
+
+    AgentRule.disabledPluginNames = disabledPluginNames;
+    if (logger.isLoggable(Level.INFO))
+      logger.info("Plugin " + pluginName + " is " + (enabled ? "enabled" : "disabled"));
+  }
+
+  /**
+   * Snapshot of the resolved verbose mode of each rule class. The map is never
+   * modified after it is published, and is replaced as a whole (copy-on-write)
+   * when a rule class is resolved for the first time, or is cleared by
+   * {@link #reloadVerbose()}. Therefore, {@link #isVerbose(Class)} is a single
+   * lookup without synchronization.
+   */
+  private static volatile Map<String,Boolean> classNameToVerbose = new HashMap<>();
+
+  /**
+   * Tests whether the specified rule class is in verbose mode, as specified by
+   * the {@code sa.instrumentation.plugins.verbose} and
+   * {@code sa.instrumentation.plugin.${PLUGIN_NAME}.verbose} system properties.
+   * <p>
+   * The system properties are read once per rule class, and the result is
+   * cached. Call {@link #reloadVerbose()} for changes to the system properties
+   * to take effect.
+   *
+   * @param agentRuleClass The rule class.
+   * @return Whether the specified rule class is in verbose mode.
+   * @throws IllegalStateException If the specified class is not a registered
+   *           rule class.
+   */
   public static boolean isVerbose(final Class<? extends AgentRule> agentRuleClass) {
+    final Boolean verbose = classNameToVerbose.get(agentRuleClass.getName());
+    return verbose != null ? verbose : resolveVerbose(agentRuleClass.getName());
+  }
+
+  private static synchronized boolean resolveVerbose(final String className) {
+    final Boolean resolved = classNameToVerbose.get(className);
+    if (resolved != null)
+      return resolved;
+
+    final boolean verbose;
     final String allVerbose = System.getProperty("sa.instrumentation.plugins.verbose");
-    if (allVerbose != null && Boolean.parseBoolean(allVerbose))
-      return true;
+    if (allVerbose != null && Boolean.parseBoolean(allVerbose)) {
+      verbose = true;
+    }
+    else {
+      final String pluginName = classNameToName.get(className);
+      if (pluginName == null)
+        throw new IllegalStateException("Plugin name should not be null");
 
-    final String pluginName = classNameToName.get(agentRuleClass.getName());
-    if (pluginName == null)
-      throw new IllegalStateException("Plugin name should not be null");
+      final String pluginVerbose = System.getProperty("sa.instrumentation.plugin." + pluginName + ".verbose");
+      verbose = pluginVerbose != null && Boolean.parseBoolean(pluginVerbose);
+    }
+
+    final Map<String,Boolean> classNameToVerbose = new HashMap<>(AgentRule.classNameToVerbose);
+    classNameToVerbose.put(className, verbose);
+    AgentRule.classNameToVerbose = classNameToVerbose;
+    return verbose;
+  }
+
+  /**
+   * Discards the cached verbose mode of all rule classes, so that it is
+   * resolved again from the system properties upon the next call to
+   * {@link #isVerbose(Class)}.
+   */
+  public static synchronized void reloadVerbose() {
+    classNameToVerbose = new HashMap<>();
+  }
+
+  /**
+   * Snapshot of the resolved {@link Sampler} of each rule class, which is
+   * maintained in the same manner as {@link #classNameToVerbose}.
+   */
+  private static volatile Map<String,Sampler> classNameToSampler = new HashMap<>();
+
+  /**
+   * Tests whether the current intercepted call of the specified rule class is
+   * sampled, as specified by the
+   * {@code sa.instrumentation.plugin.${PLUGIN_NAME}.sample} system property,
+   * the value of which is either a probability between {@code 0} and
+   * {@code 1} (i.e. {@code 0.1}), or a rate in calls per second (i.e.
+   * {@code 100/s}). If the property is not specified (or is not valid), all
+   * calls are sampled.
+   * <p>
+   * Rules call this method before any span is built, and skip the
+   * instrumentation of the call entirely if it is not sampled (and if there is
+   * no active parent span, the trace of which the call would belong to).
+   * <p>
+   * The system property is read once per rule class, and the result is
+   * cached. Call {@link #reloadSampled()} for changes to the system property
+   * to take effect.
+   *
+   * @param agentRuleClass The rule class.
+   * @return Whether the current intercepted call of the specified rule class
+   *         is sampled.
+   */
+  public static boolean isSampled(final Class<? extends AgentRule> agentRuleClass) {
+    final Sampler sampler = classNameToSampler.get(agentRuleClass.getName());
+    return (sampler != null ? sampler : resolveSampler(agentRuleClass.getName())).isSampled();
+  }
+
+  private static synchronized Sampler resolveSampler(final String className) {
+    Sampler sampler = classNameToSampler.get(className);
+    if (sampler != null)
+      return sampler;
+
+    sampler = Sampler.ALWAYS;
+    final String pluginName = classNameToName.get(className);
+    if (pluginName != null) {
+      final String spec = System.getProperty("sa.instrumentation.plugin." + pluginName + ".sample");
+      if (spec != null) {
+        try {
+          sampler = Sampler.parse(spec);
+        }
+        catch (final IllegalArgumentException e) {
+          logger.log(Level.WARNING, "Ignoring sa.instrumentation.plugin." + pluginName + ".sample: " + e.getMessage());
+        }
+      }
+    }
+
+    final Map<String,Sampler> classNameToSampler = new HashMap<>(AgentRule.classNameToSampler);
+    classNameToSampler.put(className, sampler);
+    AgentRule.classNameToSampler = classNameToSampler;
+    return sampler;
+  }
+
+  /**
+   * Discards the cached sampler of all rule classes, so that it is resolved
+   * again from the system properties upon the next call to
+   * {@link #isSampled(Class)}.
+   */
+  public static synchronized void reloadSampled() {
+    classNameToSampler = new HashMap<>();
+  }
+
+  /**
+   * Snapshot of the resolved {@link StatementCapture} of each rule class,
+   * which is maintained in the same manner as {@link #classNameToVerbose}.
+   */
+  private static volatile Map<String,StatementCapture> classNameToStatementCapture = new HashMap<>();
+
+  /**
+   * Returns the {@link StatementCapture} of the specified rule class, as
+   * specified by the {@code sa.instrumentation.plugin.${PLUGIN_NAME}.statement}
+   * and {@code sa.instrumentation.plugin.${PLUGIN_NAME}.statement.max} system
+   * properties. If the properties are not specified (or are not valid),
+   * statements are captured in full, up to 1024 characters.
+   * <p>
+   * The system properties are read once per rule class, and the result is
+   * cached. Call {@link #reloadStatementCapture()} for changes to the system
+   * properties to take effect.
+   *
+   * @param agentRuleClass The rule class.
+   * @return The {@link StatementCapture} of the specified rule class.
+   */
+  public static StatementCapture getStatementCapture(final Class<? extends AgentRule> agentRuleClass) {
+    final StatementCapture statementCapture = classNameToStatementCapture.get(agentRuleClass.getName());
+    return statementCapture != null ? statementCapture : resolveStatementCapture(agentRuleClass.getName());
+  }
+
+  private static synchronized StatementCapture resolveStatementCapture(final String className) {
+    StatementCapture statementCapture = classNameToStatementCapture.get(className);
+    if (statementCapture != null)
+      return statementCapture;
+
+    statementCapture = StatementCapture.DEFAULT;
+    final String pluginName = classNameToName.get(className);
+    if (pluginName != null) {
+      try {
+        statementCapture = StatementCapture.parse(System.getProperty("sa.instrumentation.plugin." + pluginName + ".statement"), System.getProperty("sa.instrumentation.plugin." + pluginName + ".statement.max"));
+      }
+      catch (final IllegalArgumentException e) {
+        logger.log(Level.WARNING, "Ignoring sa.instrumentation.plugin." + pluginName + ".statement: " + e.getMessage());
+      }
+    }
+
+    final Map<String,StatementCapture> classNameToStatementCapture = new HashMap<>(AgentRule.classNameToStatementCapture);
+    classNameToStatementCapture.put(className, statementCapture);
+    AgentRule.classNameToStatementCapture = classNameToStatementCapture;
+    return statementCapture;
+  }
+
+  /**
+   * Discards the cached statement capture of all rule classes, so that it is
+   * resolved again from the system properties upon the next call to
+   * {@link #getStatementCapture(Class)}.
+   */
+  public static synchronized void reloadStatementCapture() {
+    classNameToStatementCapture = new HashMap<>();
+  }
+
+  private static final AtomicInteger reloadGeneration = new AtomicInteger();
+
+  /**
+   * Returns the generation of the settings of the rule classes, which is
+   * incremented upon each {@link #reload()}. A rule that resolves a setting
+   * from the system properties itself caches the setting together with the
+   * generation, and resolves it again once the generation differs. Unlike a
+   * callback, the generation does not reference the rule, so a rule that is
+   * loaded by an application class loader does not keep the class loader
+   * from being collected.
+   *
+   * @return The generation of the settings of the rule classes.
+   */
+  public static int getReloadGeneration() {
+    return reloadGeneration.get();
+  }
 
-    final String pluginVerbose = System.getProperty("sa.instrumentation.plugin." + pluginName + ".verbose");
-    return pluginVerbose != null && Boolean.parseBoolean(pluginVerbose);
+  /**
+   * Discards all cached settings of the rule classes (i.e. the verbose mode,
+   * the sampler, the statement capture and the {@link ErrorRecorder} stack
+   * capture), and increments the {@link #getReloadGeneration() generation} of
+   * the settings that rules cache themselves, so that the settings are
+   * resolved again from the system properties.
+   */
+  public static void reload() {
+    reloadVerbose();
+    reloadSampled();
+    reloadStatementCapture();
+    ErrorRecorder.reload();
+    reloadGeneration.incrementAndGet();
   }
 
   public static final Logger logger = Logger.getLogger(AgentRule.class.getName());
   public abstract Iterable<? extends AgentBuilder> buildAgent(AgentBuilder builder) throws Exception;
-  // ElementMatcher<? super MethodDescription> onMethod();
-  // DynamicAdvice advice();
 }
\ No newline at end of file
@@ -62,13 +62,6 @@ public final class AgentRuleUtil {
     return subArray(array, beginIndex, array.length);
   }
 
-  private static class CallingClass extends SecurityManager {
-    @Override
-    public Class<?>[] getClassContext() {
-      return super.getClassContext();
-    }
-  }
-
   /**
    * Returns the current execution stack as an array of classes.
    * <p>
@@ -76,11 +69,31 @@ public final class AgentRuleUtil {
    * The element at index {@code 0} is the class of the currently executing
    * method, the element at index {@code 1} is the class of that method's
    * caller, and so on.
+   * <p>
+   * On JDK 9+, the stack is walked with {@code java.lang.StackWalker}.
    *
    * @return The current execution stack as an array of classes.
    */
   public static Class<?>[] getExecutionStack() {
-    return subArray(new CallingClass().getClassContext(), 3);
+    return CallerMatcher.walker.getExecutionStack(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the class at the specified index of the current execution stack,
+   * which is the equivalent of {@code getExecutionStack()[frameIndex]}. On JDK
+   * 9+, only the frames up to {@code frameIndex} are walked.
+   *
+   * @param frameIndex The index of the frame.
+   * @return The class at the specified index of the current execution stack,
+   *         or {@code null} if the stack has no frame at {@code frameIndex}.
+   * @throws IllegalArgumentException If {@code frameIndex} is negative.
+   */
+  public static Class<?> getExecutionClass(final int frameIndex) {
+    if (frameIndex < 0)
+      throw new IllegalArgumentException("frameIndex (" + frameIndex + ") < 0");
+
+    final Class<?>[] classes = CallerMatcher.walker.getExecutionStack(frameIndex + 1);
+    return frameIndex < classes.length ? classes[frameIndex] : null;
   }
 
   /**
@@ -91,12 +104,14 @@ public final class AgentRuleUtil {
    * The element at index {@code 0} is the {@code StackTraceElement} of the
    * currently executing method, the element at index {@code 1} is the
    * {@code StackTraceElement} of that method's caller, and so on.
+   * <p>
+   * On JDK 9+, the stack is walked with {@code java.lang.StackWalker}.
    *
    * @return The current execution stack as an array of
    *         {@link StackTraceElement} objects.
    */
   public static StackTraceElement[] getCallStack() {
-    return subArray(Thread.currentThread().getStackTrace(), 2);
+    return CallerMatcher.walker.getCallStack(Integer.MAX_VALUE);
   }
 
   /**
@@ -109,15 +124,8 @@ public final class AgentRuleUtil {
    *         {@code frameIndex} in the call stack matches the provided
    *         {@code name}; otherwise {@code false}.
    */
-  public static boolean callerEquals(int frameIndex, final String name) {
-    frameIndex += 2;
-    final StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
-    if (stackTraceElements.length <= frameIndex)
-      return false;
-
-    final StackTraceElement stackTraceElement = stackTraceElements[frameIndex];
-    final String element = stackTraceElement.getClassName() + "." + stackTraceElement.getMethodName();
-    return element.equals(name);
+  public static boolean callerEquals(final int frameIndex, final String name) {
+    return CallerMatcher.method(name).at(frameIndex).matches();
   }
 
   /**
@@ -131,25 +139,8 @@ public final class AgentRuleUtil {
    *         {@code frameIndex} in the call stack matches the provided
    *         {@code name}; otherwise {@code false}.
    */
-  public static boolean callerEquals(int startFrame, int endFrame, final String name) {
-    startFrame += 2;
-    endFrame += 2;
-
-    final StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
-    if (stackTraceElements.length <= startFrame)
-      return false;
-
-    if (stackTraceElements.length < endFrame)
-      endFrame = stackTraceElements.length;
-
-    for (int i = startFrame; i < endFrame; ++i) {
-      final StackTraceElement stackTraceElement = stackTraceElements[i];
-      final String element = stackTraceElement.getClassName() + "." + stackTraceElement.getMethodName();
-      if (element.equals(name))
-        return true;
-    }
-
-    return false;
+  public static boolean callerEquals(final int startFrame, final int endFrame, final String name) {
+    return CallerMatcher.method(name).within(startFrame, endFrame).matches();
   }
 
   /**
@@ -162,19 +153,8 @@ public final class AgentRuleUtil {
    *         {@code frameIndex} in the call stack matches the provided
    *         {@code name}; otherwise {@code false}.
    */
-  public static boolean callerEquals(int frameIndex, final String ... names) {
-    frameIndex += 2;
-    final StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
-    if (stackTraceElements.length <= frameIndex)
-      return false;
-
-    final StackTraceElement stackTraceElement = stackTraceElements[frameIndex];
-    final String element = stackTraceElement.getClassName() + "." + stackTraceElement.getMethodName();
-    for (int i = 0; i < names.length; ++i)
-      if (element.equals(names[i]))
-        return true;
-
-    return false;
+  public static boolean callerEquals(final int frameIndex, final String ... names) {
+    return CallerMatcher.method(names).at(frameIndex).matches();
   }
 
   /**
@@ -188,26 +168,8 @@ public final class AgentRuleUtil {
    *         {@code frameIndex} in the call stack matches the provided
    *         {@code name}; otherwise {@code false}.
    */
-  public static boolean callerEquals(int startFrame, int endFrame, final String ...  names) {
-    startFrame += 2;
-    endFrame += 2;
-
-    final StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
-    if (stackTraceElements.length <= startFrame)
-      return false;
-
-    if (stackTraceElements.length < endFrame)
-      endFrame = stackTraceElements.length;
-
-    for (int i = startFrame; i < endFrame; ++i) {
-      final StackTraceElement stackTraceElement = stackTraceElements[i];
-      final String element = stackTraceElement.getClassName() + "." + stackTraceElement.getMethodName();
-      for (int j = 0; j < names.length; ++j)
-        if (element.equals(names[j]))
-          return true;
-    }
-
-    return false;
+  public static boolean callerEquals(final int startFrame, final int endFrame, final String ... names) {
+    return CallerMatcher.method(names).within(startFrame, endFrame).matches();
   }
 
   private AgentRuleUtil() {
@@ -0,0 +1,478 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A declarative matcher of the callers of the current method, for rules that
+ * need to exclude (or include) intercepted calls depending on where they are
+ * called from. A {@code CallerMatcher} is created once (i.e. in a
+ * {@code static final} field), and is tested with {@link #matches()} in the
+ * intercept method:
+ *
+ * <pre>
+ * <code>
+ * private static final CallerMatcher awsSdk = CallerMatcher.method("com.amazonaws.http.apache.client.impl.SdkHttpClient.execute").within(1, 5);
+ *
+ * public static Object enter(...) {
+ *   if (awsSdk.matches())
+ *     return null;
+ *   ...
+ * }
+ * </code>
+ * </pre>
+ *
+ * Frames are indexed from the method that calls {@link #matches()}, which is
+ * frame {@code 0}, its caller is frame {@code 1}, and so on.
+ * <p>
+ * Only the frames up to the end of the range are inspected. On JDK 9+, the
+ * frames are inspected with {@code java.lang.StackWalker}, which does not
+ * materialize the rest of the stack. On JDK 8, the frames are inspected
+ * individually via {@code sun.misc.JavaLangAccess}, which does not create
+ * {@link StackTraceElement} objects for the rest of the stack. Otherwise,
+ * {@link Thread#getStackTrace()} is used. The same engines implement
+ * {@link AgentRuleUtil#getExecutionStack()},
+ * {@link AgentRuleUtil#getExecutionClass(int)} and
+ * {@link AgentRuleUtil#getCallStack()}.
+ *
+ * @author Seva Safris
+ */
+public final class CallerMatcher {
+  private static final Logger logger = Logger.getLogger(CallerMatcher.class.getName());
+  private static final String[] internalClassNames = {CallerMatcher.class.getName(), AgentRuleUtil.class.getName(), Thread.class.getName()};
+
+  /**
+   * An engine that walks the frames of the current thread.
+   */
+  abstract static class Walker {
+    /**
+     * Tests whether the specified {@code CallerMatcher} matches any frame in
+     * its range of the current thread's stack, relative to the first frame
+     * that is not internal to this class.
+     *
+     * @param matcher The {@code CallerMatcher}.
+     * @return Whether the specified {@code CallerMatcher} matches.
+     */
+    abstract boolean matches(CallerMatcher matcher);
+
+    /**
+     * Returns the classes of up to {@code maxFrames} frames of the current
+     * thread's execution stack, as specified by
+     * {@link AgentRuleUtil#getExecutionStack()}.
+     *
+     * @param maxFrames The maximum number of frames.
+     * @return The classes of up to {@code maxFrames} frames of the current
+     *         thread's execution stack.
+     */
+    Class<?>[] getExecutionStack(final int maxFrames) {
+      // The first frame after the internal frames is the frame of the method
+      // that calls AgentRuleUtil#getExecutionStack(), which is not included
+      final Class<?>[] classes = new CallingClass().getClassContext();
+      int start = 0;
+      while (start < classes.length && isInternal(classes[start].getName()))
+        ++start;
+
+      ++start;
+      return start >= classes.length ? new Class<?>[0] : AgentRuleUtil.subArray(classes, start, start + Math.min(maxFrames, classes.length - start));
+    }
+
+    /**
+     * Returns up to {@code maxFrames} frames of the current thread's call
+     * stack, as specified by {@link AgentRuleUtil#getCallStack()}.
+     *
+     * @param maxFrames The maximum number of frames.
+     * @return Up to {@code maxFrames} frames of the current thread's call
+     *         stack.
+     */
+    StackTraceElement[] getCallStack(final int maxFrames) {
+      final StackTraceElement[] frames = Thread.currentThread().getStackTrace();
+      int start = 0;
+      while (start < frames.length && isInternal(frames[start].getClassName()))
+        ++start;
+
+      return AgentRuleUtil.subArray(frames, start, start + Math.min(maxFrames, frames.length - start));
+    }
+  }
+
+  /**
+   * Exposes the protected {@link SecurityManager#getClassContext()}, which
+   * does not include the frames of reflective calls.
+   */
+  private static final class CallingClass extends SecurityManager {
+    @Override
+    public Class<?>[] getClassContext() {
+      return super.getClassContext();
+    }
+  }
+
+  /**
+   * A {@link Walker} that inspects {@code java.lang.StackWalker} frames, which
+   * is only loaded on JDK 9+.
+   */
+  static final class StackWalkerWalker extends Walker {
+    private final Object stackWalker;
+    private final Object classStackWalker;
+    private final MethodHandle walk;
+    private final MethodHandle getClassName;
+    private final MethodHandle getMethodName;
+    private final MethodHandle getDeclaringClass;
+    private final MethodHandle toStackTraceElement;
+
+    public StackWalkerWalker() throws ReflectiveOperationException {
+      final Class<?> stackWalkerClass = Class.forName("java.lang.StackWalker");
+      final Class<?> optionClass = Class.forName("java.lang.StackWalker$Option");
+      final Class<?> stackFrameClass = Class.forName("java.lang.StackWalker$StackFrame");
+      final Object showReflectFrames = optionClass.getField("SHOW_REFLECT_FRAMES").get(null);
+      // SHOW_REFLECT_FRAMES keeps the frames consistent with Thread#getStackTrace()
+      this.stackWalker = stackWalkerClass.getMethod("getInstance", optionClass).invoke(null, showReflectFrames);
+      // Without SHOW_REFLECT_FRAMES, the frames are consistent with SecurityManager#getClassContext()
+      this.classStackWalker = stackWalkerClass.getMethod("getInstance", optionClass).invoke(null, optionClass.getField("RETAIN_CLASS_REFERENCE").get(null));
+      final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      this.walk = lookup.findVirtual(stackWalkerClass, "walk", MethodType.methodType(Object.class, Function.class)).asType(MethodType.methodType(Object.class, Object.class, Function.class));
+      this.getClassName = lookup.findVirtual(stackFrameClass, "getClassName", MethodType.methodType(String.class)).asType(MethodType.methodType(String.class, Object.class));
+      this.getMethodName = lookup.findVirtual(stackFrameClass, "getMethodName", MethodType.methodType(String.class)).asType(MethodType.methodType(String.class, Object.class));
+      this.getDeclaringClass = lookup.findVirtual(stackFrameClass, "getDeclaringClass", MethodType.methodType(Class.class)).asType(MethodType.methodType(Class.class, Object.class));
+      this.toStackTraceElement = lookup.findVirtual(stackFrameClass, "toStackTraceElement", MethodType.methodType(StackTraceElement.class)).asType(MethodType.methodType(StackTraceElement.class, Object.class));
+    }
+
+    @Override
+    Class<?>[] getExecutionStack(final int maxFrames) {
+      try {
+        return (Class<?>[])(Object)walk.invokeExact(classStackWalker, (Function<?,?>)new Function<Stream<?>,Class<?>[]>() {
+          @Override
+          public Class<?>[] apply(final Stream<?> frames) {
+            try {
+              final List<Class<?>> classes = new ArrayList<>();
+              final Iterator<?> iterator = frames.iterator();
+              boolean internal = true;
+              while (iterator.hasNext() && classes.size() < maxFrames) {
+                final Class<?> cls = (Class<?>)getDeclaringClass.invokeExact(iterator.next());
+                if (internal) {
+                  // The frame of the method that calls AgentRuleUtil#getExecutionStack() is not included
+                  internal = isInternal(cls.getName());
+                  continue;
+                }
+
+                classes.add(cls);
+              }
+
+              return classes.toArray(new Class<?>[classes.size()]);
+            }
+            catch (final Throwable t) {
+              throw new IllegalStateException(t);
+            }
+          }
+        });
+      }
+      catch (final Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+
+    @Override
+    StackTraceElement[] getCallStack(final int maxFrames) {
+      try {
+        return (StackTraceElement[])(Object)walk.invokeExact(stackWalker, (Function<?,?>)new Function<Stream<?>,StackTraceElement[]>() {
+          @Override
+          public StackTraceElement[] apply(final Stream<?> frames) {
+            try {
+              final List<StackTraceElement> elements = new ArrayList<>();
+              final Iterator<?> iterator = frames.iterator();
+              while (iterator.hasNext() && elements.size() < maxFrames) {
+                final Object frame = iterator.next();
+                if (elements.isEmpty() && isInternal((String)getClassName.invokeExact(frame)))
+                  continue;
+
+                elements.add((StackTraceElement)toStackTraceElement.invokeExact(frame));
+              }
+
+              return elements.toArray(new StackTraceElement[elements.size()]);
+            }
+            catch (final Throwable t) {
+              throw new IllegalStateException(t);
+            }
+          }
+        });
+      }
+      catch (final Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+
+    @Override
+    boolean matches(final CallerMatcher matcher) {
+      try {
+        return (Boolean)(Object)walk.invokeExact(stackWalker, (Function<?,?>)new Function<Stream<?>,Boolean>() {
+          @Override
+          public Boolean apply(final Stream<?> frames) {
+            try {
+              final Iterator<?> iterator = frames.iterator();
+              int index = -1;
+              while (iterator.hasNext()) {
+                final Object frame = iterator.next();
+                final String className = (String)getClassName.invokeExact(frame);
+                if (index == -1 && isInternal(className))
+                  continue;
+
+                if (++index >= matcher.endFrame)
+                  return Boolean.FALSE;
+
+                if (index >= matcher.startFrame && matcher.matches(className, matcher.methodNames == null ? null : (String)getMethodName.invokeExact(frame)))
+                  return Boolean.TRUE;
+              }
+
+              return Boolean.FALSE;
+            }
+            catch (final Throwable t) {
+              throw new IllegalStateException(t);
+            }
+          }
+        });
+      }
+      catch (final Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+  }
+
+  /**
+   * A {@link Walker} that inspects individual frames of a {@link Throwable}
+   * via {@code sun.misc.JavaLangAccess}, which is only available on JDK 8 and
+   * earlier.
+   */
+  static final class JavaLangAccessWalker extends Walker {
+    private final MethodHandle getStackTraceDepth;
+    private final MethodHandle getStackTraceElement;
+
+    public JavaLangAccessWalker() throws ReflectiveOperationException {
+      final Object javaLangAccess = Class.forName("sun.misc.SharedSecrets").getMethod("getJavaLangAccess").invoke(null);
+      final Class<?> javaLangAccessClass = Class.forName("sun.misc.JavaLangAccess");
+      final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      this.getStackTraceDepth = lookup.findVirtual(javaLangAccessClass, "getStackTraceDepth", MethodType.methodType(int.class, Throwable.class)).bindTo(javaLangAccess);
+      this.getStackTraceElement = lookup.findVirtual(javaLangAccessClass, "getStackTraceElement", MethodType.methodType(StackTraceElement.class, Throwable.class, int.class)).bindTo(javaLangAccess);
+    }
+
+    @Override
+    boolean matches(final CallerMatcher matcher) {
+      try {
+        final Throwable throwable = new Throwable();
+        final int depth = (int)getStackTraceDepth.invokeExact(throwable);
+        for (int i = 0, index = -1; i < depth; ++i) {
+          final StackTraceElement frame = (StackTraceElement)getStackTraceElement.invokeExact(throwable, i);
+          if (index == -1 && isInternal(frame.getClassName()))
+            continue;
+
+          if (++index >= matcher.endFrame)
+            return false;
+
+          if (index >= matcher.startFrame && matcher.matches(frame.getClassName(), frame.getMethodName()))
+            return true;
+        }
+
+        return false;
+      }
+      catch (final Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+
+    @Override
+    StackTraceElement[] getCallStack(final int maxFrames) {
+      try {
+        final Throwable throwable = new Throwable();
+        final int depth = (int)getStackTraceDepth.invokeExact(throwable);
+        final List<StackTraceElement> elements = new ArrayList<>(Math.min(depth, maxFrames));
+        for (int i = 0; i < depth && elements.size() < maxFrames; ++i) {
+          final StackTraceElement frame = (StackTraceElement)getStackTraceElement.invokeExact(throwable, i);
+          if (!elements.isEmpty() || !isInternal(frame.getClassName()))
+            elements.add(frame);
+        }
+
+        return elements.toArray(new StackTraceElement[elements.size()]);
+      }
+      catch (final Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
+  }
+
+  /**
+   * A {@link Walker} that inspects the frames of
+   * {@link Thread#getStackTrace()}.
+   */
+  static final class StackTraceWalker extends Walker {
+    @Override
+    boolean matches(final CallerMatcher matcher) {
+      final StackTraceElement[] frames = Thread.currentThread().getStackTrace();
+      for (int i = 0, index = -1; i < frames.length; ++i) {
+        if (index == -1 && isInternal(frames[i].getClassName()))
+          continue;
+
+        if (++index >= matcher.endFrame)
+          return false;
+
+        if (index >= matcher.startFrame && matcher.matches(frames[i].getClassName(), frames[i].getMethodName()))
+          return true;
+      }
+
+      return false;
+    }
+  }
+
+  static final Walker walker = newWalker();
+
+  private static Walker newWalker() {
+    // The walkers are instantiated reflectively, so that the JDK-specific
+    // classes they depend on are not loaded unless they are available
+    for (final String className : new String[] {StackWalkerWalker.class.getName(), JavaLangAccessWalker.class.getName()}) {
+      try {
+        final Walker walker = (Walker)Class.forName(className).getConstructor().newInstance();
+        if (logger.isLoggable(Level.FINE))
+          logger.fine("CallerMatcher: using " + className);
+
+        return walker;
+      }
+      catch (final Throwable t) {
+        if (logger.isLoggable(Level.FINEST))
+          logger.log(Level.FINEST, "CallerMatcher: " + className + " is not supported", t);
+      }
+    }
+
+    return new StackTraceWalker();
+  }
+
+  private static boolean isInternal(final String className) {
+    for (int i = 0; i < internalClassNames.length; ++i) {
+      final String internalClassName = internalClassNames[i];
+      if (className.startsWith(internalClassName) && (className.length() == internalClassName.length() || className.charAt(internalClassName.length()) == '$'))
+        return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns a {@code CallerMatcher} that matches a frame of any of the
+   * specified methods, in the range of frames {@code [0, 1)}.
+   *
+   * @param names The {@code className + "." + methodName} of the methods.
+   * @return A {@code CallerMatcher} that matches a frame of any of the
+   *         specified methods.
+   * @throws IllegalArgumentException If a name is not of the form
+   *           {@code className + "." + methodName}.
+   */
+  public static CallerMatcher method(final String ... names) {
+    final String[] classNames = new String[names.length];
+    final String[] methodNames = new String[names.length];
+    for (int i = 0; i < names.length; ++i) {
+      final int dot = names[i].lastIndexOf('.');
+      if (dot == -1)
+        throw new IllegalArgumentException("Name must be of the form className.methodName: " + names[i]);
+
+      classNames[i] = names[i].substring(0, dot);
+      methodNames[i] = names[i].substring(dot + 1);
+    }
+
+    return new CallerMatcher(classNames, methodNames, 0, 1);
+  }
+
+  /**
+   * Returns a {@code CallerMatcher} that matches a frame of any method in any
+   * of the specified classes, in the range of frames {@code [0, 1)}.
+   *
+   * @param classNames The names of the classes.
+   * @return A {@code CallerMatcher} that matches a frame of any method in any
+   *         of the specified classes.
+   */
+  public static CallerMatcher type(final String ... classNames) {
+    return new CallerMatcher(classNames.clone(), null, 0, 1);
+  }
+
+  private final String[] classNames;
+  private final String[] methodNames;
+  private final int startFrame;
+  private final int endFrame;
+
+  private CallerMatcher(final String[] classNames, final String[] methodNames, final int startFrame, final int endFrame) {
+    if (startFrame < 0)
+      throw new IllegalArgumentException("startFrame (" + startFrame + ") < 0");
+
+    if (endFrame < startFrame)
+      throw new IllegalArgumentException("endFrame (" + endFrame + ") < startFrame (" + startFrame + ")");
+
+    this.classNames = classNames;
+    this.methodNames = methodNames;
+    this.startFrame = startFrame;
+    this.endFrame = endFrame;
+  }
+
+  /**
+   * Returns a {@code CallerMatcher} that matches the same methods or classes
+   * as this matcher, in the specified range of frames.
+   *
+   * @param startFrame The start index of the frames to check.
+   * @param endFrame The end index (exclusive) of the frames to check.
+   * @return A {@code CallerMatcher} that matches the same methods or classes
+   *         as this matcher, in the specified range of frames.
+   * @throws IllegalArgumentException If {@code startFrame} is negative, or if
+   *           {@code endFrame} is less than {@code startFrame}.
+   */
+  public CallerMatcher within(final int startFrame, final int endFrame) {
+    return new CallerMatcher(classNames, methodNames, startFrame, endFrame);
+  }
+
+  /**
+   * Returns a {@code CallerMatcher} that matches the same methods or classes
+   * as this matcher, in the frame at the specified index.
+   *
+   * @param frameIndex The index of the frame to check.
+   * @return A {@code CallerMatcher} that matches the same methods or classes
+   *         as this matcher, in the frame at the specified index.
+   * @throws IllegalArgumentException If {@code frameIndex} is negative.
+   */
+  public CallerMatcher at(final int frameIndex) {
+    return within(frameIndex, frameIndex + 1);
+  }
+
+  private boolean matches(final String className, final String methodName) {
+    for (int i = 0; i < classNames.length; ++i)
+      if (classNames[i].equals(className) && (methodNames == null || methodNames[i].equals(methodName)))
+        return true;
+
+    return false;
+  }
+
+  /**
+   * Tests whether any frame in the range of this matcher, relative to the
+   * method that calls this method, is of a method or class of this matcher.
+   *
+   * @return Whether any frame in the range of this matcher is of a method or
+   *         class of this matcher.
+   */
+  public boolean matches() {
+    return walker.matches(this);
+  }
+}
@@ -1,4 +1,4 @@
-/* Copyright 2018 The OpenTracing Authors
+/* Copyright 2019 The OpenTracing Authors
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,67 +19,305 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 
-import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.agent.builder.AgentBuilder;
 import net.bytebuddy.asm.Advice;
-import net.bytebuddy.description.modifier.Visibility;
-import net.bytebuddy.dynamic.DynamicType;
-import net.bytebuddy.dynamic.DynamicType.Unloaded;
-import net.bytebuddy.implementation.MethodCall;
-import net.bytebuddy.pool.TypePool;
+import net.bytebuddy.asm.AsmVisitorWrapper;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.jar.asm.ClassReader;
+import net.bytebuddy.jar.asm.ClassVisitor;
+import net.bytebuddy.jar.asm.ClassWriter;
+import net.bytebuddy.jar.asm.Label;
+import net.bytebuddy.jar.asm.MethodVisitor;
+import net.bytebuddy.jar.asm.Opcodes;
+import net.bytebuddy.jar.asm.Type;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.utility.JavaModule;
+import net.bytebuddy.utility.OpenedClassReader;
 
+/**
+ * An advice class, the {@link Advice.OnMethodEnter} and
+ * {@link Advice.OnMethodExit} methods of which are guarded with an inlined
+ * {@link AgentRule#isEnabled(Class,String)} check, and which is applied to the
+ * methods of instrumented types via the {@link AgentBuilder.Transformer}
+ * returned by {@link #on(ElementMatcher)}:
+ *
+ * <pre>
+ * <code>
+ * public Iterable&lt;? extends AgentBuilder&gt; buildAgent(final AgentBuilder builder) {
+ *   return Arrays.asList(builder
+ *     .type(named("com.example.Client"))
+ *     .transform(DynamicAdvice.of(MyAgentRule.class).on(named("execute"))));
+ * }
+ *
+ * &#64;Advice.OnMethodEnter
+ * public static void enter(final &#64;Advice.Origin String origin, final &#64;Advice.This Object thiz) {
+ *   MyAgentIntercept.enter(thiz);
+ * }
+ * </code>
+ * </pre>
+ *
+ * The bytecode of the advice class is read and rewritten once, upon the
+ * construction of the {@code DynamicAdvice}. As with {@link Advice}, the
+ * bytecode of the advice methods (including the enabled check) is thereafter
+ * inlined into each instrumented method, specialized for its signature, and
+ * without reflective dispatch. Therefore, the advice methods must not call
+ * {@link AgentRule#isEnabled(Class,String)} themselves.
+ * <p>
+ * The rule class passed to {@link AgentRule#isEnabled(Class,String)} is the
+ * advice class, or the innermost class enclosing the advice class, that is a
+ * subclass of {@link AgentRule}. If there is no such class,
+ * {@link AgentRule#isEnabled(String)} is called instead. If an advice method
+ * declares a {@code String} parameter annotated with {@link Advice.Origin}, its
+ * value is passed as the origin. Otherwise, the name of the advice method is
+ * passed.
+ * <p>
+ * If the enabled check returns {@code false}, the advice method returns the
+ * default value of its return type (i.e. {@code null}, {@code 0}, or
+ * {@code false}). Therefore, an {@link Advice.OnMethodEnter} method with
+ * {@code skipOn = Advice.OnDefaultValue.class} is not supported.
+ *
+ * @author Seva Safris
+ */
 public class DynamicAdvice {
-  private Class<?> onEnter;
-  private Class<?> onExit;
+  private static final String AGENT_RULE = Type.getInternalName(AgentRule.class);
+
+  /**
+   * Returns a new {@code DynamicAdvice} for the specified advice class.
+   *
+   * @param advice The advice class.
+   * @return A new {@code DynamicAdvice} for the specified advice class.
+   * @throws IllegalArgumentException If the advice class does not declare a
+   *           valid {@link Advice.OnMethodEnter} or {@link Advice.OnMethodExit}
+   *           method.
+   * @throws IllegalStateException If the bytecode of the advice class cannot
+   *           be read.
+   */
+  public static DynamicAdvice of(final Class<?> advice) {
+    return new DynamicAdvice(advice);
+  }
+
+  private final Method onEnter;
+  private final Method onExit;
+  private final Class<?> agentRuleClass;
+  private final Advice advice;
 
+  /**
+   * Creates a new {@code DynamicAdvice} for the specified advice class.
+   *
+   * @param advice The advice class.
+   * @throws IllegalArgumentException If the advice class does not declare a
+   *           valid {@link Advice.OnMethodEnter} or {@link Advice.OnMethodExit}
+   *           method.
+   * @throws IllegalStateException If the bytecode of the advice class cannot
+   *           be read.
+   */
   public DynamicAdvice(final Class<?> advice) {
-    TypePool.Default.of(Thread.currentThread().getContextClassLoader()).describe("FIXME");
-    for (final Method method : advice.getMethods()) {
-      if (Modifier.isStatic(method.getModifiers())) {
-        for (final Annotation annotation : method.getAnnotations()) {
-          if (Advice.OnMethodEnter.class.equals(annotation.annotationType())) {
-            if (onEnter != null)
-              throw new IllegalArgumentException("Multiple methods with @Advice.OnMethodEnter not allowed: " + advice.getName() + "#" + onEnter.getName() + ", and: " + advice.getName() + "#" + method.getName());
-
-            onEnter = buildInterceptor(method, annotation);
-          }
-          else if (Advice.OnMethodExit.class.equals(annotation.annotationType())) {
-            if (onExit != null)
-              throw new IllegalArgumentException("Multiple methods with @Advice.OnMethodExit not allowed: " + advice.getName() + "#" + onExit.getName() + ", and: " + advice.getName() + "#" + method.getName());
-
-            onExit = buildInterceptor(method, annotation);
-          }
-        }
+    Method onEnter = null;
+    Method onExit = null;
+    for (final Method method : advice.getDeclaredMethods()) {
+      final Advice.OnMethodEnter enter = method.getAnnotation(Advice.OnMethodEnter.class);
+      final Advice.OnMethodExit exit = method.getAnnotation(Advice.OnMethodExit.class);
+      if (enter == null && exit == null)
+        continue;
+
+      if (!Modifier.isStatic(method.getModifiers()))
+        throw new IllegalArgumentException("Advice method must be static: " + advice.getName() + "#" + method.getName());
+
+      if (enter != null) {
+        if (onEnter != null)
+          throw new IllegalArgumentException("Multiple methods with @Advice.OnMethodEnter not allowed: " + advice.getName() + "#" + onEnter.getName() + ", and: " + advice.getName() + "#" + method.getName());
+
+        if (!enter.inline())
+          throw new IllegalArgumentException("@Advice.OnMethodEnter(inline = false) not supported: " + advice.getName() + "#" + method.getName());
+
+        if (enter.skipOn() == Advice.OnDefaultValue.class)
+          throw new IllegalArgumentException("@Advice.OnMethodEnter(skipOn = Advice.OnDefaultValue.class) not supported: " + advice.getName() + "#" + method.getName());
+
+        onEnter = method;
+      }
+
+      if (exit != null) {
+        if (onExit != null)
+          throw new IllegalArgumentException("Multiple methods with @Advice.OnMethodExit not allowed: " + advice.getName() + "#" + onExit.getName() + ", and: " + advice.getName() + "#" + method.getName());
+
+        if (!exit.inline())
+          throw new IllegalArgumentException("@Advice.OnMethodExit(inline = false) not supported: " + advice.getName() + "#" + method.getName());
+
+        onExit = method;
       }
     }
+
+    if (onEnter == null && onExit == null)
+      throw new IllegalArgumentException("No method with @Advice.OnMethodEnter or @Advice.OnMethodExit: " + advice.getName());
+
+    this.onEnter = onEnter;
+    this.onExit = onExit;
+    this.agentRuleClass = getAgentRuleClass(advice);
+
+    final byte[] bytes;
+    try {
+      bytes = ClassFileLocator.ForClassLoader.read(advice);
+    }
+    catch (final RuntimeException e) {
+      throw new IllegalStateException("Unable to read bytecode of advice class: " + advice.getName(), e);
+    }
+
+    this.advice = Advice.to(new TypeDescription.ForLoadedType(advice), ClassFileLocator.Simple.of(advice.getName(), guard(bytes)));
+  }
+
+  /**
+   * Returns the bytecode of the advice class, with the
+   * {@link Advice.OnMethodEnter} and {@link Advice.OnMethodExit} methods
+   * rewritten to return early if the enabled check returns {@code false}.
+   *
+   * @param bytes The bytecode of the advice class.
+   * @return The rewritten bytecode of the advice class.
+   */
+  private byte[] guard(final byte[] bytes) {
+    final ClassReader classReader = OpenedClassReader.of(bytes);
+    final ClassWriter classWriter = new ClassWriter(classReader, 0);
+    classReader.accept(new ClassVisitor(OpenedClassReader.ASM_API, classWriter) {
+      private boolean hasFrames;
+
+      @Override
+      public void visit(final int version, final int access, final String name, final String signature, final String superName, final String[] interfaces) {
+        hasFrames = (version & 0xFFFF) >= Opcodes.V1_6;
+        super.visit(version, access, name, signature, superName, interfaces);
+      }
+
+      @Override
+      public MethodVisitor visitMethod(final int access, final String name, final String descriptor, final String signature, final String[] exceptions) {
+        final MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+        final Method method = matches(onEnter, name, descriptor) ? onEnter : matches(onExit, name, descriptor) ? onExit : null;
+        return method == null ? methodVisitor : new GuardVisitor(methodVisitor, method, agentRuleClass, hasFrames);
+      }
+    }, 0);
+
+    return classWriter.toByteArray();
   }
 
-  private static Class<?> buildInterceptor(final Method method, final Annotation annotation) {
-    DynamicType.Builder.MethodDefinition.ParameterDefinition.Simple<?> builder = new ByteBuddy()
-      .makeInterface()
-      .name("MyInterface")
-      .annotateType(annotation)
-      .modifiers(Visibility.PUBLIC)
-      .defineMethod(method.getName(), void.class, Visibility.PUBLIC);
+  private static Class<?> getAgentRuleClass(final Class<?> advice) {
+    for (Class<?> cls = advice; cls != null; cls = cls.getEnclosingClass())
+      if (AgentRule.class.isAssignableFrom(cls))
+        return cls;
 
+    return null;
+  }
+
+  private static boolean matches(final Method method, final String name, final String descriptor) {
+    return method != null && method.getName().equals(name) && Type.getMethodDescriptor(method).equals(descriptor);
+  }
+
+  /**
+   * Returns the index of the local variable of the {@code String} parameter
+   * annotated with {@link Advice.Origin} of the specified static method, or
+   * {@code -1} if the method does not declare such a parameter.
+   *
+   * @param method The static method.
+   * @return The index of the local variable of the {@code String} parameter
+   *         annotated with {@link Advice.Origin}, or {@code -1}.
+   */
+  private static int getOriginIndex(final Method method) {
     final Class<?>[] parameterTypes = method.getParameterTypes();
     final Annotation[][] parameterAnnotations = method.getParameterAnnotations();
-    for (int i = 0; i < parameterTypes.length; ++i)
-      builder = builder.withParameter(parameterTypes[i]).annotateParameter(parameterAnnotations[i]);
-
-    final Unloaded<?> unloaded = builder
-      .intercept(MethodCall.invoke(method).withAllArguments())
-      .make();
+    for (int i = 0, index = 0; i < parameterTypes.length; index += Type.getType(parameterTypes[i]).getSize(), ++i)
+      if (parameterTypes[i] == String.class)
+        for (final Annotation annotation : parameterAnnotations[i])
+          if (annotation.annotationType() == Advice.Origin.class)
+            return index;
 
-    return unloaded
-      .load(Thread.currentThread().getContextClassLoader().getClass().getClassLoader())
-      .getLoaded();
+    return -1;
   }
 
-  Class<?> getOnEnter() {
-    return this.onEnter;
+  /**
+   * A {@link MethodVisitor} that prepends the enabled check to the code of an
+   * advice method.
+   */
+  private static final class GuardVisitor extends MethodVisitor {
+    private final Method method;
+    private final Class<?> agentRuleClass;
+    private final boolean hasFrames;
+
+    private GuardVisitor(final MethodVisitor methodVisitor, final Method method, final Class<?> agentRuleClass, final boolean hasFrames) {
+      super(OpenedClassReader.ASM_API, methodVisitor);
+      this.method = method;
+      this.agentRuleClass = agentRuleClass;
+      this.hasFrames = hasFrames;
+    }
+
+    @Override
+    public void visitCode() {
+      super.visitCode();
+      if (agentRuleClass != null)
+        super.visitLdcInsn(Type.getType(agentRuleClass));
+
+      final int originIndex = getOriginIndex(method);
+      if (originIndex != -1)
+        super.visitVarInsn(Opcodes.ALOAD, originIndex);
+      else
+        super.visitLdcInsn(method.getDeclaringClass().getName() + "#" + method.getName());
+
+      if (agentRuleClass != null)
+        super.visitMethodInsn(Opcodes.INVOKESTATIC, AGENT_RULE, "isEnabled", "(Ljava/lang/Class;Ljava/lang/String;)Z", false);
+      else
+        super.visitMethodInsn(Opcodes.INVOKESTATIC, AGENT_RULE, "isEnabled", "(Ljava/lang/String;)Z", false);
+
+      final Label enabled = new Label();
+      super.visitJumpInsn(Opcodes.IFNE, enabled);
+      final Type returnType = Type.getReturnType(method);
+      switch (returnType.getSort()) {
+        case Type.VOID:
+          break;
+        case Type.LONG:
+          super.visitInsn(Opcodes.LCONST_0);
+          break;
+        case Type.FLOAT:
+          super.visitInsn(Opcodes.FCONST_0);
+          break;
+        case Type.DOUBLE:
+          super.visitInsn(Opcodes.DCONST_0);
+          break;
+        case Type.ARRAY:
+        case Type.OBJECT:
+          super.visitInsn(Opcodes.ACONST_NULL);
+          break;
+        default:
+          super.visitInsn(Opcodes.ICONST_0);
+      }
+
+      super.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+      super.visitLabel(enabled);
+      if (hasFrames)
+        super.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+
+      // Separate the frame above from a frame at the start of the original code
+      super.visitInsn(Opcodes.NOP);
+    }
+
+    @Override
+    public void visitMaxs(final int maxStack, final int maxLocals) {
+      super.visitMaxs(Math.max(maxStack, 2), maxLocals);
+    }
   }
 
-  Class<?> getOnExit() {
-    return this.onExit;
+  /**
+   * Returns an {@link AgentBuilder.Transformer} that applies this advice to
+   * the methods matched by the specified matcher.
+   *
+   * @param matcher The matcher of the methods to which to apply this advice.
+   * @return An {@link AgentBuilder.Transformer} that applies this advice to
+   *         the methods matched by the specified matcher.
+   */
+  public AgentBuilder.Transformer on(final ElementMatcher<? super MethodDescription> matcher) {
+    final AsmVisitorWrapper visitor = advice.on(matcher);
+    return new AgentBuilder.Transformer() {
+      @Override
+      public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
+        return builder.visit(visitor);
+      }
+    };
   }
-}
\ No newline at end of file
+}
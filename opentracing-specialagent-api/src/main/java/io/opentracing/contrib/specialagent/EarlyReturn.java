@@ -0,0 +1,79 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import net.bytebuddy.asm.Advice;
+
+/**
+ * A carrier of the value to return early from an instrumented method, without
+ * executing the method's body. An {@code EarlyReturn} is returned from a
+ * visitor method annotated with
+ * {@code @Advice.OnMethodEnter(skipOn = Advice.OnNonDefaultValue.class)}, which
+ * signals ByteBuddy to skip the method's body if the returned value is not
+ * {@code null}. The {@code EarlyReturn} is thereafter received by the visitor
+ * method annotated with {@link Advice.OnMethodExit} (in the same advice class)
+ * via {@link Advice.Enter}, which assigns the return value:
+ *
+ * <pre>
+ * <code>
+ * &#64;Advice.OnMethodEnter(skipOn = Advice.OnNonDefaultValue.class)
+ * public static EarlyReturn enter(final &#64;Advice.Origin String origin, ...) {
+ *   if (!isEnabled(origin))
+ *     return null;
+ *
+ *   final Object value = ...;
+ *   return value != null ? EarlyReturn.of(value) : null;
+ * }
+ *
+ * &#64;Advice.OnMethodExit
+ * public static void exit(final &#64;Advice.Enter EarlyReturn earlyReturn, &#64;Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
+ *   if (earlyReturn != null)
+ *     returned = earlyReturn.getValue();
+ * }
+ * </code>
+ * </pre>
+ *
+ * Unlike {@link EarlyReturnException}, an early return with
+ * {@code EarlyReturn} does not construct (or throw) an exception.
+ *
+ * @author Seva Safris
+ */
+public final class EarlyReturn {
+  private static final EarlyReturn NULL = new EarlyReturn(null);
+
+  /**
+   * Returns an {@code EarlyReturn} for the specified return value.
+   *
+   * @param value The value to return early (can be null).
+   * @return An {@code EarlyReturn} for the specified return value.
+   */
+  public static EarlyReturn of(final Object value) {
+    return value == null ? NULL : new EarlyReturn(value);
+  }
+
+  private final Object value;
+
+  private EarlyReturn(final Object value) {
+    this.value = value;
+  }
+
+  /**
+   * @return The value to return early.
+   */
+  public Object getValue() {
+    return this.value;
+  }
+}
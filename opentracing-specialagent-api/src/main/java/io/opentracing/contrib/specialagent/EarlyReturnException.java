@@ -22,7 +22,10 @@ package io.opentracing.contrib.specialagent;
  * annotated with {@link net.bytebuddy.asm.Advice.OnMethodExit}.
  *
  * @author Seva Safris
+ * @deprecated Constructing and throwing an exception for each early return is
+ *             expensive. Use {@link EarlyReturn} instead.
  */
+@Deprecated
 public class EarlyReturnException extends RuntimeException {
   private static final long serialVersionUID = -6230625173943091335L;
 
@@ -0,0 +1,271 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+/**
+ * Records the errors of the intercepted calls of the rules on their spans, by
+ * setting the {@code error} tag, and logging the {@code event} and
+ * {@code error.object} fields (and optionally the {@code stack} field). The
+ * fields are logged with an immutable map that holds only the error, so that
+ * an error costs a single small allocation instead of a {@code HashMap}.
+ * <p>
+ * The {@code stack} field is captured as specified by the following system
+ * properties:
+ * <ul>
+ * <li>{@code sa.instrumentation.plugins.error.stack}: The maximum count of
+ * stack frames in the {@code stack} field (Default: {@code 0}, which disables
+ * the capture).</li>
+ * <li>{@code sa.instrumentation.plugins.error.stack.window}: The window (in
+ * milliseconds) within which the stack is captured only once for identical
+ * errors, which are errors of the same class thrown from the same frame
+ * (Default: {@code 60000}; {@code 0} to capture the stack of every
+ * error).</li>
+ * </ul>
+ * A property whose value is not a non-negative number is ignored with a
+ * warning, and its default is used instead.
+ * Identical errors are tracked in a fixed table of slots, so that an error
+ * storm does not cause the stacks of its errors to be rendered again and
+ * again. A collision of two different errors in the same slot can only cause
+ * a stack to be captured once more.
+ * <p>
+ * The properties are read once, and are read again upon
+ * {@link AgentRule#reload()}.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Seva Safris
+ */
+public final class ErrorRecorder {
+  static final String STACK_PROPERTY = "sa.instrumentation.plugins.error.stack";
+  static final String WINDOW_PROPERTY = "sa.instrumentation.plugins.error.stack.window";
+  private static final int SLOTS = 64;
+  private static final int DEFAULT_MAX_DEPTH = 0;
+  private static final long DEFAULT_WINDOW = 60000;
+  private static final Logger logger = Logger.getLogger(ErrorRecorder.class.getName());
+  static volatile ErrorRecorder instance = newInstance();
+
+  /**
+   * Returns the value of the specified system property, or the specified
+   * default value if the property is not set, or if its value is not a
+   * non-negative number, in which case a warning is logged.
+   */
+  private static long getProperty(final String name, final long defaultValue) {
+    final String value = System.getProperty(name);
+    if (value == null)
+      return defaultValue;
+
+    try {
+      final long number = Long.parseLong(value.trim());
+      if (number >= 0)
+        return number;
+    }
+    catch (final NumberFormatException e) {
+    }
+
+    logger.log(Level.WARNING, "Ignoring " + name + "=" + value + ": Expected a non-negative number");
+    return defaultValue;
+  }
+
+  private static ErrorRecorder newInstance() {
+    return new ErrorRecorder((int)Math.min(Integer.MAX_VALUE, getProperty(STACK_PROPERTY, DEFAULT_MAX_DEPTH)), getProperty(WINDOW_PROPERTY, DEFAULT_WINDOW));
+  }
+
+  /**
+   * Resolves the {@code ErrorRecorder} again from the system properties, so
+   * that changes to the properties at runtime take effect. A property with an
+   * invalid value is ignored with a warning. This method is called by
+   * {@link AgentRule#reload()}.
+   */
+  static void reload() {
+    instance = newInstance();
+  }
+
+  /**
+   * Records the specified error on the specified span, by setting the
+   * {@code error} tag, and logging the error fields.
+   *
+   * @param span The span.
+   * @param thrown The error, or {@code null} if the call failed without an
+   *          error object, in which case only the {@code error} tag is set.
+   */
+  public static void onError(final Span span, final Throwable thrown) {
+    instance.record(span, thrown);
+  }
+
+  /**
+   * Returns the error fields of the specified error, which are to be logged on
+   * a span.
+   *
+   * @param thrown The error.
+   * @return The error fields of the specified error.
+   */
+  public static Map<String,Object> errorLogs(final Throwable thrown) {
+    return instance.logs(thrown);
+  }
+
+  /**
+   * The immutable map of the error fields.
+   */
+  static final class ErrorLogs extends AbstractMap<String,Object> {
+    private static final String[] KEYS = {"event", "error.object", "stack"};
+
+    private final Throwable thrown;
+    private final String stack;
+
+    ErrorLogs(final Throwable thrown, final String stack) {
+      this.thrown = thrown;
+      this.stack = stack;
+    }
+
+    private Object value(final int index) {
+      return index == 0 ? Tags.ERROR.getKey() : index == 1 ? thrown : stack;
+    }
+
+    @Override
+    public int size() {
+      return stack == null ? 2 : 3;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public Object get(final Object key) {
+      for (int i = 0; i < KEYS.length; ++i)
+        if (KEYS[i].equals(key))
+          return value(i);
+
+      return null;
+    }
+
+    @Override
+    public Set<Entry<String,Object>> entrySet() {
+      return new AbstractSet<Entry<String,Object>>() {
+        @Override
+        public int size() {
+          return ErrorLogs.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<String,Object>> iterator() {
+          return new Iterator<Entry<String,Object>>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+              return index < size();
+            }
+
+            @Override
+            public Entry<String,Object> next() {
+              if (!hasNext())
+                throw new NoSuchElementException();
+
+              final Entry<String,Object> entry = new SimpleImmutableEntry<>(KEYS[index], value(index));
+              ++index;
+              return entry;
+            }
+
+            @Override
+            public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+      };
+    }
+  }
+
+  private final int maxDepth;
+  private final long windowNanos;
+  private final AtomicIntegerArray hashes = new AtomicIntegerArray(SLOTS);
+  private final AtomicLongArray captured = new AtomicLongArray(SLOTS);
+
+  ErrorRecorder(final int maxDepth, final long windowMillis) {
+    if (maxDepth < 0)
+      throw new IllegalArgumentException("Maximum stack depth must not be negative: " + maxDepth);
+
+    if (windowMillis < 0)
+      throw new IllegalArgumentException("Window must not be negative: " + windowMillis);
+
+    this.maxDepth = maxDepth;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+  }
+
+  void record(final Span span, final Throwable thrown) {
+    Tags.ERROR.set(span, Boolean.TRUE);
+    if (thrown != null)
+      span.log(logs(thrown));
+  }
+
+  Map<String,Object> logs(final Throwable thrown) {
+    if (maxDepth == 0)
+      return new ErrorLogs(thrown, null);
+
+    final StackTraceElement[] frames = thrown.getStackTrace();
+    return new ErrorLogs(thrown, isCaptured(thrown, frames) ? stack(thrown, frames) : null);
+  }
+
+  /**
+   * @return Whether the stack of the specified error is to be captured, which
+   *         is the case unless the stack of an identical error was captured
+   *         within the window.
+   */
+  private boolean isCaptured(final Throwable thrown, final StackTraceElement[] frames) {
+    if (windowNanos == 0)
+      return true;
+
+    final int hash = thrown.getClass().getName().hashCode() * 31 + (frames.length > 0 ? frames[0].hashCode() : 0);
+    final int slot = (hash ^ (hash >>> 16)) & (SLOTS - 1);
+    final long now = System.nanoTime();
+    final long last = captured.get(slot);
+    if (last != 0 && hashes.get(slot) == hash && now - last < windowNanos)
+      return false;
+
+    hashes.set(slot, hash);
+    captured.set(slot, now == 0 ? 1 : now);
+    return true;
+  }
+
+  private String stack(final Throwable thrown, final StackTraceElement[] frames) {
+    final int depth = Math.min(frames.length, maxDepth);
+    final StringBuilder builder = new StringBuilder(64 * (depth + 1)).append(thrown);
+    for (int i = 0; i < depth; ++i)
+      builder.append("\n\tat ").append(frames[i]);
+
+    if (depth < frames.length)
+      builder.append("\n\t... ").append(frames.length - depth).append(" more");
+
+    return builder.toString();
+  }
+}
@@ -0,0 +1,151 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A sampler of the intercepted calls of a rule, as specified by the
+ * {@code sa.instrumentation.plugin.${PLUGIN_NAME}.sample} system property:
+ * <ul>
+ * <li>A probability between {@code 0} and {@code 1} (i.e. {@code 0.1}), with
+ * which each call is sampled.</li>
+ * <li>A rate in calls per second (i.e. {@code 100/s}), up to which calls are
+ * sampled.</li>
+ * </ul>
+ * This class is thread-safe.
+ *
+ * @author Seva Safris
+ */
+abstract class Sampler {
+  static final Sampler ALWAYS = new Sampler() {
+    @Override
+    boolean isSampled() {
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return "1";
+    }
+  };
+
+  /**
+   * Returns a {@code Sampler} for the specified specification.
+   *
+   * @param spec The specification, as a probability between {@code 0} and
+   *          {@code 1} (i.e. {@code 0.1}), or a rate in calls per second
+   *          (i.e. {@code 100/s}).
+   * @return A {@code Sampler} for the specified specification.
+   * @throws IllegalArgumentException If the specification is not valid.
+   */
+  static Sampler parse(final String spec) {
+    final String value = spec.trim();
+    try {
+      if (value.endsWith("/s")) {
+        final double rate = Double.parseDouble(value.substring(0, value.length() - 2).trim());
+        if (rate < 0)
+          throw new IllegalArgumentException("Rate must not be negative: " + spec);
+
+        return new RateLimiting(rate);
+      }
+
+      final double probability = Double.parseDouble(value);
+      if (probability < 0 || probability > 1)
+        throw new IllegalArgumentException("Probability must be between 0 and 1: " + spec);
+
+      return probability == 1 ? ALWAYS : new Probabilistic(probability);
+    }
+    catch (final NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid sample specification: " + spec, e);
+    }
+  }
+
+  /**
+   * Tests whether the current call is sampled.
+   *
+   * @return Whether the current call is sampled.
+   */
+  abstract boolean isSampled();
+
+  /**
+   * A {@link Sampler} that samples each call with a fixed probability.
+   */
+  static final class Probabilistic extends Sampler {
+    private final double probability;
+
+    Probabilistic(final double probability) {
+      this.probability = probability;
+    }
+
+    @Override
+    boolean isSampled() {
+      return ThreadLocalRandom.current().nextDouble() < probability;
+    }
+
+    @Override
+    public String toString() {
+      return String.valueOf(probability);
+    }
+  }
+
+  /**
+   * A {@link Sampler} that samples calls up to a fixed rate, with a burst of
+   * up to one second's worth of calls (or one call, if the rate is less than
+   * one per second). The rate is enforced with the Generic Cell Rate
+   * Algorithm, which holds its state in a single {@link AtomicLong}, so that
+   * the sampling decision does not block.
+   */
+  static final class RateLimiting extends Sampler {
+    private static final long BURST = TimeUnit.SECONDS.toNanos(1);
+
+    private final double rate;
+    private final long interval;
+    private final long burst;
+    private final AtomicLong theoreticalArrivalTime;
+
+    RateLimiting(final double rate) {
+      this.rate = rate;
+      this.interval = rate == 0 ? Long.MAX_VALUE : (long)(BURST / rate);
+      this.burst = Math.max(BURST, interval);
+      this.theoreticalArrivalTime = new AtomicLong(System.nanoTime() - burst);
+    }
+
+    @Override
+    boolean isSampled() {
+      if (interval == Long.MAX_VALUE)
+        return false;
+
+      final long now = System.nanoTime();
+      while (true) {
+        final long tat = theoreticalArrivalTime.get();
+        final long next = (tat - now > 0 ? tat : now) + interval;
+        if (next - now > burst)
+          return false;
+
+        if (theoreticalArrivalTime.compareAndSet(tat, next))
+          return true;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return rate + "/s";
+    }
+  }
+}
@@ -0,0 +1,328 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The capture of the statements (i.e. the {@code db.statement} tag, or the
+ * keys of a cache operation) that the intercepted calls of a rule report, as
+ * specified by the following system properties:
+ * <ul>
+ * <li>{@code sa.instrumentation.plugin.${PLUGIN_NAME}.statement}: The
+ * {@link Mode} of the capture, which is one of {@code full}, {@code keys} or
+ * {@code none} (Default: {@code full}).</li>
+ * <li>{@code sa.instrumentation.plugin.${PLUGIN_NAME}.statement.max}: The
+ * maximum length of a captured statement, beyond which the statement is
+ * truncated and ends with {@code "..."} (Default: {@code 1024}; {@code 0} for
+ * no maximum).</li>
+ * </ul>
+ * The {@code StatementCapture} of a rule is obtained with
+ * {@link AgentRule#getStatementCapture(Class)}. A statement is captured either
+ * from a {@code String}, or from an arbitrary value with an {@link Encoder}.
+ * The encoder is called only if the statement is captured at all, and it
+ * appends the statement to an {@link Appender} that discards what exceeds the
+ * maximum length, so that large values (i.e. the payloads of a cache
+ * operation, or a list of thousands of keys) are never encoded in full. Rules
+ * call the capture after the call is sampled, and once the span is built, so
+ * that unsampled calls do no encoding work at all.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Seva Safris
+ */
+public final class StatementCapture {
+  static final StatementCapture DEFAULT = new StatementCapture(Mode.FULL, 1024);
+  private static final String ELLIPSIS = "...";
+
+  /**
+   * The mode of a {@link StatementCapture}.
+   */
+  public enum Mode {
+    /**
+     * The statement is captured in full (up to the maximum length).
+     */
+    FULL,
+    /**
+     * Only the keys (i.e. the names of the entries, collections or tables) that
+     * the statement refers to are captured, and the values are omitted. A rule
+     * for which this distinction does not apply captures the full statement.
+     */
+    KEYS,
+    /**
+     * The statement is not captured.
+     */
+    NONE
+  }
+
+  /**
+   * Encoder of a statement from a value of type {@code T}.
+   *
+   * @param <T> The type of the value.
+   */
+  public interface Encoder<T> {
+    /**
+     * Appends the statement of the specified value to the specified appender.
+     * The encoder should stop as soon as {@link Appender#isFull()} returns
+     * {@code true}.
+     *
+     * @param value The value.
+     * @param mode The mode of the capture, which is either {@link Mode#FULL}
+     *          or {@link Mode#KEYS}.
+     * @param appender The appender.
+     */
+    void encode(T value, Mode mode, Appender appender);
+  }
+
+  /**
+   * A {@link Writer} into which an {@link Encoder} appends a statement, and
+   * which discards the characters beyond the maximum length of the
+   * statement. This class is not thread-safe.
+   */
+  public static final class Appender extends Writer {
+    private final StringBuilder builder;
+    private final int maxLength;
+    private boolean truncated;
+
+    Appender(final int maxLength) {
+      this.builder = new StringBuilder(maxLength > 0 ? Math.min(maxLength, 64) : 64);
+      this.maxLength = maxLength > 0 ? maxLength : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return Whether the statement reached the maximum length, after which
+     *         any character that is appended is discarded.
+     */
+    public boolean isFull() {
+      return truncated || builder.length() >= maxLength;
+    }
+
+    /**
+     * @return The count of characters that can be appended before the
+     *         statement reaches the maximum length.
+     */
+    public int remaining() {
+      return truncated ? 0 : maxLength - builder.length();
+    }
+
+    @Override
+    public Appender append(final char ch) {
+      if (remaining() > 0)
+        builder.append(ch);
+      else
+        truncated = true;
+
+      return this;
+    }
+
+    @Override
+    public Appender append(final CharSequence csq) {
+      return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appender append(final CharSequence csq, final int start, final int end) {
+      final int remaining = remaining();
+      if (end - start > remaining) {
+        builder.append(csq, start, start + Math.max(0, remaining));
+        truncated = true;
+      }
+      else {
+        builder.append(csq, start, end);
+      }
+
+      return this;
+    }
+
+    /**
+     * Appends the specified UTF-8 encoded bytes, of which only as many bytes
+     * as fit in the remaining length are decoded.
+     *
+     * @param bytes The UTF-8 encoded bytes.
+     * @return This {@code Appender}.
+     */
+    public Appender append(final byte[] bytes) {
+      final int remaining = remaining();
+      if (remaining <= 0) {
+        if (bytes.length > 0)
+          truncated = true;
+
+        return this;
+      }
+
+      // A UTF-8 encoded character is at least one byte long, so decoding up to
+      // `remaining` bytes yields no more than `remaining` characters. If the
+      // bytes are cut, a multibyte sequence that is cut at the end is not an
+      // end of input, so it is dropped (rather than decoded as U+FFFD)
+      final int length = Math.min(bytes.length, remaining);
+      final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+      final CharBuffer chars = CharBuffer.allocate(length);
+      decoder.decode(ByteBuffer.wrap(bytes, 0, length), chars, length == bytes.length);
+      chars.flip();
+      builder.append(chars);
+      if (length < bytes.length)
+        truncated = true;
+
+      return this;
+    }
+
+    @Override
+    public void write(final int ch) {
+      append((char)ch);
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) {
+      final int remaining = remaining();
+      if (len > remaining) {
+        builder.append(cbuf, off, Math.max(0, remaining));
+        truncated = true;
+      }
+      else {
+        builder.append(cbuf, off, len);
+      }
+    }
+
+    @Override
+    public void write(final String str) {
+      append(str);
+    }
+
+    @Override
+    public void write(final String str, final int off, final int len) {
+      append(str, off, off + len);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return The statement, which ends with {@code "..."} if it was
+     *         truncated.
+     */
+    @Override
+    public String toString() {
+      return truncated ? builder.toString() + ELLIPSIS : builder.toString();
+    }
+  }
+
+  /**
+   * Returns a {@code StatementCapture} for the specified system property
+   * values.
+   *
+   * @param mode The value of the {@code statement} property, or {@code null}.
+   * @param maxLength The value of the {@code statement.max} property, or
+   *          {@code null}.
+   * @return A {@code StatementCapture} for the specified system property
+   *         values.
+   * @throws IllegalArgumentException If a value is not valid.
+   */
+  static StatementCapture parse(final String mode, final String maxLength) {
+    if (mode == null && maxLength == null)
+      return DEFAULT;
+
+    try {
+      return new StatementCapture(mode == null ? DEFAULT.mode : Mode.valueOf(mode.trim().toUpperCase()), maxLength == null ? DEFAULT.maxLength : Integer.parseInt(maxLength.trim()));
+    }
+    catch (final IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid statement capture: " + (mode != null ? mode : "") + (maxLength != null ? " (max " + maxLength + ")" : ""), e);
+    }
+  }
+
+  private final Mode mode;
+  private final int maxLength;
+
+  private StatementCapture(final Mode mode, final int maxLength) {
+    if (maxLength < 0)
+      throw new IllegalArgumentException("Maximum length must not be negative: " + maxLength);
+
+    this.mode = mode;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * @return The mode of the capture.
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * @return The maximum length of a captured statement, or {@code 0} if there
+   *         is no maximum.
+   */
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  /**
+   * @return Whether statements are captured at all, which is the case unless
+   *         the mode is {@link Mode#NONE}.
+   */
+  public boolean isEnabled() {
+    return mode != Mode.NONE;
+  }
+
+  /**
+   * Returns the captured statement of the specified statement string.
+   *
+   * @param statement The statement string.
+   * @return The statement string, truncated to the maximum length, or
+   *         {@code null} if {@code statement} is null or if the mode is
+   *         {@link Mode#NONE}.
+   */
+  public String capture(final String statement) {
+    if (statement == null || mode == Mode.NONE)
+      return null;
+
+    return maxLength == 0 || statement.length() <= maxLength ? statement : statement.substring(0, maxLength) + ELLIPSIS;
+  }
+
+  /**
+   * Returns the captured statement of the specified value, as encoded by the
+   * specified encoder. The encoder is not called if the mode is
+   * {@link Mode#NONE}.
+   *
+   * @param <T> The type of the value.
+   * @param value The value.
+   * @param encoder The encoder of the statement of the value.
+   * @return The captured statement, or {@code null} if {@code value} is null or
+   *         if the mode is {@link Mode#NONE}.
+   */
+  public <T>String capture(final T value, final Encoder<? super T> encoder) {
+    if (value == null || mode == Mode.NONE)
+      return null;
+
+    final Appender appender = new Appender(maxLength);
+    encoder.encode(value, mode, appender);
+    return appender.toString();
+  }
+
+  @Override
+  public String toString() {
+    return mode.name().toLowerCase() + (maxLength > 0 ? " (max " + maxLength + ")" : "");
+  }
+}
@@ -0,0 +1,154 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import static net.bytebuddy.matcher.ElementMatchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.bytebuddy.agent.ByteBuddyAgent;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.AgentBuilder.InitializationStrategy;
+import net.bytebuddy.agent.builder.AgentBuilder.RedefinitionStrategy;
+import net.bytebuddy.agent.builder.AgentBuilder.TypeStrategy;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.asm.AsmVisitorWrapper;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.implementation.bytecode.assign.Assigner.Typing;
+import net.bytebuddy.utility.JavaModule;
+
+/**
+ * Tests for {@link AdviceOverhead}.
+ *
+ * @author Seva Safris
+ */
+public class AdviceOverheadTest {
+  private static final String RULE = "io.opentracing.contrib.specialagent.TestOverheadRule";
+
+  public static class Target {
+    public String call(final String arg) {
+      return arg;
+    }
+
+    public long skip(final long arg) {
+      return arg;
+    }
+  }
+
+  public static class CallAdvice {
+    public static int entered;
+
+    @Advice.OnMethodEnter
+    public static void enter(final @Advice.Argument(0) String arg) {
+      long length = 0;
+      try {
+        for (int i = 0; i < arg.length(); ++i)
+          length += arg.charAt(i) == 'x' ? 2 : 1;
+      }
+      catch (final RuntimeException e) {
+        length = -1;
+      }
+
+      if (length > 0)
+        ++entered;
+    }
+
+    @SuppressWarnings("unused")
+    @Advice.OnMethodExit
+    public static void exit(final @Advice.Argument(0) String arg, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
+      if (arg.startsWith("x"))
+        return;
+
+      returned = "advised";
+    }
+  }
+
+  public static class SkipAdvice {
+    @Advice.OnMethodEnter(skipOn = Advice.OnNonDefaultValue.class)
+    public static EarlyReturn enter(final @Advice.Argument(0) long arg) {
+      return arg > 0 ? EarlyReturn.of(arg * 2) : null;
+    }
+
+    @SuppressWarnings("unused")
+    @Advice.OnMethodExit
+    public static void exit(final @Advice.Enter EarlyReturn earlyReturn, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
+      if (earlyReturn != null)
+        returned = earlyReturn.getValue();
+    }
+  }
+
+  private static AgentBuilder.Transformer instrument(final Class<?> advice, final String methodName) {
+    final byte[] bytes = AdviceOverhead.instrument(ClassFileLocator.ForClassLoader.read(advice), RULE);
+    final AsmVisitorWrapper visitor = Advice.to(new TypeDescription.ForLoadedType(advice), ClassFileLocator.Simple.of(advice.getName(), bytes)).on(named(methodName));
+    return new AgentBuilder.Transformer() {
+      @Override
+      public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
+        return builder.visit(visitor);
+      }
+    };
+  }
+
+  @BeforeClass
+  public static void beforeClass() {
+    new AgentBuilder.Default()
+      .with(RedefinitionStrategy.RETRANSFORMATION)
+      .with(InitializationStrategy.NoOp.INSTANCE)
+      .with(TypeStrategy.Default.REDEFINE)
+      .type(is(Target.class))
+      .transform(instrument(CallAdvice.class, "call"))
+      .transform(instrument(SkipAdvice.class, "skip"))
+      .installOn(ByteBuddyAgent.install());
+  }
+
+  private static AdviceOverhead.Snapshot snapshot() {
+    return AdviceOverhead.getSnapshots().get(RULE);
+  }
+
+  @Test
+  public void testRecord() {
+    AdviceOverhead.reset();
+    assertEquals(0, snapshot().getCount());
+
+    final Target target = new Target();
+    final int entered = CallAdvice.entered;
+    assertEquals("advised", target.call("arg"));
+    assertEquals("xarg", target.call("xarg"));
+    assertEquals(entered + 2, CallAdvice.entered);
+    assertEquals(4, snapshot().getCount());
+
+    assertEquals(4, target.skip(2));
+    assertEquals(-1, target.skip(-1));
+    final AdviceOverhead.Snapshot snapshot = snapshot();
+    assertEquals(8, snapshot.getCount());
+    assertTrue(snapshot.getTotalNanos() > 0);
+    assertTrue(snapshot.getPercentileNanos(50) <= snapshot.getPercentileNanos(100));
+    assertTrue(snapshot.toString(), snapshot.toString().startsWith(RULE + ": count=8"));
+
+    AdviceOverhead.reset();
+    assertEquals(0, snapshot().getCount());
+    assertEquals(0, snapshot().getPercentileNanos(99));
+  }
+
+  @Test
+  public void testNoAdvice() {
+    final byte[] bytes = ClassFileLocator.ForClassLoader.read(Target.class);
+    assertSame(bytes, AdviceOverhead.instrument(bytes, RULE));
+  }
+}
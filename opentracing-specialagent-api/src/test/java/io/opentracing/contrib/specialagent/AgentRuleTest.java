@@ -0,0 +1,169 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import static net.bytebuddy.matcher.ElementMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.bytebuddy.agent.ByteBuddyAgent;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.AgentBuilder.InitializationStrategy;
+import net.bytebuddy.agent.builder.AgentBuilder.RedefinitionStrategy;
+import net.bytebuddy.agent.builder.AgentBuilder.Transformer;
+import net.bytebuddy.agent.builder.AgentBuilder.TypeStrategy;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.utility.JavaModule;
+
+/**
+ * Test class that validates the cost of {@link AgentRule#isEnabled(String)} in
+ * advice, and the resolution of {@link AgentRule#isVerbose(Class)}.
+ *
+ * @author Seva Safris
+ */
+public class AgentRuleTest {
+  public static final List<String> origins = new ArrayList<>();
+
+  public static class OnEnter {
+    @Advice.OnMethodEnter
+    public static void enter(final @Advice.Origin String origin) {
+      if (AgentRule.isEnabled(origin))
+        origins.add(origin);
+    }
+  }
+
+  public static class Target {
+    public int run(final int i) {
+      return i;
+    }
+  }
+
+  @Test
+  public void testOriginIsConstant() {
+    new AgentBuilder.Default()
+      .with(RedefinitionStrategy.RETRANSFORMATION)
+      .with(InitializationStrategy.NoOp.INSTANCE)
+      .with(TypeStrategy.Default.REDEFINE)
+      .type(is(Target.class))
+      .transform(new Transformer() {
+        @Override
+        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
+          return builder.visit(Advice.to(OnEnter.class).on(named("run")));
+        }
+      }).installOn(ByteBuddyAgent.install());
+
+    final Target target = new Target();
+    target.run(1);
+    target.run(2);
+
+    assertEquals(2, origins.size());
+    assertTrue(origins.get(0), origins.get(0).contains("run"));
+    // The origin is a constant of the instrumented method, and is not materialized per call
+    assertSame(origins.get(0), origins.get(1));
+  }
+
+  public static class VerboseRule extends AgentRule {
+    @Override
+    public Iterable<? extends AgentBuilder> buildAgent(final AgentBuilder builder) {
+      return null;
+    }
+  }
+
+  @Test
+  public void testVerbose() {
+    AgentRule.classNameToName.put(VerboseRule.class.getName(), "verbose-test");
+    try {
+      assertFalse(AgentRule.isVerbose(VerboseRule.class));
+
+      System.setProperty("sa.instrumentation.plugin.verbose-test.verbose", "true");
+      assertFalse(AgentRule.isVerbose(VerboseRule.class));
+
+      AgentRule.reloadVerbose();
+      assertTrue(AgentRule.isVerbose(VerboseRule.class));
+    }
+    finally {
+      System.clearProperty("sa.instrumentation.plugin.verbose-test.verbose");
+      AgentRule.classNameToName.remove(VerboseRule.class.getName());
+      AgentRule.reloadVerbose();
+    }
+  }
+
+  @Test
+  public void testReload() {
+    AgentRule.classNameToName.put(VerboseRule.class.getName(), "reload-test");
+    final int generation = AgentRule.getReloadGeneration();
+    try {
+      assertFalse(AgentRule.isVerbose(VerboseRule.class));
+      System.setProperty("sa.instrumentation.plugin.reload-test.verbose", "true");
+
+      AgentRule.reload();
+      assertTrue(AgentRule.isVerbose(VerboseRule.class));
+      assertEquals(generation + 1, AgentRule.getReloadGeneration());
+    }
+    finally {
+      System.clearProperty("sa.instrumentation.plugin.reload-test.verbose");
+      AgentRule.classNameToName.remove(VerboseRule.class.getName());
+      AgentRule.reload();
+    }
+  }
+
+  @Test
+  public void testSampled() {
+    AgentRule.classNameToName.put(VerboseRule.class.getName(), "sample-test");
+    try {
+      assertTrue(AgentRule.isSampled(VerboseRule.class));
+
+      System.setProperty("sa.instrumentation.plugin.sample-test.sample", "0");
+      assertTrue(AgentRule.isSampled(VerboseRule.class));
+
+      AgentRule.reloadSampled();
+      assertFalse(AgentRule.isSampled(VerboseRule.class));
+    }
+    finally {
+      System.clearProperty("sa.instrumentation.plugin.sample-test.sample");
+      AgentRule.classNameToName.remove(VerboseRule.class.getName());
+      AgentRule.reloadSampled();
+    }
+  }
+
+  @Test
+  public void testPluginEnabled() {
+    AgentRule.classNameToName.put(VerboseRule.class.getName(), "enable-test");
+    try {
+      assertTrue(AgentRule.getPluginNames().contains("enable-test"));
+      assertTrue(AgentRule.isPluginEnabled("enable-test"));
+      assertTrue(AgentRule.isEnabled(VerboseRule.class, "origin"));
+
+      AgentRule.setPluginEnabled("enable-test", false);
+      assertFalse(AgentRule.isPluginEnabled("enable-test"));
+      assertFalse(AgentRule.isEnabled(VerboseRule.class, "origin"));
+      assertTrue(AgentRule.isEnabled("origin"));
+
+      AgentRule.setPluginEnabled("enable-test", true);
+      assertTrue(AgentRule.isEnabled(VerboseRule.class, "origin"));
+    }
+    finally {
+      AgentRule.setPluginEnabled("enable-test", true);
+      AgentRule.classNameToName.remove(VerboseRule.class.getName());
+    }
+  }
+}
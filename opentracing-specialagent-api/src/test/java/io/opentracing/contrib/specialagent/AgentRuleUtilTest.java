@@ -17,6 +17,9 @@ package io.opentracing.contrib.specialagent;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 public class AgentRuleUtilTest {
@@ -40,4 +43,106 @@ public class AgentRuleUtilTest {
     assertArrayEquals(new Integer[] {2, 3}, AgentRuleUtil.subArray(array, 2, 4));
     assertArrayEquals(new Integer[] {6, 7, 8}, AgentRuleUtil.subArray(array, 6));
   }
-}
\ No newline at end of file
+
+  private static boolean matches(final CallerMatcher.Walker walker, final CallerMatcher matcher) {
+    return walker.matches(matcher);
+  }
+
+  private static List<CallerMatcher.Walker> getWalkers() {
+    final List<CallerMatcher.Walker> walkers = new ArrayList<>();
+    walkers.add(CallerMatcher.walker);
+    walkers.add(new CallerMatcher.StackTraceWalker());
+    try {
+      walkers.add(new CallerMatcher.StackWalkerWalker());
+    }
+    catch (final ReflectiveOperationException e) {
+      try {
+        walkers.add(new CallerMatcher.JavaLangAccessWalker());
+      }
+      catch (final ReflectiveOperationException e1) {
+      }
+    }
+
+    return walkers;
+  }
+
+  @Test
+  public void testCallerMatcher() {
+    final List<CallerMatcher.Walker> walkers = getWalkers();
+    final String className = AgentRuleUtilTest.class.getName();
+    for (final CallerMatcher.Walker walker : walkers) {
+      final String message = walker.getClass().getName();
+      assertTrue(message, matches(walker, CallerMatcher.method(className + ".matches")));
+      assertTrue(message, matches(walker, CallerMatcher.method(className + ".testCallerMatcher").at(1)));
+      assertFalse(message, matches(walker, CallerMatcher.method(className + ".testCallerMatcher").at(0)));
+      assertFalse(message, matches(walker, CallerMatcher.method(className + ".testCallerMatcher").at(2)));
+      assertTrue(message, matches(walker, CallerMatcher.method("java.lang.Object.toString", className + ".testCallerMatcher").within(0, 2)));
+      assertTrue(message, matches(walker, CallerMatcher.type(className).within(1, 2)));
+      assertFalse(message, matches(walker, CallerMatcher.type(String.class.getName()).within(0, Integer.MAX_VALUE)));
+    }
+
+    try {
+      CallerMatcher.method("foo");
+      fail("Expected IllegalArgumentException");
+    }
+    catch (final IllegalArgumentException e) {
+    }
+
+    try {
+      CallerMatcher.type("foo").within(2, 1);
+      fail("Expected IllegalArgumentException");
+    }
+    catch (final IllegalArgumentException e) {
+    }
+  }
+
+  @Test
+  public void testCallerEquals() {
+    final String name = AgentRuleUtilTest.class.getName() + ".testCallerEquals";
+    assertTrue(AgentRuleUtil.callerEquals(0, name));
+    assertFalse(AgentRuleUtil.callerEquals(1, name));
+    assertTrue(AgentRuleUtil.callerEquals(0, 2, "java.lang.Object.toString", name));
+    assertFalse(AgentRuleUtil.callerEquals(1, 10, name));
+  }
+
+  private static final class ClassContext extends SecurityManager {
+    @Override
+    public Class<?>[] getClassContext() {
+      return super.getClassContext();
+    }
+  }
+
+  private static Class<?>[] getExecutionStack(final CallerMatcher.Walker walker, final int maxFrames) {
+    return walker.getExecutionStack(maxFrames);
+  }
+
+  private static StackTraceElement[] getCallStack(final CallerMatcher.Walker walker, final int maxFrames) {
+    return walker.getCallStack(maxFrames);
+  }
+
+  private static String toString(final StackTraceElement frame) {
+    return frame.getClassName() + "." + frame.getMethodName();
+  }
+
+  @Test
+  public void testExecutionStack() {
+    // The frames of this method's callers, which are the same for each walker
+    final Class<?>[] classes = AgentRuleUtil.subArray(new ClassContext().getClassContext(), 1);
+    final StackTraceElement[] frames = AgentRuleUtil.subArray(Thread.currentThread().getStackTrace(), 2);
+    for (final CallerMatcher.Walker walker : getWalkers()) {
+      final String message = walker.getClass().getName();
+      assertArrayEquals(message, classes, getExecutionStack(walker, Integer.MAX_VALUE));
+      assertArrayEquals(message, AgentRuleUtil.subArray(classes, 0, 2), getExecutionStack(walker, 2));
+
+      final StackTraceElement[] callStack = getCallStack(walker, Integer.MAX_VALUE);
+      assertEquals(message, AgentRuleUtilTest.class.getName() + ".getCallStack", toString(callStack[0]));
+      assertEquals(message, AgentRuleUtilTest.class.getName() + ".testExecutionStack", toString(callStack[1]));
+      assertArrayEquals(message, frames, AgentRuleUtil.subArray(callStack, 2));
+      assertEquals(message, 2, getCallStack(walker, 2).length);
+    }
+
+    assertSame(AgentRuleUtil.getExecutionStack()[1], AgentRuleUtil.getExecutionClass(1));
+    assertNull(AgentRuleUtil.getExecutionClass(Short.MAX_VALUE));
+    assertEquals(AgentRuleUtilTest.class.getName() + ".testExecutionStack", toString(AgentRuleUtil.getCallStack()[0]));
+  }
+}
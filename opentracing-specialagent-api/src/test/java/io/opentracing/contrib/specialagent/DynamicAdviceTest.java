@@ -0,0 +1,192 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import static net.bytebuddy.matcher.ElementMatchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.bytebuddy.agent.ByteBuddyAgent;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.agent.builder.AgentBuilder.InitializationStrategy;
+import net.bytebuddy.agent.builder.AgentBuilder.RedefinitionStrategy;
+import net.bytebuddy.agent.builder.AgentBuilder.TypeStrategy;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.implementation.bytecode.assign.Assigner.Typing;
+
+/**
+ * Tests for {@link DynamicAdvice}.
+ *
+ * @author Seva Safris
+ */
+public class DynamicAdviceTest {
+  public static class Target {
+    public String call(final String arg) {
+      return arg;
+    }
+
+    public String skip() {
+      return "late";
+    }
+
+    public String rule() {
+      return "rule";
+    }
+  }
+
+  public static class CallAdvice {
+    public static int entered;
+    public static String origin;
+
+    @Advice.OnMethodEnter
+    public static void enter(final @Advice.Origin String origin) {
+      ++entered;
+      CallAdvice.origin = origin;
+    }
+
+    @SuppressWarnings("unused")
+    @Advice.OnMethodExit
+    public static void exit(@Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
+      returned = "advised";
+    }
+  }
+
+  public static class SkipAdvice {
+    @Advice.OnMethodEnter(skipOn = Advice.OnNonDefaultValue.class)
+    public static EarlyReturn enter() {
+      return EarlyReturn.of("early");
+    }
+
+    @SuppressWarnings("unused")
+    @Advice.OnMethodExit
+    public static void exit(final @Advice.Enter EarlyReturn earlyReturn, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
+      if (earlyReturn != null)
+        returned = earlyReturn.getValue();
+    }
+  }
+
+  public static class RuleAdvice extends AgentRule {
+    @Override
+    public Iterable<? extends AgentBuilder> buildAgent(final AgentBuilder builder) {
+      return null;
+    }
+
+    @SuppressWarnings("unused")
+    @Advice.OnMethodExit
+    public static void exit(@Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
+      returned = "advised";
+    }
+  }
+
+  public static class MultipleAdvice {
+    @Advice.OnMethodEnter
+    public static void enter1() {
+    }
+
+    @Advice.OnMethodEnter
+    public static void enter2() {
+    }
+  }
+
+  public static class DefaultValueAdvice {
+    @Advice.OnMethodEnter(skipOn = Advice.OnDefaultValue.class)
+    public static boolean enter() {
+      return true;
+    }
+  }
+
+  @BeforeClass
+  public static void beforeClass() {
+    new AgentBuilder.Default()
+      .with(RedefinitionStrategy.RETRANSFORMATION)
+      .with(InitializationStrategy.NoOp.INSTANCE)
+      .with(TypeStrategy.Default.REDEFINE)
+      .type(is(Target.class))
+      .transform(DynamicAdvice.of(CallAdvice.class).on(named("call")))
+      .transform(DynamicAdvice.of(SkipAdvice.class).on(named("skip")))
+      .transform(DynamicAdvice.of(RuleAdvice.class).on(named("rule")))
+      .installOn(ByteBuddyAgent.install());
+  }
+
+  @Test
+  public void testEnabled() {
+    final Target target = new Target();
+    final int entered = CallAdvice.entered;
+    assertEquals("advised", target.call("arg"));
+    assertEquals(entered + 1, CallAdvice.entered);
+    assertTrue(CallAdvice.origin, CallAdvice.origin.contains(Target.class.getName() + ".call("));
+    assertEquals("early", target.skip());
+  }
+
+  @Test
+  public void testDisabled() {
+    final Target target = new Target();
+    final int entered = CallAdvice.entered;
+    ++AgentRule.latch.get()[0];
+    try {
+      assertEquals("arg", target.call("arg"));
+      assertEquals(entered, CallAdvice.entered);
+      assertEquals("late", target.skip());
+    }
+    finally {
+      --AgentRule.latch.get()[0];
+    }
+  }
+
+  @Test
+  public void testPluginDisabled() {
+    final Target target = new Target();
+    AgentRule.classNameToName.put(RuleAdvice.class.getName(), "dynamic-test");
+    try {
+      assertEquals("advised", target.rule());
+      AgentRule.setPluginEnabled("dynamic-test", false);
+      assertEquals("rule", target.rule());
+      assertEquals("advised", target.call("arg"));
+      AgentRule.setPluginEnabled("dynamic-test", true);
+      assertEquals("advised", target.rule());
+    }
+    finally {
+      AgentRule.setPluginEnabled("dynamic-test", true);
+      AgentRule.classNameToName.remove(RuleAdvice.class.getName());
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    try {
+      DynamicAdvice.of(MultipleAdvice.class);
+      fail("Expected IllegalArgumentException");
+    }
+    catch (final IllegalArgumentException e) {
+    }
+
+    try {
+      DynamicAdvice.of(DefaultValueAdvice.class);
+      fail("Expected IllegalArgumentException");
+    }
+    catch (final IllegalArgumentException e) {
+    }
+
+    try {
+      DynamicAdvice.of(Target.class);
+      fail("Expected IllegalArgumentException");
+    }
+    catch (final IllegalArgumentException e) {
+    }
+  }
+}
@@ -37,7 +37,7 @@ import net.bytebuddy.implementation.bytecode.assign.Assigner.Typing;
 import net.bytebuddy.utility.JavaModule;
 
 /**
- * Test class that validates the early return pattern implemented with
+ * Test class that validates the early return patterns implemented with
  * ByteBuddy.
  *
  * @author Seva Safris
@@ -100,4 +100,47 @@ public class EarlyReturnTest {
     premain(ByteBuddyAgent.install());
     assertEquals("ok!", new ControllerImpl().run());
   }
+
+  public static class SkipOn {
+    @Advice.OnMethodEnter(skipOn = Advice.OnNonDefaultValue.class)
+    public static EarlyReturn enter(final @Advice.Argument(value = 0) String arg) {
+      return "early".equals(arg) ? EarlyReturn.of("ok!") : "null".equals(arg) ? EarlyReturn.of(null) : null;
+    }
+
+    @SuppressWarnings("unused")
+    @Advice.OnMethodExit
+    public static void exit(final @Advice.Enter EarlyReturn earlyReturn, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
+      if (earlyReturn != null)
+        returned = earlyReturn.getValue();
+    }
+  }
+
+  public static class Service {
+    public String call(final String arg) {
+      if (!"late".equals(arg))
+        throw new IllegalStateException();
+
+      return arg;
+    }
+  }
+
+  @Test
+  public void testSkipOn() {
+    new AgentBuilder.Default()
+      .with(RedefinitionStrategy.RETRANSFORMATION)
+      .with(InitializationStrategy.NoOp.INSTANCE)
+      .with(TypeStrategy.Default.REDEFINE)
+      .type(is(Service.class))
+      .transform(new Transformer() {
+        @Override
+        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
+          return builder.visit(Advice.to(SkipOn.class).on(named("call")));
+        }
+      }).installOn(ByteBuddyAgent.install());
+
+    final Service service = new Service();
+    assertEquals("ok!", service.call("early"));
+    assertNull(service.call("null"));
+    assertEquals("late", service.call("late"));
+  }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+
+/**
+ * Tests for {@link ErrorRecorder}.
+ *
+ * @author Seva Safris
+ */
+public class ErrorRecorderTest {
+  private static Exception newException(final String message) {
+    return new IllegalStateException(message);
+  }
+
+  @Test
+  public void testOnError() {
+    final MockTracer tracer = new MockTracer();
+    final Exception exception = new IllegalStateException();
+    final MockSpan span = tracer.buildSpan("test").start();
+    ErrorRecorder.onError(span, exception);
+    ErrorRecorder.onError(span, null);
+    span.finish();
+
+    assertEquals(Boolean.TRUE, span.tags().get(Tags.ERROR.getKey()));
+    final List<MockSpan.LogEntry> logEntries = span.logEntries();
+    assertEquals(1, logEntries.size());
+    final Map<String,?> fields = logEntries.get(0).fields();
+    assertEquals(2, fields.size());
+    assertEquals(Tags.ERROR.getKey(), fields.get("event"));
+    assertSame(exception, fields.get("error.object"));
+    assertNull(fields.get("stack"));
+  }
+
+  @Test
+  public void testErrorLogs() {
+    final Exception exception = new IllegalStateException();
+    final Map<String,Object> errorLogs = new ErrorRecorder(0, 0).logs(exception);
+
+    final Map<String,Object> expected = new HashMap<>();
+    expected.put("event", Tags.ERROR.getKey());
+    expected.put("error.object", exception);
+    assertEquals(expected, errorLogs);
+    assertEquals(expected.hashCode(), errorLogs.hashCode());
+    assertTrue(errorLogs.containsKey("error.object"));
+    assertFalse(errorLogs.containsKey("stack"));
+
+    try {
+      errorLogs.put("foo", "bar");
+      fail("Expected UnsupportedOperationException");
+    }
+    catch (final UnsupportedOperationException e) {
+    }
+  }
+
+  @Test
+  public void testStack() {
+    final ErrorRecorder recorder = new ErrorRecorder(2, 0);
+    final Exception exception = newException("test");
+    final String stack = (String)recorder.logs(exception).get("stack");
+    assertNotNull(stack);
+
+    final String[] lines = stack.split("\n");
+    assertEquals(4, lines.length);
+    assertEquals(exception.toString(), lines[0]);
+    assertTrue(lines[1], lines[1].startsWith("\tat " + ErrorRecorderTest.class.getName() + ".newException"));
+    assertEquals("\t... " + (exception.getStackTrace().length - 2) + " more", lines[3]);
+    assertEquals(3, recorder.logs(exception).size());
+  }
+
+  @Test
+  public void testWindow() {
+    final ErrorRecorder recorder = new ErrorRecorder(8, 60000);
+    assertNotNull(recorder.logs(newException("first")).get("stack"));
+
+    // An identical error (same class thrown from the same frame) within the
+    // window has no stack
+    assertNull(recorder.logs(newException("second")).get("stack"));
+
+    // A different error has a stack
+    assertNotNull(recorder.logs(new IllegalArgumentException()).get("stack"));
+  }
+
+  @Test
+  public void testReload() {
+    final ErrorRecorder recorder = ErrorRecorder.instance;
+    assertNull(ErrorRecorder.errorLogs(newException("before")).get("stack"));
+    try {
+      System.setProperty(ErrorRecorder.STACK_PROPERTY, "4");
+      System.setProperty(ErrorRecorder.WINDOW_PROPERTY, "0");
+      assertSame(recorder, ErrorRecorder.instance);
+
+      AgentRule.reload();
+      assertNotSame(recorder, ErrorRecorder.instance);
+      assertNotNull(ErrorRecorder.errorLogs(newException("after")).get("stack"));
+    }
+    finally {
+      System.clearProperty(ErrorRecorder.STACK_PROPERTY);
+      System.clearProperty(ErrorRecorder.WINDOW_PROPERTY);
+      AgentRule.reload();
+    }
+
+    assertNull(ErrorRecorder.errorLogs(newException("cleared")).get("stack"));
+  }
+
+  @Test
+  public void testReloadInvalid() {
+    try {
+      System.setProperty(ErrorRecorder.STACK_PROPERTY, "-1");
+      System.setProperty(ErrorRecorder.WINDOW_PROPERTY, "foo");
+      AgentRule.reload();
+      assertNull(ErrorRecorder.errorLogs(newException("invalid")).get("stack"));
+
+      System.setProperty(ErrorRecorder.STACK_PROPERTY, "4");
+      System.setProperty(ErrorRecorder.WINDOW_PROPERTY, "-1");
+      AgentRule.reload();
+
+      // The invalid window is ignored, and the default window applies
+      assertNotNull(ErrorRecorder.errorLogs(newException("first")).get("stack"));
+      assertNull(ErrorRecorder.errorLogs(newException("second")).get("stack"));
+    }
+    finally {
+      System.clearProperty(ErrorRecorder.STACK_PROPERTY);
+      System.clearProperty(ErrorRecorder.WINDOW_PROPERTY);
+      AgentRule.reload();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeDepth() {
+    new ErrorRecorder(-1, 0);
+  }
+}
@@ -0,0 +1,62 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SamplerTest {
+  private static int countSampled(final Sampler sampler, final int calls) {
+    int sampled = 0;
+    for (int i = 0; i < calls; ++i)
+      if (sampler.isSampled())
+        ++sampled;
+
+    return sampled;
+  }
+
+  @Test
+  public void testParse() {
+    assertSame(Sampler.ALWAYS, Sampler.parse("1"));
+    assertTrue(Sampler.parse("0.5") instanceof Sampler.Probabilistic);
+    assertTrue(Sampler.parse(" 100/s ") instanceof Sampler.RateLimiting);
+    for (final String spec : new String[] {"-0.1", "1.1", "-1/s", "foo", "/s"}) {
+      try {
+        Sampler.parse(spec);
+        fail("Expected IllegalArgumentException: " + spec);
+      }
+      catch (final IllegalArgumentException e) {
+      }
+    }
+  }
+
+  @Test
+  public void testProbabilistic() {
+    assertEquals(0, countSampled(Sampler.parse("0"), 1000));
+    final int sampled = countSampled(Sampler.parse("0.5"), 10000);
+    assertTrue(String.valueOf(sampled), sampled > 4000 && sampled < 6000);
+  }
+
+  @Test
+  public void testRateLimiting() {
+    assertEquals(0, countSampled(Sampler.parse("0/s"), 1000));
+    // The calls below are made well within one second, so only the burst is sampled
+    final int sampled = countSampled(Sampler.parse("10/s"), 1000);
+    assertTrue(String.valueOf(sampled), sampled >= 10 && sampled <= 12);
+    assertEquals(1, countSampled(Sampler.parse("0.5/s"), 1000));
+  }
+}
\ No newline at end of file
@@ -0,0 +1,173 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.opentracing.contrib.specialagent.StatementCapture.Appender;
+import io.opentracing.contrib.specialagent.StatementCapture.Encoder;
+import io.opentracing.contrib.specialagent.StatementCapture.Mode;
+
+/**
+ * Tests for {@link StatementCapture}.
+ *
+ * @author Seva Safris
+ */
+public class StatementCaptureTest {
+  private static final Encoder<List<String>> keysEncoder = new Encoder<List<String>>() {
+    @Override
+    public void encode(final List<String> keys, final Mode mode, final Appender appender) {
+      for (int i = 0; i < keys.size() && !appender.isFull(); ++i) {
+        if (i > 0)
+          appender.append(',');
+
+        appender.append(keys.get(i));
+      }
+    }
+  };
+
+  private static final Encoder<Object> failingEncoder = new Encoder<Object>() {
+    @Override
+    public void encode(final Object value, final Mode mode, final Appender appender) {
+      fail("Encoder must not be called");
+    }
+  };
+
+  @Test
+  public void testParse() {
+    assertSame(StatementCapture.DEFAULT, StatementCapture.parse(null, null));
+    assertEquals(Mode.FULL, StatementCapture.DEFAULT.getMode());
+    assertEquals(1024, StatementCapture.DEFAULT.getMaxLength());
+
+    final StatementCapture keys = StatementCapture.parse(" Keys ", null);
+    assertEquals(Mode.KEYS, keys.getMode());
+    assertEquals(1024, keys.getMaxLength());
+
+    final StatementCapture max = StatementCapture.parse(null, "16");
+    assertEquals(Mode.FULL, max.getMode());
+    assertEquals(16, max.getMaxLength());
+
+    for (final String[] spec : new String[][] {{"foo", null}, {null, "-1"}, {null, "foo"}}) {
+      try {
+        StatementCapture.parse(spec[0], spec[1]);
+        fail("Expected IllegalArgumentException: " + Arrays.toString(spec));
+      }
+      catch (final IllegalArgumentException e) {
+      }
+    }
+  }
+
+  @Test
+  public void testCaptureString() {
+    final StatementCapture capture = StatementCapture.parse(null, "8");
+    assertNull(capture.capture((String)null));
+    assertEquals("SELECT 1", capture.capture("SELECT 1"));
+    assertEquals("SELECT 1...", capture.capture("SELECT 1 FROM DUAL"));
+
+    assertEquals("SELECT 1 FROM DUAL", StatementCapture.parse(null, "0").capture("SELECT 1 FROM DUAL"));
+    assertNull(StatementCapture.parse("none", null).capture("SELECT 1"));
+  }
+
+  @Test
+  public void testCaptureEncoder() {
+    final List<String> keys = Arrays.asList("key-0", "key-1", "key-2");
+    assertEquals("key-0,key-1,key-2", StatementCapture.DEFAULT.capture(keys, keysEncoder));
+    assertEquals("key-0,key-1,k...", StatementCapture.parse(null, "13").capture(keys, keysEncoder));
+    assertEquals("key-0,...", StatementCapture.parse(null, "6").capture(keys, keysEncoder));
+    assertNull(StatementCapture.parse("none", null).capture(keys, failingEncoder));
+    assertNull(StatementCapture.DEFAULT.capture(null, failingEncoder));
+  }
+
+  @Test
+  public void testAppender() {
+    final Appender appender = new Appender(8);
+    appender.append("key".getBytes(StandardCharsets.UTF_8)).append(' ');
+    assertEquals(4, appender.remaining());
+    assertFalse(appender.isFull());
+
+    final byte[] value = new byte[1 << 20];
+    Arrays.fill(value, (byte)'x');
+    appender.append(value);
+    assertTrue(appender.isFull());
+    assertEquals(0, appender.remaining());
+    appender.write("ignored");
+    assertEquals("key xxxx...", appender.toString());
+
+    // toString() does not change the statement
+    assertEquals("key xxxx...", appender.toString());
+    appender.append('x');
+    assertEquals("key xxxx...", appender.toString());
+
+    final Appender partial = new Appender(8).append("key");
+    assertEquals("key", partial.toString());
+    partial.append(" value");
+    assertEquals("key valu...", partial.toString());
+    assertEquals("key valu...", partial.toString());
+
+    final Appender unlimited = new Appender(0);
+    unlimited.append(value);
+    assertFalse(unlimited.isFull());
+    assertEquals(value.length, unlimited.toString().length());
+  }
+
+  @Test
+  public void testAppenderMultibyte() {
+    // "é" is 2 bytes, and "€" is 3 bytes in UTF-8
+    final byte[] bytes = "abé€".getBytes(StandardCharsets.UTF_8);
+
+    final Appender cut = new Appender(4);
+    cut.append(bytes);
+    assertEquals("abé...", cut.toString());
+
+    final Appender cutInLast = new Appender(6);
+    cutInLast.append(bytes);
+    assertEquals("abé...", cutInLast.toString());
+
+    final Appender whole = new Appender(7);
+    whole.append(bytes);
+    assertEquals("abé€", whole.toString());
+  }
+
+  @Test
+  public void testAgentRule() {
+    AgentRule.classNameToName.put(AgentRuleTest.VerboseRule.class.getName(), "statement-test");
+    try {
+      assertSame(StatementCapture.DEFAULT, AgentRule.getStatementCapture(AgentRuleTest.VerboseRule.class));
+
+      System.setProperty("sa.instrumentation.plugin.statement-test.statement", "keys");
+      System.setProperty("sa.instrumentation.plugin.statement-test.statement.max", "64");
+      assertSame(StatementCapture.DEFAULT, AgentRule.getStatementCapture(AgentRuleTest.VerboseRule.class));
+
+      AgentRule.reloadStatementCapture();
+      final StatementCapture capture = AgentRule.getStatementCapture(AgentRuleTest.VerboseRule.class);
+      assertEquals(Mode.KEYS, capture.getMode());
+      assertEquals(64, capture.getMaxLength());
+      assertSame(capture, AgentRule.getStatementCapture(AgentRuleTest.VerboseRule.class));
+    }
+    finally {
+      System.clearProperty("sa.instrumentation.plugin.statement-test.statement");
+      System.clearProperty("sa.instrumentation.plugin.statement-test.statement.max");
+      AgentRule.classNameToName.remove(AgentRuleTest.VerboseRule.class.getName());
+      AgentRule.reloadStatementCapture();
+    }
+  }
+}
@@ -0,0 +1,236 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A {@link Handler} that publishes the log records of the SpecialAgent and its
+ * rules asynchronously, so that the logging threads (i.e. threads that load
+ * classes, or that execute advice) are not serialized by the synchronized
+ * {@code publish} methods of the {@code java.util.logging} handlers.
+ * <p>
+ * The {@code AsyncLogHandler} is installed on the
+ * {@code io.opentracing.contrib.specialagent} logger, in place of its parent
+ * handlers. Logging threads enqueue records into a bounded lock-free ring
+ * buffer. A daemon thread dequeues the records, and publishes them to the
+ * handlers of the root logger. If the ring buffer is full, the record is
+ * dropped, and the count of dropped records is logged at {@link Level#WARNING}
+ * once the ring buffer is drained.
+ * <p>
+ * The message of a record is formatted by the handlers of the root logger, on
+ * the daemon thread. Therefore, a record logged with parameters (i.e.
+ * {@code logger.log(Level.FINEST, "findClass({0})", name)}) costs the logging
+ * thread only the allocation of the record. The source class and method of a
+ * record are not inferred, so that the logger name is logged instead.
+ * <p>
+ * If the {@code AsyncLogHandler} is closed (i.e. by
+ * {@link LogManager#reset()}), the pending records are published, and the
+ * logger reverts to its parent handlers.
+ *
+ * @author Seva Safris
+ */
+final class AsyncLogHandler extends Handler {
+  static final int CAPACITY = 1024;
+  private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static AsyncLogHandler installed;
+
+  /**
+   * Installs an {@code AsyncLogHandler} on the logger with the specified name,
+   * unless one was already installed.
+   *
+   * @param name The name of the logger.
+   */
+  static synchronized void install(final String name) {
+    if (installed != null && !installed.closed)
+      return;
+
+    final Logger logger = Logger.getLogger(name);
+    final AsyncLogHandler handler = new AsyncLogHandler(logger, CAPACITY);
+    logger.addHandler(handler);
+    logger.setUseParentHandlers(false);
+    installed = handler;
+  }
+
+  private final Logger logger;
+  private final AtomicReferenceArray<LogRecord> buffer;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread thread;
+  private volatile long head;
+  private volatile long drained;
+  private volatile boolean parked;
+  private volatile boolean closed;
+
+  /**
+   * Creates a new {@code AsyncLogHandler} with the specified capacity, and
+   * starts its daemon thread.
+   *
+   * @param logger The logger on which the handler is installed.
+   * @param capacity The capacity of the ring buffer, which must be a power of
+   *          two.
+   * @throws IllegalArgumentException If {@code capacity} is not a power of
+   *           two.
+   */
+  AsyncLogHandler(final Logger logger, final int capacity) {
+    if (capacity <= 0 || (capacity & (capacity - 1)) != 0)
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+
+    this.logger = logger;
+    this.buffer = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+    this.thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    }, "specialagent-log");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * @return The count of records that were dropped because the ring buffer was
+   *         full.
+   */
+  long getDroppedCount() {
+    return dropped.get();
+  }
+
+  @Override
+  public void publish(final LogRecord record) {
+    if (closed || !isLoggable(record))
+      return;
+
+    while (true) {
+      final long sequence = tail.get();
+      if (sequence - head > mask) {
+        dropped.incrementAndGet();
+        return;
+      }
+
+      if (tail.compareAndSet(sequence, sequence + 1)) {
+        buffer.lazySet((int)sequence & mask, record);
+        break;
+      }
+    }
+
+    if (parked)
+      LockSupport.unpark(thread);
+  }
+
+  private void drain() {
+    long reported = 0;
+    while (true) {
+      final long sequence = head;
+      final int index = (int)sequence & mask;
+      final LogRecord record = buffer.get(index);
+      if (record != null) {
+        buffer.lazySet(index, null);
+        head = sequence + 1;
+        forward(record);
+        continue;
+      }
+
+      if (sequence != tail.get()) {
+        // A slot was claimed, but the record is not yet set
+        Thread.yield();
+        continue;
+      }
+
+      final long dropped = this.dropped.get();
+      if (dropped != reported) {
+        forward(new LogRecord(Level.WARNING, "Dropped " + (dropped - reported) + " log record(s), because the log buffer of " + (mask + 1) + " records was full"));
+        reported = dropped;
+      }
+
+      drained = sequence;
+      if (closed)
+        return;
+
+      parked = true;
+      if (sequence == tail.get() && !closed)
+        LockSupport.parkNanos(this, PARK_NANOS);
+
+      parked = false;
+    }
+  }
+
+  private void forward(final LogRecord record) {
+    record.setSourceClassName(null);
+    record.setSourceMethodName(null);
+    for (final Handler handler : LogManager.getLogManager().getLogger("").getHandlers()) {
+      try {
+        if (handler != this)
+          handler.publish(record);
+      }
+      catch (final RuntimeException e) {
+        reportError(null, e, ErrorManager.WRITE_FAILURE);
+      }
+    }
+  }
+
+  /**
+   * Waits for the records that are pending upon the call to this method to be
+   * published (for up to 1 second), and flushes the handlers of the root
+   * logger.
+   */
+  @Override
+  public void flush() {
+    if (Thread.currentThread() != thread) {
+      final long sequence = tail.get();
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+      while (drained < sequence && thread.isAlive() && System.nanoTime() - deadline < 0) {
+        LockSupport.unpark(thread);
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+      }
+    }
+
+    for (final Handler handler : LogManager.getLogManager().getLogger("").getHandlers())
+      if (handler != this)
+        handler.flush();
+  }
+
+  @Override
+  public void close() {
+    if (closed)
+      return;
+
+    closed = true;
+    LockSupport.unpark(thread);
+    if (Thread.currentThread() != thread) {
+      try {
+        thread.join(TimeUnit.SECONDS.toMillis(1));
+      }
+      catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    logger.removeHandler(this);
+    logger.setUseParentHandlers(true);
+  }
+}
@@ -31,15 +31,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.bytebuddy.agent.builder.AgentBuilder;
-import net.bytebuddy.agent.builder.AgentBuilder.Identified.Narrowable;
 import net.bytebuddy.agent.builder.AgentBuilder.InitializationStrategy;
-import net.bytebuddy.agent.builder.AgentBuilder.Listener;
 import net.bytebuddy.agent.builder.AgentBuilder.RedefinitionStrategy;
-import net.bytebuddy.agent.builder.AgentBuilder.Transformer;
 import net.bytebuddy.agent.builder.AgentBuilder.TypeStrategy;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType;
-import net.bytebuddy.dynamic.DynamicType.Builder;
 import net.bytebuddy.utility.JavaModule;
 
 /**
@@ -51,18 +47,6 @@ public class ByteBuddyManager extends Manager {
   private static final Logger logger = Logger.getLogger(ByteBuddyManager.class.getName());
   private static final String RULES_FILE = "otarules.mf";
 
-  private static void installOn(final Narrowable builder, final Class<?> advice, final AgentRule agentRule, final Listener listener, final Instrumentation instrumentation) {
-    builder
-      .transform(new Transformer() {
-        @Override
-        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
-          return null;//builder.visit(Advice.to(advice).on(agentRule.onMethod()));
-        }
-      })
-      .with(listener)
-      .installOn(instrumentation);
-  }
-
   private static void assertParent(final AgentBuilder expected, final AgentBuilder builder) {
     try {
       final Class<?> cls = Class.forName("net.bytebuddy.agent.builder.AgentBuilder$Default$Transforming");
@@ -167,12 +151,6 @@ public class ByteBuddyManager extends Manager {
     for (final AgentBuilder builder : builders) {
 //      assertParent(agentBuilder, builder);
       final TransformationListener listener = new TransformationListener(index, events);
-//      if (agentRule.onEn().getOnEnter() != null)
-//        installOn(builder, agentRule.onEn().getOnEnter(), agentRule, listener, instrumentation);
-//
-//      if (agentRule.onEn().getOnExit() != null)
-//        installOn(builder, agentRule.onEn().getOnExit(), agentRule, listener, instrumentation);
-
       builder.with(listener).installOn(inst);
     }
   }
@@ -189,22 +167,30 @@ public class ByteBuddyManager extends Manager {
     @Override
     public void onDiscovery(final String typeName, final ClassLoader classLoader, final JavaModule module, final boolean loaded) {
       if (events[Event.DISCOVERY.ordinal()] != null)
-        logger.severe("Event::onDiscovery(" + typeName + ", " + AssembleUtil.getNameId(classLoader) + ", " + module + ", " + loaded + ")");
+        logger.log(Level.SEVERE, "Event::onDiscovery({0}, {1}, {2}, {3})", new Object[] {typeName, SpecialAgentUtil.nameId(classLoader), module, loaded});
     }
 
     @Override
     public void onTransformation(final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module, final boolean loaded, final DynamicType dynamicType) {
       if (events[Event.TRANSFORMATION.ordinal()] != null)
-        logger.severe("Event::onTransformation(" + typeDescription.getName() + ", " + AssembleUtil.getNameId(classLoader) + ", " + module + ", " + loaded + ", " + dynamicType + ")");
+        logger.log(Level.SEVERE, "Event::onTransformation({0}, {1}, {2}, {3}, {4})", new Object[] {typeDescription.getName(), SpecialAgentUtil.nameId(classLoader), module, loaded, dynamicType});
 
-      if (index != -1 && !SpecialAgent.linkRule(index, classLoader))
+      if (index == -1)
+        return;
+
+      if (SpecialAgent.isAsyncLink()) {
+        if (!SpecialAgent.linkRuleAsync(index, classLoader, typeDescription.getName()))
+          throw new IllegalStateException("Disallowing transformation due to incompatibility, or pending compatibility check");
+      }
+      else if (!SpecialAgent.linkRule(index, classLoader)) {
         throw new IllegalStateException("Disallowing transformation due to incompatibility");
+      }
     }
 
     @Override
     public void onIgnored(final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module, final boolean loaded) {
       if (events[Event.IGNORED.ordinal()] != null)
-        logger.severe("Event::onIgnored(" + typeDescription.getName() + ", " + AssembleUtil.getNameId(classLoader) + ", " + module + ", " + loaded + ")");
+        logger.log(Level.SEVERE, "Event::onIgnored({0}, {1}, {2}, {3})", new Object[] {typeDescription.getName(), SpecialAgentUtil.nameId(classLoader), module, loaded});
     }
 
     @Override
@@ -216,7 +202,7 @@ public class ByteBuddyManager extends Manager {
     @Override
     public void onComplete(final String typeName, final ClassLoader classLoader, final JavaModule module, final boolean loaded) {
       if (events[Event.COMPLETE.ordinal()] != null)
-        logger.severe("Event::onComplete(" + typeName + ", " + AssembleUtil.getNameId(classLoader) + ", " + module + ", " + loaded + ")");
+        logger.log(Level.SEVERE, "Event::onComplete({0}, {1}, {2}, {3})", new Object[] {typeName, SpecialAgentUtil.nameId(classLoader), module, loaded});
     }
   }
 }
\ No newline at end of file
@@ -92,7 +92,7 @@ public class ClassLoaderAgentRule extends AgentRule {
           return;
 
         if (AgentRule.logger.isLoggable(Level.FINEST))
-          AgentRule.logger.finest("<<<<<<<< defineClass(\"" + arg + "\")");
+          AgentRule.logger.log(Level.FINEST, "<<<<<<<< defineClass(\"{0}\")", arg);
 
         final Method defineClass = ClassLoader.class.getDeclaredMethod("defineClass", String.class, byte[].class, int.class, int.class, ProtectionDomain.class);
         returned = (Class<?>)defineClass.invoke(thiz, arg, bytecode, 0, bytecode.length, null);
@@ -33,13 +33,23 @@ import net.bytebuddy.agent.builder.AgentBuilder.RedefinitionStrategy;
 import net.bytebuddy.agent.builder.AgentBuilder.Transformer;
 import net.bytebuddy.agent.builder.AgentBuilder.TypeStrategy;
 import net.bytebuddy.asm.Advice;
+import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType.Builder;
+import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.utility.JavaModule;
 
 public class MutexAgent {
   private static final Logger logger = Logger.getLogger(MutexAgent.class.getName());
 
+  /**
+   * The methods of the OpenTracing API types, which are the entry points into
+   * the tracer. Methods of the tracer implementation that are not declared in
+   * these types are only called from within the entry points, and are thus
+   * already covered by the latch.
+   */
+  private static final ElementMatcher<MethodDescription> entryPoints = isOverriddenFrom(Tracer.class).or(isOverriddenFrom(Scope.class)).or(isOverriddenFrom(ScopeManager.class)).or(isOverriddenFrom(Span.class)).or(isOverriddenFrom(SpanBuilder.class)).or(isOverriddenFrom(SpanContext.class));
+
   public static void premain(final Instrumentation inst) {
     if (logger.isLoggable(Level.FINE))
       logger.fine("\n<<<<<<<<<<<<<<<<<< Installing AgentRunnerUtil >>>>>>>>>>>>>>>>>>>\n");
@@ -53,20 +63,20 @@ public class MutexAgent {
       .transform(new Transformer() {
         @Override
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
-          return builder.visit(Advice.to(MutexAgent.class).on(isPublic().and(any())));
+          return builder.visit(Advice.to(MutexAgent.class).on(isPublic().and(isMethod()).and(entryPoints)));
         }})
       .installOn(inst);
   }
 
   @Advice.OnMethodEnter
-  public static void enter() {
-    final ThreadLocal<Integer> latch = AgentRule.latch;
-    latch.set(latch.get() + 1);
+  public static int[] enter() {
+    final int[] latch = AgentRule.latch.get();
+    ++latch[0];
+    return latch;
   }
 
-  @Advice.OnMethodExit
-  public static void exit() {
-    final ThreadLocal<Integer> latch = AgentRule.latch;
-    latch.set(latch.get() - 1);
+  @Advice.OnMethodExit(onThrowable = Throwable.class)
+  public static void exit(final @Advice.Enter int[] latch) {
+    --latch[0];
   }
 }
\ No newline at end of file
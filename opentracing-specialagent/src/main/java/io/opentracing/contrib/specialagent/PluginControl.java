@@ -0,0 +1,82 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The JMX MBean for the runtime enabling and disabling of Instrumentation
+ * Plugins, which is registered as {@value #OBJECT_NAME} in the platform
+ * {@code MBeanServer}. A disabled plugin's advice remains in place, but the
+ * intercepted calls of its rules are not traced.
+ *
+ * @author Seva Safris
+ */
+public class PluginControl implements PluginControlMBean {
+  static final String OBJECT_NAME = "io.opentracing.contrib.specialagent:type=PluginControl";
+
+  /**
+   * Registers a {@code PluginControl} in the platform {@code MBeanServer}.
+   */
+  static void register() {
+    SpecialAgentUtil.registerMBean(new PluginControl(), OBJECT_NAME);
+  }
+
+  private static String assertLoaded(final String pluginName) {
+    if (!AgentRule.getPluginNames().contains(pluginName))
+      throw new IllegalArgumentException("Plugin is not loaded: " + pluginName);
+
+    return pluginName;
+  }
+
+  @Override
+  public String[] getPluginNames() {
+    final Set<String> pluginNames = AgentRule.getPluginNames();
+    return pluginNames.toArray(new String[pluginNames.size()]);
+  }
+
+  @Override
+  public String[] getDisabledPluginNames() {
+    final List<String> disabled = new ArrayList<>();
+    for (final String pluginName : AgentRule.getPluginNames())
+      if (!AgentRule.isPluginEnabled(pluginName))
+        disabled.add(pluginName);
+
+    return disabled.toArray(new String[disabled.size()]);
+  }
+
+  @Override
+  public boolean isEnabled(final String pluginName) {
+    return AgentRule.isPluginEnabled(assertLoaded(pluginName));
+  }
+
+  @Override
+  public void enable(final String pluginName) {
+    AgentRule.setPluginEnabled(assertLoaded(pluginName), true);
+  }
+
+  @Override
+  public void disable(final String pluginName) {
+    AgentRule.setPluginEnabled(assertLoaded(pluginName), false);
+  }
+
+  @Override
+  public void reload() {
+    AgentRule.reload();
+  }
+}
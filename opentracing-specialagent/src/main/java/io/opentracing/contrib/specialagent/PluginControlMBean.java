@@ -0,0 +1,71 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+/**
+ * The management interface for the runtime enabling and disabling of
+ * Instrumentation Plugins.
+ *
+ * @author Seva Safris
+ */
+public interface PluginControlMBean {
+  /**
+   * @return The names of the loaded Instrumentation Plugins.
+   */
+  String[] getPluginNames();
+
+  /**
+   * @return The names of the Instrumentation Plugins that are disabled at
+   *         runtime.
+   */
+  String[] getDisabledPluginNames();
+
+  /**
+   * Tests whether the Instrumentation Plugin with the specified name is
+   * enabled.
+   *
+   * @param pluginName The name of the Instrumentation Plugin.
+   * @return Whether the Instrumentation Plugin with the specified name is
+   *         enabled.
+   */
+  boolean isEnabled(String pluginName);
+
+  /**
+   * Enables the Instrumentation Plugin with the specified name.
+   *
+   * @param pluginName The name of the Instrumentation Plugin.
+   * @throws IllegalArgumentException If a plugin with the specified name is
+   *           not loaded.
+   */
+  void enable(String pluginName);
+
+  /**
+   * Disables the Instrumentation Plugin with the specified name.
+   *
+   * @param pluginName The name of the Instrumentation Plugin.
+   * @throws IllegalArgumentException If a plugin with the specified name is
+   *           not loaded.
+   */
+  void disable(String pluginName);
+
+  /**
+   * Reloads the settings of the Instrumentation Plugins (i.e. the verbose mode,
+   * the sampling, the statement capture and the error stack capture) from the
+   * system properties, so that changes to the system properties at runtime
+   * take effect.
+   */
+  void reload();
+}
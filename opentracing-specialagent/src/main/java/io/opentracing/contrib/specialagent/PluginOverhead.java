@@ -0,0 +1,138 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The reporter of the time spent in the advice methods of each Instrumentation
+ * Rule, as accounted by {@link AdviceOverhead}. The counters are reported via
+ * the JMX MBean that is registered as {@value #OBJECT_NAME} in the platform
+ * {@code MBeanServer}, and via a periodic summary in the log.
+ *
+ * @author Seva Safris
+ */
+public class PluginOverhead implements PluginOverheadMBean {
+  private static final Logger logger = Logger.getLogger(PluginOverhead.class.getName());
+  static final String OBJECT_NAME = "io.opentracing.contrib.specialagent:type=PluginOverhead";
+
+  /**
+   * Registers a {@code PluginOverhead} in the platform {@code MBeanServer}.
+   */
+  static void register() {
+    SpecialAgentUtil.registerMBean(new PluginOverhead(), OBJECT_NAME);
+  }
+
+  /**
+   * Schedules the summary of the counters of each rule, that were invoked
+   * since the start, to be logged at {@link Level#INFO} at the specified
+   * interval, on a daemon thread.
+   *
+   * @param interval The interval, in seconds.
+   * @throws IllegalArgumentException If the interval is not positive.
+   */
+  static void schedule(final long interval) {
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "specialagent-overhead");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    executor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        if (!logger.isLoggable(Level.INFO))
+          return;
+
+        final StringBuilder builder = new StringBuilder();
+        for (final String line : summarize(true))
+          builder.append("\n  ").append(line);
+
+        if (builder.length() > 0)
+          logger.info("Advice overhead:" + builder);
+      }
+    }, interval, interval, TimeUnit.SECONDS);
+  }
+
+  private static List<String> summarize(final boolean invokedOnly) {
+    final List<String> lines = new ArrayList<>();
+    for (final AdviceOverhead.Snapshot snapshot : AdviceOverhead.getSnapshots().values()) {
+      if (invokedOnly && snapshot.getCount() == 0)
+        continue;
+
+      final String pluginName = AgentRule.classNameToName.get(snapshot.getRuleClassName());
+      lines.add(pluginName != null ? pluginName + " " + snapshot : snapshot.toString());
+    }
+
+    return lines;
+  }
+
+  private static AdviceOverhead.Snapshot getSnapshot(final String ruleClassName) {
+    final AdviceOverhead.Snapshot snapshot = AdviceOverhead.getSnapshots().get(ruleClassName);
+    if (snapshot == null)
+      throw new IllegalArgumentException("Rule is not accounted: " + ruleClassName);
+
+    return snapshot;
+  }
+
+  @Override
+  public String[] getRuleClassNames() {
+    final Map<String,AdviceOverhead.Snapshot> snapshots = AdviceOverhead.getSnapshots();
+    return snapshots.keySet().toArray(new String[snapshots.size()]);
+  }
+
+  @Override
+  public String[] getSummary() {
+    final List<String> lines = summarize(false);
+    return lines.toArray(new String[lines.size()]);
+  }
+
+  @Override
+  public long getInvocationCount(final String ruleClassName) {
+    return getSnapshot(ruleClassName).getCount();
+  }
+
+  @Override
+  public long getTotalNanos(final String ruleClassName) {
+    return getSnapshot(ruleClassName).getTotalNanos();
+  }
+
+  @Override
+  public long getMeanNanos(final String ruleClassName) {
+    return getSnapshot(ruleClassName).getMeanNanos();
+  }
+
+  @Override
+  public long getPercentileNanos(final String ruleClassName, final double percentile) {
+    return getSnapshot(ruleClassName).getPercentileNanos(percentile);
+  }
+
+  @Override
+  public void reset() {
+    AdviceOverhead.reset();
+  }
+}
@@ -0,0 +1,77 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+/**
+ * The management interface for the accounting of the time spent in the advice
+ * methods of each Instrumentation Rule.
+ *
+ * @author Seva Safris
+ */
+public interface PluginOverheadMBean {
+  /**
+   * @return The names of the rule classes, the advice methods of which are
+   *         accounted.
+   */
+  String[] getRuleClassNames();
+
+  /**
+   * @return A summary of the counters of each rule, one line per rule.
+   */
+  String[] getSummary();
+
+  /**
+   * @param ruleClassName The name of the rule class.
+   * @return The count of invocations of the advice methods of the rule.
+   * @throws IllegalArgumentException If the advice methods of the rule are
+   *           not accounted.
+   */
+  long getInvocationCount(String ruleClassName);
+
+  /**
+   * @param ruleClassName The name of the rule class.
+   * @return The total time spent in the advice methods of the rule, in
+   *         nanoseconds.
+   * @throws IllegalArgumentException If the advice methods of the rule are
+   *           not accounted.
+   */
+  long getTotalNanos(String ruleClassName);
+
+  /**
+   * @param ruleClassName The name of the rule class.
+   * @return The mean time spent in an invocation of an advice method of the
+   *         rule, in nanoseconds.
+   * @throws IllegalArgumentException If the advice methods of the rule are
+   *           not accounted.
+   */
+  long getMeanNanos(String ruleClassName);
+
+  /**
+   * @param ruleClassName The name of the rule class.
+   * @param percentile The percentile, between {@code 0} and {@code 100}.
+   * @return The upper bound of the time spent in the specified percentile of
+   *         invocations of the advice methods of the rule, in nanoseconds.
+   * @throws IllegalArgumentException If the advice methods of the rule are
+   *           not accounted, or if the percentile is not between {@code 0}
+   *           and {@code 100}.
+   */
+  long getPercentileNanos(String ruleClassName, double percentile);
+
+  /**
+   * Resets the counters of all rules to zero.
+   */
+  void reset();
+}
@@ -15,11 +15,13 @@
 
 package io.opentracing.contrib.specialagent;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -32,6 +34,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.jar.JarFile;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -59,6 +64,10 @@ public class SpecialAgent {
   static final String TRACER_PROPERTY = "sa.tracer";
   static final String EVENTS_PROPERTY = "sa.log.events";
   static final String LOGGING_PROPERTY = "sa.log.level";
+  static final String LOGGING_ASYNC_PROPERTY = "sa.log.async";
+  static final String FINGERPRINT_ASYNC_PROPERTY = "sa.fingerprint.async";
+  static final String JMX_PROPERTY = "sa.instrumentation.plugins.jmx";
+  static final String OVERHEAD_INTERVAL_PROPERTY = "sa.instrumentation.plugins.overhead.interval";
 
   static final String DEPENDENCIES_TGF = "dependencies.tgf";
   static final String TRACER_FACTORY = "META-INF/services/io.opentracing.contrib.tracerresolver.TracerFactory";
@@ -89,9 +98,11 @@ public class SpecialAgent {
   private static final Map<File,PluginManifest> fileToPluginManifest = new HashMap<>();
   private static final ClassLoaderMap<Map<Integer,Boolean>> classLoaderToCompatibility = new ClassLoaderMap<>();
   private static final ClassLoaderMap<List<RuleClassLoader>> classLoaderToRuleClassLoader = new ClassLoaderMap<>();
+  private static final ClassLoaderMap<Map<Integer,Set<String>>> classLoaderToDeferredTypes = new ClassLoaderMap<>();
   private static final String DEFINE_CLASS = ClassLoader.class.getName() + ".defineClass";
 
   private static AllPluginsClassLoader allPluginsClassLoader;
+  static ExecutorService linkExecutor;
 
   // FIXME: ByteBuddy is now the only Instrumenter. Should this complexity be removed?
   private static final Instrumenter instrumenter = Instrumenter.BYTEBUDDY;
@@ -129,13 +140,17 @@ public class SpecialAgent {
         for (final Handler handler : rootLogger.getHandlers())
           handler.setLevel(level);
       }
+
+      // Publish the log records of the agent and its rules asynchronously
+      if (!"false".equals(System.getProperty(LOGGING_ASYNC_PROPERTY)))
+        AsyncLogHandler.install(SpecialAgent.class.getPackage().getName());
     }
     catch (final IOException e) {
       throw new ExceptionInInitializerError(e);
     }
   }
 
-  private static Instrumentation inst;
+  static Instrumentation inst;
 
   public static void main(final String[] args) throws Exception {
     if (args.length != 1) {
@@ -195,6 +210,20 @@ public class SpecialAgent {
       properties.put(key, property.getValue() == null ? null : String.valueOf(property.getValue()));
     }
 
+    if (linkExecutor == null && Boolean.parseBoolean(properties.get(FINGERPRINT_ASYNC_PROPERTY))) {
+      if (logger.isLoggable(Level.FINE))
+        logger.fine("Fingerprint verification will be performed asynchronously");
+
+      linkExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+          final Thread thread = new Thread(runnable, "specialagent-fingerprint");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+
     final HashMap<String,Boolean> instruPlugins = new HashMap<>();
     final HashMap<String,Boolean> tracerPlugins = new HashMap<>();
     for (final Map.Entry<String,String> property : properties.entrySet()) {
@@ -254,6 +283,25 @@ public class SpecialAgent {
 
     loadTracer();
     loadRules();
+
+    final boolean jmx = Boolean.parseBoolean(properties.get(JMX_PROPERTY));
+    if (jmx)
+      PluginControl.register();
+
+    if (AdviceOverhead.enabled) {
+      if (jmx)
+        PluginOverhead.register();
+
+      final String interval = properties.get(OVERHEAD_INTERVAL_PROPERTY);
+      try {
+        final long seconds = interval != null ? Long.parseLong(interval.trim()) : 60;
+        if (seconds > 0)
+          PluginOverhead.schedule(seconds);
+      }
+      catch (final NumberFormatException e) {
+        logger.warning("Ignoring " + OVERHEAD_INTERVAL_PROPERTY + ": " + interval);
+      }
+    }
   }
 
   static class AllPluginsClassLoader extends URLClassLoader {
@@ -278,6 +326,41 @@ public class SpecialAgent {
       return filesArray;
     }
 
+    /**
+     * Returns the resource by the specified name. If the advice overhead
+     * accounting is enabled (see {@link AdviceOverhead}), the bytecode of a
+     * rule class (or of a class nested in a rule class) is returned with its
+     * advice methods rewritten to record their invocations. ByteBuddy reads the
+     * bytecode of advice classes via this method.
+     */
+    @Override
+    public InputStream getResourceAsStream(final String name) {
+      final InputStream in = super.getResourceAsStream(name);
+      if (in == null || !AdviceOverhead.enabled || !name.endsWith(".class"))
+        return in;
+
+      final String className = name.substring(0, name.length() - 6).replace('/', '.');
+      final int index = className.indexOf('$');
+      final String ruleClassName = index == -1 ? className : className.substring(0, index);
+      if (!AgentRule.classNameToName.containsKey(ruleClassName))
+        return in;
+
+      try {
+        return new ByteArrayInputStream(AdviceOverhead.instrument(AssembleUtil.readBytes(in), ruleClassName));
+      }
+      catch (final IOException e) {
+        logger.log(Level.WARNING, "Unable to account advice overhead of " + ruleClassName, e);
+        return super.getResourceAsStream(name);
+      }
+      finally {
+        try {
+          in.close();
+        }
+        catch (final IOException e) {
+        }
+      }
+    }
+
     public boolean containsPath(final File file) {
       return files.contains(file);
     }
@@ -525,18 +608,140 @@ public class SpecialAgent {
     }
   }
 
-  @SuppressWarnings("resource")
-  public static boolean linkRule(final int index, final ClassLoader classLoader) {
-    Map<Integer,Boolean> indexToCompatibility = classLoaderToCompatibility.get(classLoader);
-    Boolean compatible;
-    if (indexToCompatibility != null) {
-      compatible = indexToCompatibility.get(index);
+  private static Boolean getCompatibility(final int index, final ClassLoader classLoader) {
+    synchronized (classLoaderToCompatibility) {
+      final Map<Integer,Boolean> indexToCompatibility = classLoaderToCompatibility.get(classLoader);
+      return indexToCompatibility == null ? null : indexToCompatibility.get(index);
     }
-    else {
-      classLoaderToCompatibility.put(classLoader, indexToCompatibility = new HashMap<>());
-      compatible = null;
+  }
+
+  static void setCompatibility(final int index, final ClassLoader classLoader, final boolean compatible) {
+    synchronized (classLoaderToCompatibility) {
+      Map<Integer,Boolean> indexToCompatibility = classLoaderToCompatibility.get(classLoader);
+      if (indexToCompatibility == null)
+        classLoaderToCompatibility.put(classLoader, indexToCompatibility = new HashMap<>());
+
+      indexToCompatibility.put(index, compatible);
     }
+  }
 
+  /**
+   * @return Whether fingerprint verification is performed asynchronously, as
+   *         specified by the {@value #FINGERPRINT_ASYNC_PROPERTY} system
+   *         property.
+   */
+  static boolean isAsyncLink() {
+    return linkExecutor != null;
+  }
+
+  /**
+   * Asynchronous variant of {@link #linkRule(int,ClassLoader)}. The first
+   * sighting of the rule (identified by {@code index}) in {@code classLoader}
+   * schedules the compatibility check on a background thread, and returns
+   * {@code false} so that {@code typeName} is left uninstrumented. All type
+   * names encountered while the check is pending are recorded, and are
+   * retransformed once the rule is linked successfully.
+   *
+   * @param index The index of the rule JAR in {@link #allPluginsClassLoader}.
+   * @param classLoader The {@code ClassLoader} of the type being transformed.
+   * @param typeName The name of the type being transformed.
+   * @return {@code true} if the rule has already been linked to
+   *         {@code classLoader}, and {@code false} if the rule is incompatible,
+   *         or if its compatibility check is pending.
+   */
+  static boolean linkRuleAsync(final int index, final ClassLoader classLoader, final String typeName) {
+    synchronized (classLoaderToDeferredTypes) {
+      Map<Integer,Set<String>> indexToDeferredTypes = classLoaderToDeferredTypes.get(classLoader);
+      if (indexToDeferredTypes != null) {
+        final Set<String> deferredTypes = indexToDeferredTypes.get(index);
+        if (deferredTypes != null) {
+          deferredTypes.add(typeName);
+          return false;
+        }
+      }
+
+      final Boolean compatible = getCompatibility(index, classLoader);
+      if (compatible != null)
+        return compatible;
+
+      if (indexToDeferredTypes == null)
+        classLoaderToDeferredTypes.put(classLoader, indexToDeferredTypes = new HashMap<>());
+
+      final Set<String> deferredTypes = new HashSet<>();
+      deferredTypes.add(typeName);
+      indexToDeferredTypes.put(index, deferredTypes);
+    }
+
+    if (logger.isLoggable(Level.FINER))
+      logger.log(Level.FINER, "SpecialAgent#linkRuleAsync({0}, {1}): Deferring \"{2}\" until compatibility is verified", new Object[] {index, SpecialAgentUtil.nameId(classLoader), typeName});
+
+    linkExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        linkDeferred(index, classLoader);
+      }
+    });
+
+    return false;
+  }
+
+  /**
+   * Links the rule (identified by {@code index}) to {@code classLoader}, and
+   * retransforms the types that were deferred by
+   * {@link #linkRuleAsync(int,ClassLoader,String)} if the rule is compatible.
+   *
+   * @param index The index of the rule JAR in {@link #allPluginsClassLoader}.
+   * @param classLoader The {@code ClassLoader} to link.
+   */
+  private static void linkDeferred(final int index, final ClassLoader classLoader) {
+    boolean compatible;
+    try {
+      compatible = linkRule(index, classLoader);
+    }
+    catch (final Throwable t) {
+      logger.log(Level.SEVERE, "SpecialAgent#linkDeferred(" + index + ", " + AssembleUtil.getNameId(classLoader) + "): Failed to link rule", t);
+      setCompatibility(index, classLoader, compatible = false);
+    }
+
+    final Set<String> deferredTypes;
+    synchronized (classLoaderToDeferredTypes) {
+      final Map<Integer,Set<String>> indexToDeferredTypes = classLoaderToDeferredTypes.get(classLoader);
+      deferredTypes = indexToDeferredTypes.remove(index);
+      if (indexToDeferredTypes.isEmpty())
+        classLoaderToDeferredTypes.remove(classLoader);
+    }
+
+    if (!compatible)
+      return;
+
+    final List<Class<?>> classes = new ArrayList<>(deferredTypes.size());
+    for (final String typeName : deferredTypes) {
+      try {
+        classes.add(Class.forName(typeName, false, classLoader));
+      }
+      catch (final ClassNotFoundException | LinkageError e) {
+        if (logger.isLoggable(Level.FINE))
+          logger.log(Level.FINE, "SpecialAgent#linkDeferred(" + index + ", " + AssembleUtil.getNameId(classLoader) + "): Unable to resolve deferred type \"" + typeName + "\"", e);
+      }
+    }
+
+    if (classes.size() == 0)
+      return;
+
+    if (logger.isLoggable(Level.FINER))
+      logger.log(Level.FINER, "SpecialAgent#linkDeferred({0}, {1}): Retransforming {2} deferred type(s)", new Object[] {index, SpecialAgentUtil.nameId(classLoader), classes.size()});
+
+    try {
+      inst.retransformClasses(classes.toArray(new Class<?>[classes.size()]));
+    }
+    catch (final UnmodifiableClassException e) {
+      logger.log(Level.WARNING, "SpecialAgent#linkDeferred(" + index + ", " + AssembleUtil.getNameId(classLoader) + "): Failed to retransform deferred types", e);
+    }
+  }
+
+  @SuppressWarnings("resource")
+  public static boolean linkRule(final int index, final ClassLoader classLoader) {
+    Boolean compatible = getCompatibility(index, classLoader);
     if (compatible != null && compatible) {
       if (logger.isLoggable(Level.FINER)) {
         final File rulePath = allPluginsClassLoader.getFiles()[index];
@@ -565,7 +770,7 @@ public class SpecialAgent {
     // Create an isolated (no parent class loader) URLClassLoader with the rulePaths
     final RuleClassLoader ruleClassLoader = new RuleClassLoader(pluginManifest, classLoader, rulePaths);
     compatible = ruleClassLoader.isCompatible(classLoader);
-    indexToCompatibility.put(index, compatible);
+    setCompatibility(index, classLoader, compatible);
     if (!compatible) {
       try {
         ruleClassLoader.close();
@@ -651,7 +856,7 @@ public class SpecialAgent {
     final List<RuleClassLoader> ruleClassLoaders = classLoaderToRuleClassLoader.get(classLoader);
     if (ruleClassLoaders == null) {
       if (logger.isLoggable(Level.FINEST))
-        logger.finest(">>>>>>>> findClass(" + AssembleUtil.getNameId(classLoader) + ", \"" + name + "\"): Missing RuleClassLoader");
+        logger.log(Level.FINEST, ">>>>>>>> findClass({0}, \"{1}\"): Missing RuleClassLoader", new Object[] {SpecialAgentUtil.nameId(classLoader), name});
 
       return null;
     }
@@ -670,7 +875,7 @@ public class SpecialAgent {
         // for the same class)
         if (ruleClassLoader.markFindResource(classLoader, resourceName)) {
           if (logger.isLoggable(Level.FINEST))
-            logger.finest(">>>>>>>> findClass(" + AssembleUtil.getNameId(classLoader) + ", \"" + name + "\"): REDUNDANT CALL");
+            logger.log(Level.FINEST, ">>>>>>>> findClass({0}, \"{1}\"): REDUNDANT CALL", new Object[] {SpecialAgentUtil.nameId(classLoader), name});
 
           return null;
         }
@@ -678,21 +883,21 @@ public class SpecialAgent {
         // Return the resource's bytes
         final byte[] bytecode = AssembleUtil.readBytes(resource);
         if (logger.isLoggable(Level.FINEST))
-          logger.finest(">>>>>>>> findClass(" + AssembleUtil.getNameId(classLoader) + ", \"" + name + "\"): BYTECODE != null (" + (bytecode != null) + ")");
+          logger.log(Level.FINEST, ">>>>>>>> findClass({0}, \"{1}\"): BYTECODE != null ({2})", new Object[] {SpecialAgentUtil.nameId(classLoader), name, bytecode != null});
 
         return bytecode;
       }
     }
 
     if (logger.isLoggable(Level.FINEST))
-      logger.finest(">>>>>>>> findClass(" + AssembleUtil.getNameId(classLoader) + ", \"" + name + "\"): Not found in " + size + " RuleClassLoader(s)");
+      logger.log(Level.FINEST, ">>>>>>>> findClass({0}, \"{1}\"): Not found in {2} RuleClassLoader(s)", new Object[] {SpecialAgentUtil.nameId(classLoader), name, size});
 
     return null;
   }
 
   public static URL findResource(final ClassLoader classLoader, final String name) {
     if (logger.isLoggable(Level.FINEST))
-      logger.finest(">>>>>>>> findResource(" + AssembleUtil.getNameId(classLoader) + ", \"" + name + "\")");
+      logger.log(Level.FINEST, ">>>>>>>> findResource({0}, \"{1}\")", new Object[] {SpecialAgentUtil.nameId(classLoader), name});
 
     // Check if the class loader matches a ruleClassLoader
     final List<RuleClassLoader> ruleClassLoaders = classLoaderToRuleClassLoader.get(classLoader);
@@ -710,7 +915,7 @@ public class SpecialAgent {
 
   public static Enumeration<URL> findResources(final ClassLoader classLoader, final String name) throws IOException {
     if (logger.isLoggable(Level.FINEST))
-      logger.finest(">>>>>>>> findResources(" + AssembleUtil.getNameId(classLoader) + ", \"" + name + "\")");
+      logger.log(Level.FINEST, ">>>>>>>> findResources({0}, \"{1}\")", new Object[] {SpecialAgentUtil.nameId(classLoader), name});
 
     // Check if the class loader matches a ruleClassLoader
     final List<RuleClassLoader> ruleClassLoaders = classLoaderToRuleClassLoader.get(classLoader);
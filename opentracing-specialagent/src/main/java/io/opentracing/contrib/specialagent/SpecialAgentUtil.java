@@ -18,6 +18,7 @@ package io.opentracing.contrib.specialagent;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.JarURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -40,6 +41,10 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import io.opentracing.contrib.specialagent.Manager.Event;
 
 /**
@@ -403,6 +408,48 @@ public final class SpecialAgentUtil {
     return events;
   }
 
+  /**
+   * Returns an object, the {@code toString()} of which returns
+   * {@link AssembleUtil#getNameId(Object)} of the specified object. The object
+   * is meant to be passed as a parameter of a log record, so that the name is
+   * only rendered if (and when) the record is formatted.
+   *
+   * @param obj The object.
+   * @return An object, the {@code toString()} of which returns
+   *         {@link AssembleUtil#getNameId(Object)} of the specified object.
+   */
+  static Object nameId(final Object obj) {
+    return new Object() {
+      @Override
+      public String toString() {
+        return AssembleUtil.getNameId(obj);
+      }
+    };
+  }
+
+  /**
+   * Registers the specified MBean in the platform {@code MBeanServer} with the
+   * specified object name, unless an MBean is already registered with that
+   * name. A failure to register is logged, and is otherwise ignored.
+   *
+   * @param mbean The MBean.
+   * @param name The object name.
+   */
+  static void registerMBean(final Object mbean, final String name) {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName objectName = new ObjectName(name);
+      if (!server.isRegistered(objectName))
+        server.registerMBean(mbean, objectName);
+
+      if (logger.isLoggable(Level.FINE))
+        logger.fine("Registered MBean " + name);
+    }
+    catch (final JMException | RuntimeException e) {
+      logger.log(Level.WARNING, "Unable to register MBean " + name, e);
+    }
+  }
+
   private SpecialAgentUtil() {
   }
 }
\ No newline at end of file
@@ -351,7 +351,8 @@ public class AgentRunner extends BlockJUnit4ClassRunner {
   private final PluginManifest pluginManifest;
 
   private void setVerbose(final boolean verbose) {
-    System.setProperty("sa.instrumentation.plugin." + pluginManifest.name, String.valueOf(verbose));
+    System.setProperty("sa.instrumentation.plugin." + pluginManifest.name + ".verbose", String.valueOf(verbose));
+    AgentRule.reloadVerbose();
   }
 
   /**
@@ -0,0 +1,145 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AsyncLogHandler}.
+ *
+ * @author Seva Safris
+ */
+public class AsyncLogHandlerTest {
+  private static final Formatter formatter = new SimpleFormatter();
+
+  private final Logger logger = Logger.getLogger(AsyncLogHandlerTest.class.getName());
+  private final Logger rootLogger = LogManager.getLogManager().getLogger("");
+  private final List<String> messages = new ArrayList<>();
+  private final CountDownLatch entered = new CountDownLatch(1);
+  private final CountDownLatch released = new CountDownLatch(1);
+  private boolean block;
+
+  private final Handler capture = new Handler() {
+    @Override
+    public void publish(final LogRecord record) {
+      if (block) {
+        entered.countDown();
+        try {
+          released.await(5, TimeUnit.SECONDS);
+        }
+        catch (final InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+
+      synchronized (messages) {
+        messages.add(formatter.formatMessage(record));
+      }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+
+  private AsyncLogHandler handler;
+
+  @Before
+  public void before() {
+    rootLogger.addHandler(capture);
+    logger.setLevel(Level.ALL);
+  }
+
+  @After
+  public void after() {
+    if (handler != null)
+      handler.close();
+
+    rootLogger.removeHandler(capture);
+  }
+
+  private AsyncLogHandler install(final int capacity) {
+    handler = new AsyncLogHandler(logger, capacity);
+    logger.addHandler(handler);
+    logger.setUseParentHandlers(false);
+    return handler;
+  }
+
+  @Test
+  public void testPublish() {
+    install(128);
+    for (int i = 0; i < 100; ++i)
+      logger.log(Level.FINEST, "message {0}", i);
+
+    handler.flush();
+    assertEquals(100, messages.size());
+    for (int i = 0; i < 100; ++i)
+      assertEquals("message " + i, messages.get(i));
+
+    assertEquals(0, handler.getDroppedCount());
+
+    handler.close();
+    assertTrue(logger.getUseParentHandlers());
+    assertEquals(0, logger.getHandlers().length);
+  }
+
+  @Test
+  public void testDropped() throws InterruptedException {
+    install(4);
+    block = true;
+    logger.warning("first");
+    assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+    // The first record is dequeued, so the buffer fits 4 more
+    for (int i = 0; i < 7; ++i)
+      logger.warning("message " + i);
+
+    assertEquals(3, handler.getDroppedCount());
+    block = false;
+    released.countDown();
+    handler.flush();
+
+    assertEquals(6, messages.size());
+    assertEquals("first", messages.get(0));
+    assertEquals("message 3", messages.get(4));
+    assertTrue(messages.get(5), messages.get(5).startsWith("Dropped 3 log record(s)"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCapacity() {
+    new AsyncLogHandler(logger, 3);
+  }
+}
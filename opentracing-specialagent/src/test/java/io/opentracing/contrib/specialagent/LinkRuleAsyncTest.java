@@ -0,0 +1,179 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.opentracing.contrib.specialagent.Manager.Event;
+import net.bytebuddy.description.type.TypeDescription;
+
+/**
+ * Tests for {@link SpecialAgent#linkRuleAsync(int,ClassLoader,String)}, and
+ * the deferred retransformation of the types that it leaves uninstrumented.
+ *
+ * @author Seva Safris
+ */
+public class LinkRuleAsyncTest {
+  // An index that is not the index of any rule JAR, so that linkRule fails
+  // unless the compatibility of the rule is set by the test
+  private static final int INDEX = Integer.MAX_VALUE;
+
+  /**
+   * An {@link ExecutorService} that records the tasks, which are run by the
+   * test with {@link #runAll()}.
+   */
+  private static final class RecordingExecutor extends AbstractExecutorService {
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    void runAll() {
+      for (final Runnable task : tasks)
+        task.run();
+
+      tasks.clear();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+      tasks.add(command);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return false;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+      return true;
+    }
+  }
+
+  private final RecordingExecutor executor = new RecordingExecutor();
+  private final List<Class<?>> retransformed = new ArrayList<>();
+  private ExecutorService linkExecutor;
+  private Instrumentation inst;
+  private URLClassLoader classLoader;
+
+  @Before
+  public void before() {
+    linkExecutor = SpecialAgent.linkExecutor;
+    inst = SpecialAgent.inst;
+    SpecialAgent.linkExecutor = executor;
+    SpecialAgent.inst = (Instrumentation)Proxy.newProxyInstance(Instrumentation.class.getClassLoader(), new Class<?>[] {Instrumentation.class}, new InvocationHandler() {
+      @Override
+      public Object invoke(final Object proxy, final Method method, final Object[] args) {
+        if (!"retransformClasses".equals(method.getName()))
+          throw new UnsupportedOperationException(method.getName());
+
+        retransformed.addAll(Arrays.asList((Class<?>[])args[0]));
+        return null;
+      }
+    });
+
+    // A class loader of its own for each test, so that the compatibility and
+    // deferred types of one test are not seen by another
+    classLoader = new URLClassLoader(new URL[0], LinkRuleAsyncTest.class.getClassLoader());
+  }
+
+  @After
+  public void after() throws IOException {
+    SpecialAgent.linkExecutor = linkExecutor;
+    SpecialAgent.inst = inst;
+    classLoader.close();
+  }
+
+  @Test
+  public void testDeferred() {
+    assertTrue(SpecialAgent.isAsyncLink());
+
+    // The first sighting schedules the check, and later sightings are only
+    // recorded while the check is pending
+    assertFalse(SpecialAgent.linkRuleAsync(INDEX, classLoader, String.class.getName()));
+    assertEquals(1, executor.tasks.size());
+    assertFalse(SpecialAgent.linkRuleAsync(INDEX, classLoader, Integer.class.getName()));
+    assertEquals(1, executor.tasks.size());
+    assertTrue(retransformed.isEmpty());
+  }
+
+  @Test
+  public void testRetransformed() {
+    assertFalse(SpecialAgent.linkRuleAsync(INDEX, classLoader, String.class.getName()));
+    assertFalse(SpecialAgent.linkRuleAsync(INDEX, classLoader, "does.not.Exist"));
+
+    SpecialAgent.setCompatibility(INDEX, classLoader, true);
+    executor.runAll();
+
+    // Only the deferred types that can be resolved are retransformed
+    assertEquals(Arrays.<Class<?>>asList(String.class), retransformed);
+
+    // Once linked, the rule is applied without a check
+    assertTrue(SpecialAgent.linkRuleAsync(INDEX, classLoader, Integer.class.getName()));
+    assertTrue(executor.tasks.isEmpty());
+  }
+
+  @Test
+  public void testRejected() {
+    assertFalse(SpecialAgent.linkRuleAsync(INDEX, classLoader, String.class.getName()));
+
+    // linkRule fails, because there is no rule JAR at INDEX
+    executor.runAll();
+    assertTrue(retransformed.isEmpty());
+
+    // The rule is incompatible from now on, and is not checked again
+    assertFalse(SpecialAgent.linkRuleAsync(INDEX, classLoader, String.class.getName()));
+    assertTrue(executor.tasks.isEmpty());
+
+    final Event[] events = new Event[Event.values().length];
+    try {
+      new ByteBuddyManager().new TransformationListener(INDEX, events).onTransformation(new TypeDescription.ForLoadedType(String.class), classLoader, null, true, null);
+      fail("Expected IllegalStateException");
+    }
+    catch (final IllegalStateException e) {
+    }
+  }
+}
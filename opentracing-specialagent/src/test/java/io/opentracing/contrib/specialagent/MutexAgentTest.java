@@ -0,0 +1,107 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent;
+
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.opentracing.Span;
+import io.opentracing.mock.MockTracer;
+import net.bytebuddy.agent.ByteBuddyAgent;
+
+/**
+ * Tests for the latch of {@link MutexAgent}, which suppresses the
+ * interception of the calls that the tracer makes into instrumented code.
+ *
+ * @author Seva Safris
+ */
+public class MutexAgentTest {
+  /**
+   * A tracer that records whether interception is enabled from within its
+   * methods.
+   */
+  public static class TestTracer extends MockTracer {
+    int depth = -1;
+    Boolean enabled;
+
+    @Override
+    public SpanBuilder buildSpan(final String operationName) {
+      if ("throw".equals(operationName))
+        throw new IllegalStateException(operationName);
+
+      return super.buildSpan(operationName);
+    }
+
+    @Override
+    public Span activeSpan() {
+      // Stands for a call from within the tracer into instrumented code
+      depth = AgentRule.latch.get()[0];
+      enabled = AgentRule.isEnabled("activeSpan");
+      return super.activeSpan();
+    }
+
+    /**
+     * A method that is not an entry point into the tracer, and is thus not
+     * intercepted by {@link MutexAgent}.
+     */
+    public void notEntryPoint() {
+      depth = AgentRule.latch.get()[0];
+      enabled = AgentRule.isEnabled("notEntryPoint");
+    }
+  }
+
+  @BeforeClass
+  public static void beforeClass() {
+    MutexAgent.premain(ByteBuddyAgent.install());
+  }
+
+  @Test
+  public void testSuppressed() {
+    final TestTracer tracer = new TestTracer();
+    assertTrue(AgentRule.isEnabled("testSuppressed"));
+
+    tracer.activeSpan();
+    assertEquals(1, tracer.depth);
+    assertFalse(tracer.enabled);
+    assertEquals(0, AgentRule.latch.get()[0]);
+    assertTrue(AgentRule.isEnabled("testSuppressed"));
+
+    tracer.notEntryPoint();
+    assertEquals(0, tracer.depth);
+    assertTrue(tracer.enabled);
+  }
+
+  @Test
+  public void testThrown() {
+    final TestTracer tracer = new TestTracer();
+    try {
+      tracer.buildSpan("throw");
+      fail("Expected IllegalStateException");
+    }
+    catch (final IllegalStateException e) {
+    }
+
+    // The latch is released, even though the tracer method threw
+    assertEquals(0, AgentRule.latch.get()[0]);
+    assertTrue(AgentRule.isEnabled("testThrown"));
+
+    tracer.buildSpan("span").start().finish();
+    assertEquals(0, AgentRule.latch.get()[0]);
+    assertEquals(1, tracer.finishedSpans().size());
+  }
+}
@@ -16,7 +16,6 @@
 package io.opentracing.contrib.specialagent.httpclient;
 
 import java.net.URI;
-import java.util.HashMap;
 
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
@@ -26,7 +25,8 @@ import org.apache.http.client.methods.HttpUriRequest;
 
 import io.opentracing.Span;
 import io.opentracing.Tracer;
-import io.opentracing.contrib.specialagent.AgentRuleUtil;
+import io.opentracing.contrib.specialagent.CallerMatcher;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
 import io.opentracing.propagation.Format.Builtin;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
@@ -39,9 +39,10 @@ public class HttpClientAgentIntercept {
 
   static final String COMPONENT_NAME = "java-httpclient";
   private static final ThreadLocal<Context> contextHolder = new ThreadLocal<>();
+  private static final CallerMatcher awsSdkClient = CallerMatcher.method("com.amazonaws.http.apache.client.impl.SdkHttpClient.execute").within(1, 5);
 
   public static Object[] enter(final Object arg0, final Object arg1, final Object arg2) {
-    if (AgentRuleUtil.callerEquals(1, 5, "com.amazonaws.http.apache.client.impl.SdkHttpClient.execute")) {
+    if (awsSdkClient.matches()) {
       // skip embedded Apache HttpClient in AWS SDK Client, because it breaks
       // request signature and AWS SDK gets traced by the aws-sdk rule
       return null;
@@ -118,11 +119,7 @@ public class HttpClientAgentIntercept {
     if (--context.counter != 0)
       return;
 
-    final HashMap<String,Object> errorLogs = new HashMap<>(2);
-    errorLogs.put("event", Tags.ERROR.getKey());
-    errorLogs.put("error.object", thrown);
-    context.span.setTag(Tags.ERROR, Boolean.TRUE);
-    context.span.log(errorLogs);
+    ErrorRecorder.onError(context.span, thrown);
     context.span.finish();
     contextHolder.remove();
   }
@@ -46,7 +46,7 @@ public class ExecutorAgentRule extends AgentRule {
 
   @Advice.OnMethodEnter
   public static void exit(final @Advice.Origin String origin, @Advice.Argument(value = 0, readOnly = false, typing = Typing.DYNAMIC) Runnable arg) throws Exception {
-    if (!isEnabled(origin))
+    if (!isEnabled(ExecutorAgentRule.class, origin))
       return;
 
     if (isVerbose(ExecutorAgentRule.class)) {
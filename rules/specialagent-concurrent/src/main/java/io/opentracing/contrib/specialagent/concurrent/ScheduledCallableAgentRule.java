@@ -48,7 +48,7 @@ public class ScheduledCallableAgentRule extends AgentRule {
 
   @Advice.OnMethodEnter
   public static void exit(final @Advice.Origin String origin, @Advice.Argument(value = 0, readOnly = false, typing = Typing.DYNAMIC) Callable<?> arg) throws Exception {
-    if (!isEnabled(origin))
+    if (!isEnabled(ScheduledCallableAgentRule.class, origin))
       return;
 
     if (isVerbose(ScheduledCallableAgentRule.class)) {
@@ -47,7 +47,7 @@ public class ScheduledRunnableAgentRule extends AgentRule {
 
   @Advice.OnMethodEnter
   public static void exit(final @Advice.Origin String origin, @Advice.Argument(value = 0, readOnly = false, typing = Typing.DYNAMIC) Runnable arg) throws Exception {
-    if (!isEnabled(origin))
+    if (!isEnabled(ScheduledRunnableAgentRule.class, origin))
       return;
 
     if (isVerbose(ScheduledRunnableAgentRule.class)) {
@@ -20,6 +20,7 @@ import org.elasticsearch.client.RestClientBuilder;
 
 import io.opentracing.Span;
 import io.opentracing.Tracer;
+import io.opentracing.contrib.specialagent.AgentRule;
 import io.opentracing.contrib.elasticsearch.common.SpanDecorator;
 import io.opentracing.contrib.elasticsearch.common.TracingHttpClientConfigCallback;
 import io.opentracing.tag.Tags;
@@ -32,7 +33,11 @@ public class Elasticsearch6AgentIntercept {
 
   @SuppressWarnings({"rawtypes", "unchecked"})
   public static ActionListener<?> transport(final Object request, final Object listener) {
-    final Tracer.SpanBuilder spanBuilder = GlobalTracer.get()
+    final Tracer tracer = GlobalTracer.get();
+    if (tracer.activeSpan() == null && !AgentRule.isSampled(Elasticsearch6AgentRule.class))
+      return (ActionListener)listener;
+
+    final Tracer.SpanBuilder spanBuilder = tracer
       .buildSpan(request.getClass().getSimpleName())
       .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT);
 
@@ -49,7 +49,7 @@ public class Elasticsearch6AgentRule extends AgentRule {
   public static class Rest {
     @Advice.OnMethodEnter
     public static void enter(final @Advice.Origin String origin, final @Advice.This Object thiz) {
-      if (isEnabled(origin))
+      if (isEnabled(Elasticsearch6AgentRule.class, origin))
         Elasticsearch6AgentIntercept.rest(thiz);
     }
   }
@@ -57,7 +57,7 @@ public class Elasticsearch6AgentRule extends AgentRule {
   public static class Transport {
     @Advice.OnMethodEnter
     public static void enter(final @Advice.Origin String origin, final @Advice.Argument(value = 1, typing = Typing.DYNAMIC) Object request, @Advice.Argument(value = 2, readOnly = false, typing = Typing.DYNAMIC) Object listener) {
-      if (isEnabled(origin))
+      if (isEnabled(Elasticsearch6AgentRule.class, origin))
         listener = Elasticsearch6AgentIntercept.transport(request, listener);
     }
   }
@@ -15,21 +15,50 @@
 
 package io.opentracing.contrib.specialagent.grpc;
 
+import io.grpc.CallOptions;
 import io.grpc.Channel;
-import io.grpc.ClientInterceptors;
+import io.grpc.ClientCall;
+import io.grpc.MethodDescriptor;
 import io.grpc.ServerServiceDefinition;
 import io.opentracing.contrib.grpc.ClientTracingInterceptor;
 import io.opentracing.contrib.grpc.ServerTracingInterceptor;
 
 public class GrpcAgentIntercept {
+  private static final ClientTracingInterceptor clientInterceptor = new ClientTracingInterceptor();
+  private static final ServerTracingInterceptor serverInterceptor = new ServerTracingInterceptor();
+
+  /**
+   * A {@link Channel} that delegates each new call to the shared
+   * {@link ClientTracingInterceptor}. A stub that is derived from another stub
+   * (i.e. with {@code withDeadline(...)}) is constructed with the
+   * {@code TracingChannel} of its origin, which is therefore not wrapped again.
+   */
+  static class TracingChannel extends Channel {
+    private final Channel channel;
+
+    TracingChannel(final Channel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public <ReqT,RespT>ClientCall<ReqT,RespT> newCall(final MethodDescriptor<ReqT,RespT> method, final CallOptions callOptions) {
+      return clientInterceptor.interceptCall(method, callOptions, channel);
+    }
+
+    @Override
+    public String authority() {
+      return channel.authority();
+    }
+  }
+
   public static Object addService(final Object service) {
     if (service instanceof ServerServiceDefinition)
-      return new ServerTracingInterceptor().intercept((ServerServiceDefinition)service);
+      return serverInterceptor.intercept((ServerServiceDefinition)service);
 
     return service;
   }
 
   public static Object build(final Object channel) {
-    return ClientInterceptors.intercept((Channel)channel, new ClientTracingInterceptor());
+    return channel == null || channel instanceof TracingChannel ? channel : new TracingChannel((Channel)channel);
   }
-}
\ No newline at end of file
+}
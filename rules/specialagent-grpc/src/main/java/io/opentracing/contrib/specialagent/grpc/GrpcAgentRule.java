@@ -44,27 +44,27 @@ public class GrpcAgentRule extends AgentRule {
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
           return builder.visit(Advice.to(Registry.class).on(named("addService").and(takesArguments(1))));
         }})
-      .type(hasSuperType(named("io.grpc.stub.AbstractStub")))
+      .type(named("io.grpc.stub.AbstractStub"))
       .transform(new Transformer() {
         @Override
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
-          return builder.visit(Advice.to(Stub.class).on(named("getChannel")));
+          return builder.visit(Advice.to(Stub.class).on(isConstructor().and(takesArgument(0, named("io.grpc.Channel")))));
         }}));
   }
 
   public static class Registry {
     @Advice.OnMethodEnter
     public static void enter(final @Advice.Origin String origin, @Advice.Argument(value = 0, readOnly = false, typing = Typing.DYNAMIC) Object service) {
-      if (isEnabled(origin))
+      if (isEnabled(GrpcAgentRule.class, origin))
         service = GrpcAgentIntercept.addService(service);
     }
   }
 
   public static class Stub {
-    @Advice.OnMethodExit
-    public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
-        returned = GrpcAgentIntercept.build(returned);
+    @Advice.OnMethodEnter
+    public static void enter(final @Advice.Origin String origin, @Advice.Argument(value = 0, readOnly = false, typing = Typing.DYNAMIC) Object channel) {
+      if (isEnabled(GrpcAgentRule.class, origin))
+        channel = GrpcAgentIntercept.build(channel);
     }
   }
 }
\ No newline at end of file
@@ -61,6 +61,22 @@ public class GrpcTest {
     assertEquals(2, tracer.finishedSpans().size());
   }
 
+  @Test
+  public void testDerivedStub(final MockTracer tracer) {
+    grpcServer.getServiceRegistry().addService(new GreeterImpl());
+
+    final GreeterBlockingStub greeterBlockingStub = GreeterGrpc.newBlockingStub(grpcServer.getChannel());
+    final GreeterBlockingStub derivedStub = greeterBlockingStub.withDeadlineAfter(15, TimeUnit.SECONDS);
+    assertSame(greeterBlockingStub.getChannel(), derivedStub.getChannel());
+    assertSame(derivedStub.getChannel(), derivedStub.getChannel());
+
+    final String message = derivedStub.sayHello(HelloRequest.newBuilder().setName("world").build()).getMessage();
+
+    assertEquals("Hello world", message);
+    await().atMost(15, TimeUnit.SECONDS).until(reportedSpansSize(tracer), equalTo(2));
+    assertEquals(2, tracer.finishedSpans().size());
+  }
+
   private static class GreeterImpl extends GreeterGrpc.GreeterImplBase {
     @Override
     public void sayHello(final HelloRequest req, final StreamObserver<HelloReply> responseObserver) {
@@ -57,14 +57,14 @@ public class HazelcastAgentRule extends AgentRule {
 
   @Advice.OnMethodExit
   public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-    if (isEnabled(origin))
+    if (isEnabled(HazelcastAgentRule.class, origin))
       returned = HazelcastAgentIntercept.exit(returned);
   }
 
   public static class AllInstances {
     @Advice.OnMethodExit
     public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
+      if (isEnabled(HazelcastAgentRule.class, origin))
         returned = HazelcastAgentIntercept.getAllHazelcastInstances(returned);
     }
   }
@@ -41,7 +41,7 @@ public class HystrixAgentRule extends AgentRule {
 
   @Advice.OnMethodExit
   public static void exit(final @Advice.Origin String origin) {
-    if (isEnabled(origin))
+    if (isEnabled(HystrixAgentRule.class, origin))
       HystrixAgentIntercept.exit();
   }
 }
\ No newline at end of file
@@ -23,18 +23,55 @@ import java.util.Enumeration;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicReference;
 
+import io.opentracing.Span;
+import io.opentracing.contrib.jdbc.ConnectionInfo;
 import io.opentracing.contrib.jdbc.TracingDriver;
+import io.opentracing.contrib.specialagent.AgentRule;
 import io.opentracing.contrib.specialagent.AgentRuleUtil;
+import io.opentracing.contrib.specialagent.CallerMatcher;
+import io.opentracing.tag.Tags;
 
 public class JdbcAgentIntercept {
   public static AtomicReference<TracingDriver> tracingDriver = new AtomicReference<>();
+  private static final CallerMatcher tracingDriverConnect = CallerMatcher.method(TracingDriver.class.getName() + ".connect").at(2);
 
   public static Class<?> caller(final Class<?> caller) {
-    return TracingDriver.class.equals(caller) ? AgentRuleUtil.getExecutionStack()[8] : caller;
+    return TracingDriver.class.equals(caller) ? AgentRuleUtil.getExecutionClass(8) : caller;
+  }
+
+  /**
+   * Decorates the span of a statement in place of
+   * {@code JdbcTracingUtils.decorate(Span,String,ConnectionInfo)}, with the
+   * statement captured as specified by
+   * {@link AgentRule#getStatementCapture(Class)}.
+   *
+   * @return {@code true}, so that the original method is skipped.
+   */
+  public static boolean decorate(final Object span, final String sql, final Object connectionInfo) {
+    final Span s = (Span)span;
+    final ConnectionInfo info = (ConnectionInfo)connectionInfo;
+    Tags.COMPONENT.set(s, "java-jdbc");
+    final String statement = AgentRule.getStatementCapture(JdbcAgentRule.class).capture(sql);
+    if (statement != null)
+      Tags.DB_STATEMENT.set(s, statement);
+
+    if (info.getDbType() != null)
+      Tags.DB_TYPE.set(s, info.getDbType());
+
+    if (info.getDbPeer() != null)
+      s.setTag("peer.address", info.getDbPeer());
+
+    if (info.getDbInstance() != null)
+      Tags.DB_INSTANCE.set(s, info.getDbInstance());
+
+    if (info.getDbUser() != null)
+      Tags.DB_USER.set(s, info.getDbUser());
+
+    return true;
   }
 
   public static Connection enter(final String url, final Properties info) throws SQLException {
-    if (AgentRuleUtil.callerEquals(2, TracingDriver.class.getName() + ".connect"))
+    if (tracingDriverConnect.matches())
       return null;
 
     if (tracingDriver.get() == null) {
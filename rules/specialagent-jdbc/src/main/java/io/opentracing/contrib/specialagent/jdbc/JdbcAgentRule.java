@@ -22,10 +22,9 @@ import java.util.Arrays;
 import java.util.Properties;
 
 import io.opentracing.contrib.specialagent.AgentRule;
-import io.opentracing.contrib.specialagent.EarlyReturnException;
+import io.opentracing.contrib.specialagent.EarlyReturn;
 import net.bytebuddy.agent.builder.AgentBuilder;
 import net.bytebuddy.agent.builder.AgentBuilder.Identified.Extendable;
-import net.bytebuddy.agent.builder.AgentBuilder.Identified.Narrowable;
 import net.bytebuddy.agent.builder.AgentBuilder.Transformer;
 import net.bytebuddy.asm.Advice;
 import net.bytebuddy.description.type.TypeDescription;
@@ -43,12 +42,11 @@ public class JdbcAgentRule extends AgentRule {
     if (isJdk178)
       driverJunction = named("java.sql.DriverManager").or(driverJunction);
 
-    final Narrowable narrowable = builder.type(driverJunction);
-    Extendable extendable =
-      narrowable.transform(new Transformer() {
+    Extendable extendable = builder.type(driverJunction)
+      .transform(new Transformer() {
         @Override
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
-          return builder.visit(Advice.to(DriverEnter.class).on(not(isAbstract()).and(named("connect").and(takesArguments(String.class, Properties.class)))));
+          return builder.visit(Advice.to(DriverConnect.class).on(not(isAbstract()).and(named("connect").and(takesArguments(String.class, Properties.class)))));
         }});
 
     if (isJdk178)
@@ -59,42 +57,47 @@ public class JdbcAgentRule extends AgentRule {
             return builder.visit(Advice.to(DriverManagerEnter.class).on(isPrivate().and(isStatic()).and(named("isDriverAllowed")).and(takesArgument(1, Class.class))));
           }});
 
-    return Arrays.asList(extendable, narrowable
+    extendable = extendable
+      .type(named("io.opentracing.contrib.jdbc.JdbcTracingUtils"))
       .transform(new Transformer() {
         @Override
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
-          return builder.visit(Advice.to(DriverExit.class).on(not(isAbstract()).and(named("connect").and(takesArguments(String.class, Properties.class)))));
-        }}));
+          return builder.visit(Advice.to(Decorate.class).on(isStatic().and(named("decorate")).and(takesArguments(3))));
+        }});
+
+    return Arrays.asList(extendable);
+  }
+
+  public static class Decorate {
+    @Advice.OnMethodEnter(skipOn = Advice.OnNonDefaultValue.class)
+    public static boolean enter(final @Advice.Origin String origin, final @Advice.Argument(value = 0, typing = Typing.DYNAMIC) Object span, final @Advice.Argument(value = 1) String sql, final @Advice.Argument(value = 2, typing = Typing.DYNAMIC) Object connectionInfo) {
+      return isEnabled(JdbcAgentRule.class, origin) && JdbcAgentIntercept.decorate(span, sql, connectionInfo);
+    }
   }
 
   public static class DriverManagerEnter {
     @Advice.OnMethodEnter
     public static void enter(final @Advice.Origin String origin, @Advice.Argument(value = 1, readOnly = false, typing = Typing.DYNAMIC) Class<?> caller) throws Exception {
-      if (isEnabled(origin))
+      if (isEnabled(JdbcAgentRule.class, origin))
         caller = JdbcAgentIntercept.caller(caller);
     }
   }
 
-  public static class DriverEnter {
-    @Advice.OnMethodEnter
-    public static void enter(final @Advice.Origin String origin, final @Advice.Argument(value = 0) String url, final @Advice.Argument(value = 1) Properties info) throws Exception {
-      if (!isEnabled(origin))
-        return;
+  public static class DriverConnect {
+    @Advice.OnMethodEnter(skipOn = Advice.OnNonDefaultValue.class)
+    public static EarlyReturn enter(final @Advice.Origin String origin, final @Advice.Argument(value = 0) String url, final @Advice.Argument(value = 1) Properties info) throws Exception {
+      if (!isEnabled(JdbcAgentRule.class, origin))
+        return null;
 
       final Connection connection = JdbcAgentIntercept.enter(url, info);
-      if (connection != null)
-        throw new EarlyReturnException(connection);
+      return connection != null ? EarlyReturn.of(connection) : null;
     }
-  }
 
-  public static class DriverExit {
     @SuppressWarnings("unused")
-    @Advice.OnMethodExit(onThrowable = Throwable.class)
-    public static void exit(@Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned, @Advice.Thrown(readOnly = false, typing = Typing.DYNAMIC) Throwable thrown) throws Exception {
-      if (thrown instanceof EarlyReturnException) {
-        returned = ((EarlyReturnException)thrown).getReturnValue();
-        thrown = null;
-      }
+    @Advice.OnMethodExit
+    public static void exit(final @Advice.Enter EarlyReturn earlyReturn, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
+      if (earlyReturn != null)
+        returned = earlyReturn.getValue();
     }
   }
 }
\ No newline at end of file
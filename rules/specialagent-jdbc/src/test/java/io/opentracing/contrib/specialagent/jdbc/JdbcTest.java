@@ -23,16 +23,24 @@ import java.sql.Statement;
 import java.util.List;
 
 import org.h2.Driver;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import io.opentracing.Scope;
+import io.opentracing.contrib.specialagent.AgentRule;
 import io.opentracing.contrib.specialagent.AgentRunner;
 import io.opentracing.mock.MockSpan;
 import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
 
 @RunWith(AgentRunner.class)
 public class JdbcTest {
+  @Before
+  public void before(final MockTracer tracer) {
+    tracer.reset();
+  }
+
   @Test
   public void test(final MockTracer tracer) throws Exception {
     Driver.load();
@@ -46,6 +54,32 @@ public class JdbcTest {
 
       final List<MockSpan> spans = tracer.finishedSpans();
       assertEquals(1, spans.size());
+      assertEquals("CREATE TABLE employer (id INTEGER)", spans.get(0).tags().get(Tags.DB_STATEMENT.getKey()));
+      assertEquals("java-jdbc", spans.get(0).tags().get(Tags.COMPONENT.getKey()));
+      assertEquals("h2", spans.get(0).tags().get(Tags.DB_TYPE.getKey()));
+    }
+  }
+
+  @Test
+  public void testStatementCapture(final MockTracer tracer) throws Exception {
+    System.setProperty("sa.instrumentation.plugin.jdbc.statement.max", "12");
+    AgentRule.reloadStatementCapture();
+    Driver.load();
+    try (
+      final Scope ignored = tracer.buildSpan("jdbc-test").startActive(true);
+      final Connection connection = DriverManager.getConnection("jdbc:h2:mem:jdbc");
+    ) {
+      final Statement statement = connection.createStatement();
+      statement.executeUpdate("CREATE TABLE employee (id INTEGER)");
+      connection.close();
+
+      final List<MockSpan> spans = tracer.finishedSpans();
+      assertEquals(1, spans.size());
+      assertEquals("CREATE TABLE...", spans.get(0).tags().get(Tags.DB_STATEMENT.getKey()));
+    }
+    finally {
+      System.clearProperty("sa.instrumentation.plugin.jdbc.statement.max");
+      AgentRule.reloadStatementCapture();
     }
   }
 }
\ No newline at end of file
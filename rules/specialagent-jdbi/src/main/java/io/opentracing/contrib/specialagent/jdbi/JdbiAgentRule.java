@@ -42,7 +42,7 @@ public class JdbiAgentRule extends AgentRule {
   public static class Create {
     @Advice.OnMethodExit
     public static void exit(final @Advice.Origin String origin, final @Advice.Return Object returned) {
-      if (isEnabled(origin))
+      if (isEnabled(JdbiAgentRule.class, origin))
         JdbiAgentIntercept.create(returned);
     }
   }
@@ -15,74 +15,358 @@
 
 package io.opentracing.contrib.specialagent.jedis;
 
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.Map;
-import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
 
 import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.specialagent.AgentRule;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
+import io.opentracing.contrib.specialagent.StatementCapture.Appender;
+import io.opentracing.contrib.specialagent.StatementCapture.Encoder;
+import io.opentracing.contrib.specialagent.StatementCapture.Mode;
+import io.opentracing.noop.NoopSpan;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 import redis.clients.jedis.Protocol.Command;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 
 public class JedisAgentIntercept {
-  private final static ThreadLocal<Queue<Span>> spanHolder = ThreadLocal.withInitial(LinkedList::new);
+  static final String BATCH_PROPERTY = "sa.instrumentation.plugin.jedis.batch";
 
-  public static void sendCommand(final Object command, final byte[][] args) {
-    final Command cmd = (Command)command;
-    final Span span = GlobalTracer.get()
-      .buildSpan(cmd.name())
+  private static final boolean batch = Boolean.getBoolean(BATCH_PROPERTY);
+
+  /**
+   * Encoder of the args of a command, the first of which is the key.
+   */
+  private static final Encoder<byte[][]> argsEncoder = new Encoder<byte[][]>() {
+    @Override
+    public void encode(final byte[][] args, final Mode mode, final Appender appender) {
+      encodeArgs(args, mode == Mode.KEYS ? 1 : args.length, 1, appender);
+    }
+  };
+
+  /**
+   * Encoder of the args of a command, all of which are keys (i.e.
+   * {@code MGET}).
+   */
+  private static final Encoder<byte[][]> keysEncoder = new Encoder<byte[][]>() {
+    @Override
+    public void encode(final byte[][] args, final Mode mode, final Appender appender) {
+      encodeArgs(args, args.length, 1, appender);
+    }
+  };
+
+  /**
+   * Encoder of the args of a command, which are pairs of keys and values (i.e.
+   * {@code MSET}).
+   */
+  private static final Encoder<byte[][]> pairsEncoder = new Encoder<byte[][]>() {
+    @Override
+    public void encode(final byte[][] args, final Mode mode, final Appender appender) {
+      encodeArgs(args, args.length, mode == Mode.KEYS ? 2 : 1, appender);
+    }
+  };
+
+  private static final Map<Object,CommandQueue> connectionToQueue = Collections.synchronizedMap(new WeakHashMap<Object,CommandQueue>());
+  private static final ThreadLocal<LastQueue> lastQueue = new ThreadLocal<LastQueue>() {
+    @Override
+    protected LastQueue initialValue() {
+      return new LastQueue();
+    }
+  };
+
+  /**
+   * The {@link CommandQueue} of the connection that the current thread used
+   * last. A connection is used by one thread at a time, which sends all
+   * commands and reads all outputs of its exchange, so the lookup of the
+   * queue is a hit on all but the first call of an exchange, and the
+   * synchronized {@link #connectionToQueue} map is only consulted upon a miss.
+   * The connection is referenced weakly, so that the last connection of a
+   * thread is not kept from being collected.
+   */
+  private static final class LastQueue {
+    private WeakReference<Object> connection;
+    private CommandQueue queue;
+  }
+  private static final ThreadLocal<Batch> batchHolder = new ThreadLocal<>();
+
+  /**
+   * FIFO queue of the commands that were sent on one connection, and whose
+   * output is not yet read. Pipelined commands are read in the order in which
+   * they were sent, so the head of the queue is always the command of the next
+   * output. The queue is backed by a ring buffer that grows to fit the longest
+   * pipeline on the connection.
+   */
+  static final class CommandQueue {
+    private Object[] entries = new Object[8];
+    private int head;
+    private int size;
+
+    void add(final Object entry) {
+      if (size == entries.length) {
+        final Object[] grown = new Object[size << 1];
+        System.arraycopy(entries, head, grown, 0, size - head);
+        System.arraycopy(entries, 0, grown, size - head, head);
+        entries = grown;
+        head = 0;
+      }
+
+      entries[(head + size++) & (entries.length - 1)] = entry;
+    }
+
+    Object poll() {
+      if (size == 0)
+        return null;
+
+      final Object entry = entries[head];
+      entries[head] = null;
+      head = (head + 1) & (entries.length - 1);
+      --size;
+      return entry;
+    }
+  }
+
+  /**
+   * A command sent in batch mode, for which the span is not built until its
+   * output is read, because only then is it known whether the command belongs
+   * to a pipeline or transaction.
+   */
+  static final class Pending {
+    final Command command;
+    final byte[][] args;
+    final long startMicros;
+
+    Pending(final Command command, final byte[][] args) {
+      this.command = command;
+      this.args = args;
+      this.startMicros = nowMicros();
+    }
+  }
+
+  /**
+   * The commands whose outputs are read by one {@code Pipeline.sync()} or
+   * {@code Transaction.exec()}, which are reported with a single span.
+   */
+  static final class Batch {
+    final String operationName;
+    final StringBuilder commands = new StringBuilder();
+    long startMicros = Long.MAX_VALUE;
+    int depth;
+    int count;
+    Throwable thrown;
+
+    Batch(final String operationName) {
+      this.operationName = operationName;
+    }
+
+    void add(final Pending pending, final Throwable thrown) {
+      ++count;
+      startMicros = Math.min(startMicros, pending.startMicros);
+      if (this.thrown == null)
+        this.thrown = thrown;
+
+      final int maxLength = AgentRule.getStatementCapture(JedisAgentRule.class).getMaxLength();
+      if (maxLength == 0 || commands.length() <= maxLength) {
+        if (commands.length() > 0)
+          commands.append(' ');
+
+        commands.append(pending.command.name());
+      }
+    }
+  }
+
+  private static long nowMicros() {
+    return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+  }
+
+  private static CommandQueue getQueue(final Object connection) {
+    final LastQueue last = lastQueue.get();
+    if (last.connection != null && last.connection.get() == connection)
+      return last.queue;
+
+    CommandQueue queue;
+    synchronized (connectionToQueue) {
+      queue = connectionToQueue.get(connection);
+      if (queue == null)
+        connectionToQueue.put(connection, queue = new CommandQueue());
+    }
+
+    last.connection = new WeakReference<>(connection);
+    last.queue = queue;
+    return queue;
+  }
+
+  /**
+   * Holds the place of a command that is not traced, because the plugin is
+   * disabled, or because the command is sent from within the tracer. The
+   * output of the command is read regardless, so the place must be held for
+   * the outputs of the commands that are traced to be correlated with their
+   * own spans.
+   *
+   * @param connection The connection.
+   */
+  public static void skipCommand(final Object connection) {
+    getQueue(connection).add(NoopSpan.INSTANCE);
+  }
+
+  public static void sendCommand(final Object connection, final Object command, final byte[][] args) {
+    if (batch) {
+      getQueue(connection).add(new Pending((Command)command, args));
+      return;
+    }
+
+    final Tracer tracer = GlobalTracer.get();
+    if (tracer.activeSpan() == null && !AgentRule.isSampled(JedisAgentRule.class)) {
+      // Hold the place of the command, so that the outputs of pipelined
+      // commands are correlated with the spans of their own commands
+      getQueue(connection).add(NoopSpan.INSTANCE);
+      return;
+    }
+
+    getQueue(connection).add(buildSpan(tracer, (Command)command, args).start());
+  }
+
+  private static Tracer.SpanBuilder buildSpan(final Tracer tracer, final Command command, final byte[][] args) {
+    final Tracer.SpanBuilder builder = tracer
+      .buildSpan(command.name())
       .withTag(Tags.COMPONENT.getKey(), "java-redis")
       .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
-      .withTag(Tags.DB_TYPE.getKey(), "redis").start();
+      .withTag(Tags.DB_TYPE.getKey(), "redis");
 
-    final String redisCommand = convert(args);
+    final String redisCommand = convert(command, args);
     if (redisCommand != null)
-      span.setTag(Tags.DB_STATEMENT, redisCommand);
+      builder.withTag(Tags.DB_STATEMENT.getKey(), redisCommand);
 
-    spanHolder.get().add(span);
+    return builder;
   }
 
-  private static String convert(final byte[][] args) {
+  private static String convert(final Command command, final byte[][] args) {
     if (args == null || args.length == 0)
       return null;
 
-    final List<String> commands = new ArrayList<>();
-    for (final byte[] arg : args)
-      commands.add(new String(arg, StandardCharsets.UTF_8));
+    final Encoder<byte[][]> encoder;
+    switch (command) {
+      case DEL:
+      case EXISTS:
+      case MGET:
+      case TOUCH:
+      case UNLINK:
+      case WATCH:
+        encoder = keysEncoder;
+        break;
+      case MSET:
+      case MSETNX:
+        encoder = pairsEncoder;
+        break;
+      default:
+        encoder = argsEncoder;
+    }
 
-    return String.join(" ", commands);
+    return AgentRule.getStatementCapture(JedisAgentRule.class).capture(args, encoder);
   }
 
-  public static void readCommandOutput() {
-    final Queue<Span> spans = spanHolder.get();
-    if (spans.isEmpty())
-      return;
+  private static void encodeArgs(final byte[][] args, final int length, final int step, final Appender appender) {
+    for (int i = 0; i < length && !appender.isFull(); i += step) {
+      if (i > 0)
+        appender.append(' ');
 
-    final Span span = spans.poll();
-    span.finish();
+      appender.append(args[i]);
+    }
   }
 
-  public static void onError(final Throwable throwable) {
-    final Queue<Span> spans = spanHolder.get();
-    if (spans.isEmpty())
+  public static void readCommandOutput(final Object connection, final Throwable thrown) {
+    final CommandQueue queue = getQueue(connection);
+    finish(queue.poll(), thrown);
+    if (thrown instanceof JedisConnectionException) {
+      // The outputs of the remaining commands will never be read
+      for (Object entry; (entry = queue.poll()) != null;)
+        finish(entry, thrown);
+    }
+  }
+
+  private static void finish(final Object entry, final Throwable thrown) {
+    if (entry == NoopSpan.INSTANCE)
       return;
 
-    final Span span = spans.poll();
-    Tags.ERROR.set(span, Boolean.TRUE);
-    if (throwable != null)
-      span.log(errorLogs(throwable));
+    if (entry instanceof Span) {
+      finish((Span)entry, thrown);
+    }
+    else if (entry instanceof Pending) {
+      final Pending pending = (Pending)entry;
+      final Batch batch = batchHolder.get();
+      if (batch != null) {
+        batch.add(pending, thrown);
+        return;
+      }
+
+      final Tracer tracer = GlobalTracer.get();
+      if (tracer.activeSpan() == null && !AgentRule.isSampled(JedisAgentRule.class))
+        return;
+
+      final Span span = buildSpan(tracer, pending.command, pending.args).withStartTimestamp(pending.startMicros).start();
+      finish(span, thrown);
+    }
+  }
+
+  private static void finish(final Span span, final Throwable thrown) {
+    if (thrown != null) {
+      ErrorRecorder.onError(span, thrown);
+    }
 
     span.finish();
   }
 
-  private static Map<String,Object> errorLogs(final Throwable throwable) {
-    final Map<String,Object> errorLogs = new HashMap<>(2);
-    errorLogs.put("event", Tags.ERROR.getKey());
-    errorLogs.put("error.object", throwable);
-    return errorLogs;
+  /**
+   * Begins a batch (or a nested batch) on the current thread, if batch mode is
+   * enabled.
+   *
+   * @param operationName The operation name of the span of the batch.
+   * @return Whether a batch was begun, in which case
+   *         {@link #endBatch(Throwable)} must be called to end it.
+   */
+  public static boolean beginBatch(final String operationName) {
+    if (!batch)
+      return false;
+
+    final Batch batch = batchHolder.get();
+    if (batch != null)
+      ++batch.depth;
+    else
+      batchHolder.set(new Batch(operationName));
+
+    return true;
+  }
+
+  public static void endBatch(final Throwable thrown) {
+    final Batch batch = batchHolder.get();
+    if (batch == null || batch.depth-- > 0)
+      return;
+
+    batchHolder.remove();
+    if (batch.count == 0)
+      return;
+
+    final Tracer tracer = GlobalTracer.get();
+    if (tracer.activeSpan() == null && !AgentRule.isSampled(JedisAgentRule.class))
+      return;
+
+    final Tracer.SpanBuilder builder = tracer
+      .buildSpan(batch.operationName)
+      .withTag(Tags.COMPONENT.getKey(), "java-redis")
+      .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+      .withTag(Tags.DB_TYPE.getKey(), "redis")
+      .withStartTimestamp(batch.startMicros);
+
+    final String commands = AgentRule.getStatementCapture(JedisAgentRule.class).capture(batch.commands.toString());
+    if (commands != null)
+      builder.withTag(Tags.DB_STATEMENT.getKey(), commands);
+
+    final Span span = builder.start();
+
+    finish(span, batch.thrown != null ? batch.thrown : thrown);
   }
 }
\ No newline at end of file
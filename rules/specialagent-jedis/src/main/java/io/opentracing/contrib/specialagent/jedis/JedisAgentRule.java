@@ -43,34 +43,70 @@ public class JedisAgentRule extends AgentRule {
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
           return builder.visit(Advice.to(ReadCommandOutput.class).on(named("readProtocolWithCheckingBroken")));
         }})
+      .type(named("redis.clients.jedis.Pipeline"))
       .transform(new Transformer() {
         @Override
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
-          return builder.visit(Advice.to(OnError.class).on(named("readProtocolWithCheckingBroken")));
+          return builder.visit(Advice.to(PipelineSync.class).on(named("sync").or(named("syncAndReturnAll")).and(takesArguments(0))));
+        }})
+      .type(named("redis.clients.jedis.Transaction"))
+      .transform(new Transformer() {
+        @Override
+        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
+          return builder.visit(Advice.to(TransactionExec.class).on(named("exec").or(named("discard")).and(takesArguments(0))));
         }}));
   }
 
   public static class SendCommand {
     @Advice.OnMethodEnter
-    public static void enter(final @Advice.Origin String origin, final @Advice.Argument(value = 0, typing = Typing.DYNAMIC) Object command, final @Advice.Argument(value = 1, readOnly = false, typing = Typing.DYNAMIC) byte[][] args) {
-      if (isEnabled(origin))
-        JedisAgentIntercept.sendCommand(command, args);
+    public static void enter(final @Advice.Origin String origin, final @Advice.This Object thiz, final @Advice.Argument(value = 0, typing = Typing.DYNAMIC) Object command, final @Advice.Argument(value = 1, readOnly = false, typing = Typing.DYNAMIC) byte[][] args) {
+      if (isEnabled(JedisAgentRule.class, origin))
+        JedisAgentIntercept.sendCommand(thiz, command, args);
+      else
+        JedisAgentIntercept.skipCommand(thiz);
     }
   }
 
   public static class ReadCommandOutput {
-    @Advice.OnMethodExit
-    public static void exit(final @Advice.Origin String origin) {
-      if (isEnabled(origin))
-        JedisAgentIntercept.readCommandOutput();
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    public static void exit(final @Advice.This Object thiz, final @Advice.Thrown(typing = Typing.DYNAMIC) Throwable thrown) {
+      // Not guarded by isEnabled(), because each output is read for a command
+      // that was queued upon send (either traced, or skipped), so that the
+      // outputs stay correlated with their commands even if the plugin is
+      // enabled or disabled in between
+      JedisAgentIntercept.readCommandOutput(thiz, thrown);
     }
   }
 
-  public static class OnError {
+  public static class PipelineSync {
+    @Advice.OnMethodEnter
+    public static boolean enter(final @Advice.Origin String origin) {
+      return isEnabled(JedisAgentRule.class, origin) && JedisAgentIntercept.beginBatch("PIPELINE");
+    }
+
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    public static void exit(final @Advice.Enter boolean begun, final @Advice.Thrown(typing = Typing.DYNAMIC) Throwable thrown) {
+      // The batch is ended if (and only if) it was begun upon enter, so that
+      // the depth of the batch stays balanced even if the plugin is enabled or
+      // disabled in between
+      if (begun)
+        JedisAgentIntercept.endBatch(thrown);
+    }
+  }
+
+  public static class TransactionExec {
+    @Advice.OnMethodEnter
+    public static boolean enter(final @Advice.Origin String origin) {
+      return isEnabled(JedisAgentRule.class, origin) && JedisAgentIntercept.beginBatch("TRANSACTION");
+    }
+
     @Advice.OnMethodExit(onThrowable = Throwable.class)
-    public static void exit(final @Advice.Origin String origin, final @Advice.Thrown(typing = Typing.DYNAMIC) Throwable thrown) {
-      if (isEnabled(origin))
-        JedisAgentIntercept.onError(thrown);
+    public static void exit(final @Advice.Enter boolean begun, final @Advice.Thrown(typing = Typing.DYNAMIC) Throwable thrown) {
+      // The batch is ended if (and only if) it was begun upon enter, so that
+      // the depth of the batch stays balanced even if the plugin is enabled or
+      // disabled in between
+      if (begun)
+        JedisAgentIntercept.endBatch(thrown);
     }
   }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent.jedis;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.opentracing.contrib.specialagent.AgentRunner;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.embedded.RedisServer;
+
+@RunWith(AgentRunner.class)
+public class JedisBatchTest {
+  static {
+    System.setProperty(JedisAgentIntercept.BATCH_PROPERTY, "true");
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.clearProperty(JedisAgentIntercept.BATCH_PROPERTY);
+  }
+
+  private RedisServer redisServer;
+  private Jedis jedis;
+
+  @Before
+  public void before(final MockTracer tracer) throws IOException {
+    tracer.reset();
+
+    redisServer = new RedisServer();
+    redisServer.start();
+    jedis = new Jedis();
+  }
+
+  @After
+  public void after() {
+    if (redisServer != null)
+      redisServer.stop();
+
+    if (jedis != null)
+      jedis.close();
+  }
+
+  @Test
+  public void test(final MockTracer tracer) {
+    assertEquals("OK", jedis.set("key", "value"));
+    assertEquals("value", jedis.get("key"));
+
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(2, spans.size());
+    checkSpans(spans);
+    assertEquals("SET", spans.get(0).operationName());
+    assertEquals("key value", spans.get(0).tags().get(Tags.DB_STATEMENT.getKey()));
+    assertEquals("GET", spans.get(1).operationName());
+  }
+
+  @Test
+  public void pipeline(final MockTracer tracer) {
+    final Pipeline pipeline = jedis.pipelined();
+    for (int i = 0; i < 5; ++i)
+      pipeline.set("key-" + i, "value-" + i);
+
+    pipeline.sync();
+    assertEquals("value-0", jedis.get("key-0"));
+
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(2, spans.size());
+    checkSpans(spans);
+    assertEquals("PIPELINE", spans.get(0).operationName());
+    assertEquals("SET SET SET SET SET", spans.get(0).tags().get(Tags.DB_STATEMENT.getKey()));
+    assertNull(spans.get(0).tags().get(Tags.ERROR.getKey()));
+    assertEquals("GET", spans.get(1).operationName());
+  }
+
+  @Test
+  public void pipelineWithError(final MockTracer tracer) {
+    final Pipeline pipeline = jedis.pipelined();
+    pipeline.set("key", "value");
+    pipeline.incr("key");
+    final List<Object> results = pipeline.syncAndReturnAll();
+    assertEquals("OK", results.get(0));
+    assertTrue(results.get(1) instanceof JedisDataException);
+
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(1, spans.size());
+    checkSpans(spans);
+    assertEquals("SET INCR", spans.get(0).tags().get(Tags.DB_STATEMENT.getKey()));
+    assertEquals(Boolean.TRUE, spans.get(0).tags().get(Tags.ERROR.getKey()));
+  }
+
+  @Test
+  public void transaction(final MockTracer tracer) {
+    final Transaction transaction = jedis.multi();
+    transaction.set("key", "value");
+    transaction.get("key");
+    assertEquals(Arrays.asList("OK", "value"), transaction.exec());
+
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(1, spans.size());
+    checkSpans(spans);
+    assertEquals("TRANSACTION", spans.get(0).operationName());
+    assertEquals("MULTI SET GET EXEC", spans.get(0).tags().get(Tags.DB_STATEMENT.getKey()));
+  }
+
+  private static void checkSpans(final List<MockSpan> spans) {
+    for (final MockSpan span : spans) {
+      assertEquals("java-redis", span.tags().get(Tags.COMPONENT.getKey()));
+      assertEquals("redis", span.tags().get(Tags.DB_TYPE.getKey()));
+      assertEquals(Tags.SPAN_KIND_CLIENT, span.tags().get(Tags.SPAN_KIND.getKey()));
+    }
+  }
+}
\ No newline at end of file
@@ -18,6 +18,7 @@ package io.opentracing.contrib.specialagent.jedis;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.After;
@@ -25,12 +26,14 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import io.opentracing.contrib.specialagent.AgentRule;
 import io.opentracing.contrib.specialagent.AgentRunner;
 import io.opentracing.mock.MockSpan;
 import io.opentracing.mock.MockTracer;
 import io.opentracing.tag.Tags;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Transaction;
 import redis.embedded.RedisServer;
 
 @RunWith(AgentRunner.class)
@@ -92,6 +95,106 @@ public class JedisTest {
     final List<MockSpan> spans = tracer.finishedSpans();
     assertEquals(5, spans.size());
     checkSpans(spans);
+    for (final MockSpan span : spans) {
+      assertEquals("SET", span.operationName());
+      assertNull(span.tags().get(Tags.ERROR.getKey()));
+    }
+  }
+
+  @Test
+  public void transaction(final MockTracer tracer) {
+    final Transaction transaction = jedis.multi();
+    transaction.set("key", "value");
+    transaction.get("key");
+    assertEquals(Arrays.asList("OK", "value"), transaction.exec());
+
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(4, spans.size());
+    checkSpans(spans);
+    assertEquals("MULTI", spans.get(0).operationName());
+    assertEquals("SET", spans.get(1).operationName());
+    assertEquals("GET", spans.get(2).operationName());
+    assertEquals("EXEC", spans.get(3).operationName());
+  }
+
+  @Test
+  public void longStatement(final MockTracer tracer) {
+    final char[] value = new char[4096];
+    Arrays.fill(value, 'x');
+    assertEquals("OK", jedis.set("key", new String(value)));
+
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(1, spans.size());
+    checkSpans(spans);
+    final String statement = (String)spans.get(0).tags().get(Tags.DB_STATEMENT.getKey());
+    assertEquals(1024 + 3, statement.length());
+    assertTrue(statement.startsWith("key xxx"));
+    assertTrue(statement.endsWith("x..."));
+  }
+
+  @Test
+  public void keysStatement(final MockTracer tracer) {
+    System.setProperty("sa.instrumentation.plugin.jedis.statement", "keys");
+    AgentRule.reloadStatementCapture();
+    try {
+      assertEquals("OK", jedis.mset("key-0", "value-0", "key-1", "value-1"));
+      assertEquals(Arrays.asList("value-0", "value-1"), jedis.mget("key-0", "key-1"));
+      assertEquals("OK", jedis.set("key", "value"));
+    }
+    finally {
+      System.clearProperty("sa.instrumentation.plugin.jedis.statement");
+      AgentRule.reloadStatementCapture();
+    }
+
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(3, spans.size());
+    checkSpans(spans);
+    assertEquals("key-0 key-1", spans.get(0).tags().get(Tags.DB_STATEMENT.getKey()));
+    assertEquals("key-0 key-1", spans.get(1).tags().get(Tags.DB_STATEMENT.getKey()));
+    assertEquals("key", spans.get(2).tags().get(Tags.DB_STATEMENT.getKey()));
+  }
+
+  @Test
+  public void pipelineDisabledOnSend(final MockTracer tracer) {
+    final Pipeline pipeline = jedis.pipelined();
+    AgentRule.setPluginEnabled("jedis", false);
+    try {
+      pipeline.set("key", "value");
+    }
+    finally {
+      AgentRule.setPluginEnabled("jedis", true);
+    }
+
+    pipeline.incr("key");
+    pipeline.sync();
+
+    // The output of the SET is not read as the output of the INCR
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(1, spans.size());
+    checkSpans(spans);
+    assertEquals("INCR", spans.get(0).operationName());
+    assertEquals(Boolean.TRUE, spans.get(0).tags().get(Tags.ERROR.getKey()));
+  }
+
+  @Test
+  public void pipelineDisabledOnRead(final MockTracer tracer) {
+    final Pipeline pipeline = jedis.pipelined();
+    pipeline.set("key", "value");
+    AgentRule.setPluginEnabled("jedis", false);
+    try {
+      pipeline.sync();
+    }
+    finally {
+      AgentRule.setPluginEnabled("jedis", true);
+    }
+
+    // The output of the SET is read, so the GET is matched to its own output
+    assertEquals("value", jedis.get("key"));
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(2, spans.size());
+    checkSpans(spans);
+    assertEquals("SET", spans.get(0).operationName());
+    assertEquals("GET", spans.get(1).operationName());
   }
 
   private static void checkSpans(final List<MockSpan> spans) {
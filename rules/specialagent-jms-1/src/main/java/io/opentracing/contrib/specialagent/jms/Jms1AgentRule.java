@@ -50,7 +50,7 @@ public class Jms1AgentRule extends AgentRule {
   public static class Producer {
     @Advice.OnMethodExit
     public static void enter(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
+      if (isEnabled(Jms1AgentRule.class, origin))
         returned = Jms1AgentIntercept.createProducer(returned);
     }
   }
@@ -58,7 +58,7 @@ public class Jms1AgentRule extends AgentRule {
   public static class Consumer {
     @Advice.OnMethodExit
     public static void enter(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
+      if (isEnabled(Jms1AgentRule.class, origin))
         returned = Jms1AgentIntercept.createConsumer(returned);
     }
   }
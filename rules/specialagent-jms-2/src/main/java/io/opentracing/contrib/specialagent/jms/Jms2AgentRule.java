@@ -49,7 +49,7 @@ public class Jms2AgentRule extends AgentRule {
   public static class Producer {
     @Advice.OnMethodExit
     public static void enter(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
+      if (isEnabled(Jms2AgentRule.class, origin))
         returned = Jms2AgentIntercept.createProducer(returned);
     }
   }
@@ -57,7 +57,7 @@ public class Jms2AgentRule extends AgentRule {
   public static class Consumer {
     @Advice.OnMethodExit
     public static void enter(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
+      if (isEnabled(Jms2AgentRule.class, origin))
         returned = Jms2AgentIntercept.createConsumer(returned);
     }
   }
@@ -15,32 +15,155 @@
 
 package io.opentracing.contrib.specialagent.kafka;
 
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.internals.RecordAccumulator;
+import org.apache.kafka.common.TopicPartition;
 
-import io.opentracing.Scope;
+import io.opentracing.References;
 import io.opentracing.Span;
-import io.opentracing.contrib.kafka.TracingCallback;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
 import io.opentracing.contrib.kafka.TracingKafkaUtils;
+import io.opentracing.contrib.specialagent.AgentRule;
+import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 
 public class KafkaAgentIntercept {
-  public static void onConsumerEnter(final Object records) {
-    for (final ConsumerRecord<?,?> record : (ConsumerRecords<?,?>)records)
-      TracingKafkaUtils.buildAndFinishChildSpan(record, GlobalTracer.get());
+  static final String CONSUMER_PROPERTY = "sa.instrumentation.plugin.kafka-client.consumer";
+  static final String COMPONENT_NAME = "java-kafka";
+  static final int MAX_REFERENCES = 32;
+  private static final Field batchSizeField;
+  private static final Field lingerMsField;
+  private static volatile boolean pollMode;
+  // The reload generation of pollMode, or -1 if pollMode is not yet resolved
+  private static volatile int pollModeGeneration = -1;
+
+  // RecordAccumulator has no accessors for its batching configuration
+  static {
+    Field batchSize = null;
+    Field lingerMs = null;
+    try {
+      batchSize = RecordAccumulator.class.getDeclaredField("batchSize");
+      batchSize.setAccessible(true);
+      lingerMs = RecordAccumulator.class.getDeclaredField("lingerMs");
+      lingerMs.setAccessible(true);
+    }
+    catch (final NoSuchFieldException | SecurityException e) {
+      AgentRule.logger.log(Level.WARNING, "Unable to resolve the batching configuration of RecordAccumulator: " + e.getMessage());
+      batchSize = null;
+    }
+
+    batchSizeField = batchSize;
+    lingerMsField = lingerMs;
+  }
+
+  public static void onConsumerExit(final Object returned) {
+    final ConsumerRecords<?,?> records = (ConsumerRecords<?,?>)returned;
+    if (records.isEmpty())
+      return;
+
+    if (isPollMode()) {
+      if (AgentRule.isSampled(KafkaAgentRule.class))
+        buildAndFinishPollSpan(records, GlobalTracer.get());
+    }
+    else {
+      for (final ConsumerRecord<?,?> record : records)
+        TracingKafkaUtils.buildAndFinishChildSpan(record, GlobalTracer.get());
+    }
+  }
+
+  /**
+   * Tests whether the consumer is in poll mode, as specified by the
+   * {@code sa.instrumentation.plugin.kafka-client.consumer} system property.
+   * The system property is read once, and the result is cached until
+   * {@link AgentRule#reload()}.
+   *
+   * @return Whether the consumer is in poll mode.
+   */
+  static boolean isPollMode() {
+    final int generation = AgentRule.getReloadGeneration();
+    if (pollModeGeneration != generation) {
+      // pollMode is written before its generation, so a thread that reads the
+      // current generation also reads the pollMode of that generation
+      pollMode = "poll".equals(System.getProperty(CONSUMER_PROPERTY));
+      pollModeGeneration = generation;
+    }
+
+    return pollMode;
   }
 
-  public static Object onProducerEnter(final Object record, final Object callback) {
-    final Span span = TracingKafkaUtils.buildAndInjectSpan((ProducerRecord<?,?>)record, GlobalTracer.get());
-    return new TracingCallback((Callback)callback, span, GlobalTracer.get());
+  /**
+   * Builds and finishes a single span for the specified records that were
+   * returned by one {@code poll}, which references the span contexts
+   * propagated in the headers of (up to {@link #MAX_REFERENCES} of) the
+   * records.
+   *
+   * @param records The records.
+   * @param tracer The tracer.
+   */
+  static void buildAndFinishPollSpan(final ConsumerRecords<?,?> records, final Tracer tracer) {
+    final StringBuilder partitions = new StringBuilder();
+    for (final TopicPartition partition : records.partitions()) {
+      if (partitions.length() > 0)
+        partitions.append(',');
+
+      partitions.append(partition);
+    }
+
+    final Tracer.SpanBuilder builder = tracer.buildSpan("poll")
+      .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CONSUMER)
+      .withTag(Tags.COMPONENT.getKey(), COMPONENT_NAME)
+      .withTag("records", records.count())
+      .withTag("partitions", partitions.toString());
+
+    long oldest = Long.MAX_VALUE;
+    final Set<String> referenced = new HashSet<>();
+    for (final ConsumerRecord<?,?> record : records) {
+      if (record.timestamp() >= 0 && record.timestamp() < oldest)
+        oldest = record.timestamp();
+
+      if (referenced.size() < MAX_REFERENCES) {
+        final SpanContext spanContext = TracingKafkaUtils.extractSpanContext(record.headers(), tracer);
+        if (spanContext != null && referenced.add(spanContext.toTraceId() + ":" + spanContext.toSpanId()))
+          builder.addReference(References.FOLLOWS_FROM, spanContext);
+      }
+    }
+
+    if (oldest != Long.MAX_VALUE)
+      builder.withTag("lag.ms", Math.max(0, System.currentTimeMillis() - oldest));
+
+    builder.start().finish();
+  }
+
+  public static Object onProducerEnter(final Object accumulator, final Object record, final Object callback) {
+    final Tracer tracer = GlobalTracer.get();
+    final Span span = TracingKafkaUtils.buildAndInjectSpan((ProducerRecord<?,?>)record, tracer);
+    if (accumulator != null && batchSizeField != null) {
+      try {
+        span.setTag("batch.size", (Number)batchSizeField.get(accumulator));
+        span.setTag("linger.ms", (Number)lingerMsField.get(accumulator));
+      }
+      catch (final IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    return new TracingProducerCallback((Callback)callback, span, tracer);
   }
 
-  @SuppressWarnings("resource")
-  public static void onProducerExit() {
-    final Scope active = GlobalTracer.get().scopeManager().active();
-    if (active != null)
-      active.close();
+  public static void onProducerExit(final Object callback, final Throwable thrown) {
+    if (thrown != null && callback instanceof TracingProducerCallback) {
+      final TracingProducerCallback tracingCallback = (TracingProducerCallback)callback;
+      tracingCallback.onError(thrown);
+      tracingCallback.finish();
+    }
   }
-}
\ No newline at end of file
+}
@@ -49,22 +49,22 @@ public class KafkaAgentRule extends AgentRule {
   public static class Consumer {
     @Advice.OnMethodExit
     public static void exit(final @Advice.Origin String origin, final @Advice.Return(typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
-        KafkaAgentIntercept.onConsumerEnter(returned);
+      if (isEnabled(KafkaAgentRule.class, origin))
+        KafkaAgentIntercept.onConsumerExit(returned);
     }
   }
 
   public static class Producer {
     @Advice.OnMethodEnter
-    public static void enter(final @Advice.Origin String origin, final @Advice.Argument(value = 0, typing = Typing.DYNAMIC) Object record, @Advice.Argument(value = 1, readOnly = false, typing = Typing.DYNAMIC) Object callback) {
-      if (isEnabled(origin))
-        callback = KafkaAgentIntercept.onProducerEnter(record, callback);
+    public static void enter(final @Advice.Origin String origin, final @Advice.FieldValue(value = "accumulator", typing = Typing.DYNAMIC) Object accumulator, final @Advice.Argument(value = 0, typing = Typing.DYNAMIC) Object record, @Advice.Argument(value = 1, readOnly = false, typing = Typing.DYNAMIC) Object callback) {
+      if (isEnabled(KafkaAgentRule.class, origin))
+        callback = KafkaAgentIntercept.onProducerEnter(accumulator, record, callback);
     }
 
-    @Advice.OnMethodExit
-    public static void exit(final @Advice.Origin String origin) {
-      if (isEnabled(origin))
-        KafkaAgentIntercept.onProducerExit();
+    @Advice.OnMethodExit(onThrowable = Throwable.class)
+    public static void exit(final @Advice.Origin String origin, final @Advice.Argument(value = 1, typing = Typing.DYNAMIC) Object callback, final @Advice.Thrown(typing = Typing.DYNAMIC) Throwable thrown) {
+      if (isEnabled(KafkaAgentRule.class, origin))
+        KafkaAgentIntercept.onProducerExit(callback, thrown);
     }
   }
 }
\ No newline at end of file
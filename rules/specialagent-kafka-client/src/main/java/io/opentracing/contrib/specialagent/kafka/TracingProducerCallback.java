@@ -0,0 +1,71 @@
+/* Copyright 2019 The OpenTracing Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.opentracing.contrib.specialagent.kafka;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
+
+/**
+ * A {@link Callback} that finishes the span of a {@code KafkaProducer.send},
+ * upon the completion of the send (or upon the failure of the call to
+ * {@code send} itself). The span is activated only while the wrapped callback
+ * is called, on the I/O thread of the producer.
+ */
+public class TracingProducerCallback implements Callback {
+  private final Callback callback;
+  private final Span span;
+  private final Tracer tracer;
+  private boolean finished;
+
+  public TracingProducerCallback(final Callback callback, final Span span, final Tracer tracer) {
+    this.callback = callback;
+    this.span = span;
+    this.tracer = tracer;
+  }
+
+  @Override
+  public void onCompletion(final RecordMetadata metadata, final Exception exception) {
+    if (exception != null)
+      onError(exception);
+
+    try {
+      if (callback != null) {
+        try (final Scope scope = tracer.activateSpan(span)) {
+          callback.onCompletion(metadata, exception);
+        }
+      }
+    }
+    finally {
+      finish();
+    }
+  }
+
+  void onError(final Throwable thrown) {
+    ErrorRecorder.onError(span, thrown);
+  }
+
+  synchronized void finish() {
+    if (!finished) {
+      finished = true;
+      span.finish();
+    }
+  }
+}
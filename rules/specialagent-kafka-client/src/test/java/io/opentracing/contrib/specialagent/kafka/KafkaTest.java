@@ -34,9 +34,11 @@ import java.util.concurrent.TimeUnit;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KafkaStreams;
@@ -53,11 +55,15 @@ import org.junit.runner.RunWith;
 import org.springframework.kafka.test.rule.EmbeddedKafkaRule;
 import org.springframework.kafka.test.utils.KafkaTestUtils;
 
+import io.opentracing.References;
+import io.opentracing.Scope;
 import io.opentracing.SpanContext;
 import io.opentracing.contrib.kafka.TracingKafkaUtils;
+import io.opentracing.contrib.specialagent.AgentRule;
 import io.opentracing.contrib.specialagent.AgentRunner;
 import io.opentracing.mock.MockSpan;
 import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
 
 @RunWith(AgentRunner.class)
 @AgentRunner.Config(isolateClassLoader = false)
@@ -88,6 +94,91 @@ public class KafkaTest {
     assertNull(tracer.activeSpan());
   }
 
+  @Test
+  public void producer(final MockTracer tracer) throws Exception {
+    final MockSpan parent = tracer.buildSpan("parent").start();
+    try (final Scope scope = tracer.activateSpan(parent)) {
+      try (final Producer<Integer,String> producer = createProducer()) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        producer.send(new ProducerRecord<>("producer-test", 1, "test"), new Callback() {
+          @Override
+          public void onCompletion(final RecordMetadata metadata, final Exception exception) {
+            assertNotNull(tracer.activeSpan());
+            latch.countDown();
+          }
+        }).get(15, TimeUnit.SECONDS);
+
+        // The scope of the application must not be closed by the send
+        assertSame(parent, tracer.activeSpan());
+        assertTrue(latch.await(15, TimeUnit.SECONDS));
+      }
+    }
+    finally {
+      parent.finish();
+    }
+
+    final List<MockSpan> finishedSpans = tracer.finishedSpans();
+    assertEquals(2, finishedSpans.size());
+    final MockSpan span = finishedSpans.get(0);
+    assertEquals(Tags.SPAN_KIND_PRODUCER, span.tags().get(Tags.SPAN_KIND.getKey()));
+    assertEquals(parent.context().spanId(), span.parentId());
+    assertEquals(16384, span.tags().get("batch.size"));
+    assertNotNull(span.tags().get("linger.ms"));
+    assertNull(tracer.activeSpan());
+  }
+
+  @Test
+  public void poll(final MockTracer tracer) {
+    System.setProperty(KafkaAgentIntercept.CONSUMER_PROPERTY, "poll");
+    AgentRule.reload();
+    try {
+      try (final Producer<Integer,String> producer = createProducer()) {
+        producer.send(new ProducerRecord<>("poll-test", 1, "test"));
+        producer.send(new ProducerRecord<>("poll-test", 1, "test"));
+      }
+
+      final Map<String,Object> consumerProps = KafkaTestUtils.consumerProps("pollConsumer", "false", embeddedKafkaRule.getEmbeddedKafka());
+      consumerProps.put("auto.offset.reset", "earliest");
+      int count = 0;
+      try (final KafkaConsumer<Integer,String> consumer = new KafkaConsumer<>(consumerProps)) {
+        consumer.subscribe(Collections.singletonList("poll-test"));
+        final long deadline = System.currentTimeMillis() + 30000;
+        while (count < 2 && System.currentTimeMillis() < deadline)
+          count += consumer.poll(Duration.of(100, ChronoUnit.MILLIS)).count();
+      }
+
+      assertEquals(2, count);
+    }
+    finally {
+      System.clearProperty(KafkaAgentIntercept.CONSUMER_PROPERTY);
+      AgentRule.reload();
+    }
+
+    int records = 0;
+    int producers = 0;
+    for (final MockSpan span : tracer.finishedSpans()) {
+      if ("poll".equals(span.operationName())) {
+        assertEquals(Tags.SPAN_KIND_CONSUMER, span.tags().get(Tags.SPAN_KIND.getKey()));
+        assertEquals("poll-test-0", span.tags().get("partitions"));
+        assertNotNull(span.tags().get("lag.ms"));
+        final int count = (Integer)span.tags().get("records");
+        assertEquals(count, span.references().size());
+        for (final MockSpan.Reference reference : span.references())
+          assertEquals(References.FOLLOWS_FROM, reference.getReferenceType());
+
+        records += count;
+      }
+      else {
+        assertEquals(Tags.SPAN_KIND_PRODUCER, span.tags().get(Tags.SPAN_KIND.getKey()));
+        ++producers;
+      }
+    }
+
+    assertEquals(2, records);
+    assertEquals(2, producers);
+    assertNull(tracer.activeSpan());
+  }
+
   @Test
   public void streams(MockTracer tracer) {
     try (final Producer<Integer,String> producer = createProducer()) {
@@ -15,6 +15,11 @@
 
 package io.opentracing.contrib.specialagent.lettuce;
 
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.lettuce.core.RedisChannelHandler;
 import io.lettuce.core.api.async.RedisAsyncCommands;
 import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
 import io.lettuce.core.pubsub.RedisPubSubListener;
@@ -27,23 +32,61 @@ import io.opentracing.contrib.redis.lettuce.TracingRedisPubSubListener;
 import io.opentracing.util.GlobalTracer;
 
 public class LettuceAgentIntercept {
+  // GlobalTracer.get() delegates to the registered tracer, so one configuration serves all connections
+  private static final TracingConfiguration tracingConfiguration = new TracingConfiguration.Builder(GlobalTracer.get()).build();
+
+  // A connection returns the same async commands instance from each call to async(), which is
+  // mapped to its traced wrapper by the connection. The wrapper references the async commands
+  // instance (and thus the connection) strongly, so a weak key would never be cleared. Instead,
+  // the wrapper is held strongly while the connection is open, and is removed when the
+  // connection is closed. An open connection is strongly reachable from its channel and from
+  // its RedisClient regardless, so the map does not extend its lifetime. RedisChannelHandler
+  // does not override equals() and hashCode(), so the ConcurrentHashMap compares connections by
+  // identity, and the lookup upon each call to async() takes no lock.
+  private static final ConcurrentMap<Object,Object> connectionToTraced = new ConcurrentHashMap<>();
+
+  private static Object putTraced(final Object connection, final Object traced) {
+    // Entries are added once per connection, which is when the entries of connections whose close
+    // was not intercepted are purged
+    for (final Iterator<Object> iterator = connectionToTraced.keySet().iterator(); iterator.hasNext();) {
+      final Object key = iterator.next();
+      if (key instanceof RedisChannelHandler && !((RedisChannelHandler<?,?>)key).isOpen())
+        iterator.remove();
+    }
+
+    final Object existing = connectionToTraced.putIfAbsent(connection, traced);
+    return existing != null ? existing : traced;
+  }
+
+  public static void close(final Object connection) {
+    connectionToTraced.remove(connection);
+  }
+
   @SuppressWarnings("unchecked")
-  public static Object getAsyncCommands(final Object returned) {
+  public static Object getAsyncCommands(final Object connection, final Object returned) {
     if (returned instanceof TracingRedisAsyncCommands)
       return returned;
 
+    final Object traced = connectionToTraced.get(connection);
+    if (traced != null)
+      return traced;
+
     if (returned instanceof RedisPubSubAsyncCommands)
-      return new TracingRedisPubSubAsyncCommands<>((RedisPubSubAsyncCommands<Object,Object>)returned, new TracingConfiguration.Builder(GlobalTracer.get()).build());
+      return putTraced(connection, new TracingRedisPubSubAsyncCommands<>((RedisPubSubAsyncCommands<Object,Object>)returned, tracingConfiguration));
 
-    return new TracingRedisAsyncCommands<>((RedisAsyncCommands<Object,Object>)returned, new TracingConfiguration.Builder(GlobalTracer.get()).build());
+    return putTraced(connection, new TracingRedisAsyncCommands<>((RedisAsyncCommands<Object,Object>)returned, tracingConfiguration));
   }
 
   @SuppressWarnings("unchecked")
-  public static Object getAsyncClusterCommands(final Object returned) {
+  public static Object getAsyncClusterCommands(final Object connection, final Object returned) {
     if (returned instanceof TracingRedisAdvancedClusterAsyncCommands)
       return returned;
 
-    return new TracingRedisAdvancedClusterAsyncCommands<>((RedisAdvancedClusterAsyncCommands<Object,Object>)returned, new TracingConfiguration.Builder(GlobalTracer.get()).build());
+    final Object traced = connectionToTraced.get(connection);
+    if (traced != null)
+      return traced;
+
+    return putTraced(connection, new TracingRedisAdvancedClusterAsyncCommands<>((RedisAdvancedClusterAsyncCommands<Object,Object>)returned, tracingConfiguration));
   }
 
   @SuppressWarnings("unchecked")
@@ -51,6 +94,6 @@ public class LettuceAgentIntercept {
     if (arg instanceof TracingRedisPubSubListener)
         return arg;
 
-    return new TracingRedisPubSubListener<>((RedisPubSubListener<Object,Object>)arg, new TracingConfiguration.Builder(GlobalTracer.get()).build());
+    return new TracingRedisPubSubListener<>((RedisPubSubListener<Object,Object>)arg, tracingConfiguration);
   }
 }
\ No newline at end of file
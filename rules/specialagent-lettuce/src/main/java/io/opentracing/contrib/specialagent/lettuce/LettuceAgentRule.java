@@ -49,30 +49,45 @@ public class LettuceAgentRule extends AgentRule {
         @Override
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
           return builder.visit(Advice.to(AddPubSubListener.class).on(named("addListener")));
+        }})
+      .type(named("io.lettuce.core.RedisChannelHandler"))
+      .transform(new Transformer() {
+        @Override
+        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
+          return builder.visit(Advice.to(CloseAsync.class).on(named("closeAsync")));
         }}));
   }
 
   public static class StatefulRedis {
     @Advice.OnMethodExit
-    public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
-        returned = LettuceAgentIntercept.getAsyncCommands(returned);
+    public static void exit(final @Advice.Origin String origin, final @Advice.This Object thiz, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
+      if (isEnabled(LettuceAgentRule.class, origin))
+        returned = LettuceAgentIntercept.getAsyncCommands(thiz, returned);
     }
   }
 
   public static class StatefulRedisCluster {
     @Advice.OnMethodExit
-    public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
-        returned = LettuceAgentIntercept.getAsyncClusterCommands(returned);
+    public static void exit(final @Advice.Origin String origin, final @Advice.This Object thiz, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
+      if (isEnabled(LettuceAgentRule.class, origin))
+        returned = LettuceAgentIntercept.getAsyncClusterCommands(thiz, returned);
     }
   }
 
   public static class AddPubSubListener {
     @Advice.OnMethodEnter
     public static void enter(final @Advice.Origin String origin, @Advice.Argument(value = 0, readOnly = false, typing = Typing.DYNAMIC) Object arg) {
-      if (isEnabled(origin))
+      if (isEnabled(LettuceAgentRule.class, origin))
         arg = LettuceAgentIntercept.addPubSubListener(arg);
     }
   }
+
+  public static class CloseAsync {
+    @Advice.OnMethodExit
+    public static void exit(final @Advice.This Object thiz) {
+      // Not guarded by isEnabled(), so that the traced wrapper of a connection
+      // is released even if the rule was disabled after the wrapper was created
+      LettuceAgentIntercept.close(thiz);
+    }
+  }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import static org.hamcrest.core.IsEqual.*;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
@@ -113,6 +114,7 @@ public class LettuceTest {
   public void testAsync(final MockTracer tracer) throws Exception {
     try (final StatefulRedisConnection<String,String> connection = client.connect()) {
       final RedisAsyncCommands<String,String> commands = connection.async();
+      assertSame(commands, connection.async());
       assertEquals("OK", commands.set("key2", "value2").get(15, TimeUnit.SECONDS));
       assertEquals("value2", commands.get("key2").get(15, TimeUnit.SECONDS));
     }
@@ -121,6 +123,43 @@ public class LettuceTest {
     assertEquals(2, spans.size());
   }
 
+  @Test
+  public void testAsyncAfterGc(final MockTracer tracer) throws Exception {
+    try (final StatefulRedisConnection<String,String> connection = client.connect()) {
+      // The traced wrapper must stay reachable for the lifetime of the
+      // connection, even if the caller drops its reference to it
+      final int identity = System.identityHashCode(connection.async());
+      for (int i = 0; i < 3; ++i) {
+        System.gc();
+        Thread.sleep(10);
+      }
+
+      final RedisAsyncCommands<String,String> commands = connection.async();
+      assertEquals(identity, System.identityHashCode(commands));
+      assertEquals("OK", commands.set("key3", "value3").get(15, TimeUnit.SECONDS));
+    }
+
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(1, spans.size());
+  }
+
+  @Test
+  public void testAsyncAfterClose() throws Exception {
+    final WeakReference<RedisAsyncCommands<String,String>> reference;
+    try (final StatefulRedisConnection<String,String> connection = client.connect()) {
+      reference = new WeakReference<>(connection.async());
+      assertSame(reference.get(), connection.async());
+    }
+
+    // Closing the connection releases its traced wrapper
+    for (int i = 0; i < 50 && reference.get() != null; ++i) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertNull(reference.get());
+  }
+
   private static Callable<Integer> reportedSpansSize(final MockTracer tracer) {
     return () -> tracer.finishedSpans().size();
   }
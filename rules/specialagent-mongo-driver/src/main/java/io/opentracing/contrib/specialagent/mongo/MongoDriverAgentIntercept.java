@@ -15,15 +15,88 @@
 
 package io.opentracing.contrib.specialagent.mongo;
 
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+import org.bson.BsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.json.JsonWriter;
+
 import com.mongodb.MongoClientSettings.Builder;
+import com.mongodb.ServerAddress;
+import com.mongodb.event.CommandStartedEvent;
 
+import io.opentracing.Span;
 import io.opentracing.contrib.mongo.common.TracingCommandListener;
-import io.opentracing.contrib.specialagent.AgentRuleUtil;
+import io.opentracing.contrib.specialagent.AgentRule;
+import io.opentracing.contrib.specialagent.CallerMatcher;
+import io.opentracing.contrib.specialagent.StatementCapture.Appender;
+import io.opentracing.contrib.specialagent.StatementCapture.Encoder;
+import io.opentracing.contrib.specialagent.StatementCapture.Mode;
+import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 
 public class MongoDriverAgentIntercept {
+  private static final CallerMatcher asyncClientSettings = CallerMatcher.method("com.mongodb.async.client.MongoClientSettings.createFromClientSettings").at(4);
+
+  private static final BsonDocumentCodec documentCodec = new BsonDocumentCodec();
+
+  /**
+   * Encoder of a command document, as JSON in {@link Mode#FULL} mode, or as
+   * the first element of the document (i.e. the name of the command and the
+   * collection) in {@link Mode#KEYS} mode.
+   */
+  private static final Encoder<BsonDocument> commandEncoder = new Encoder<BsonDocument>() {
+    @Override
+    public void encode(final BsonDocument command, final Mode mode, final Appender appender) {
+      final BsonDocument document;
+      if (mode == Mode.KEYS && command.size() > 1) {
+        final String key = command.keySet().iterator().next();
+        document = new BsonDocument(key, command.get(key));
+      }
+      else {
+        document = command;
+      }
+
+      documentCodec.encode(new JsonWriter(appender), document, EncoderContext.builder().build());
+    }
+  };
+
+  /**
+   * Decorates the span of a command in place of
+   * {@code TracingCommandListener.decorate(Span,CommandStartedEvent)}, with the
+   * statement captured as specified by
+   * {@link AgentRule#getStatementCapture(Class)}, so that the command document
+   * is not encoded in full.
+   *
+   * @return {@code true}, so that the original method is skipped.
+   */
+  public static boolean decorate(final Object span, final Object event) {
+    final Span s = (Span)span;
+    final CommandStartedEvent commandStartedEvent = (CommandStartedEvent)event;
+    Tags.COMPONENT.set(s, "java-mongo");
+    final String statement = AgentRule.getStatementCapture(MongoDriverAgentRule.class).capture(commandStartedEvent.getCommand(), commandEncoder);
+    if (statement != null)
+      Tags.DB_STATEMENT.set(s, statement);
+
+    Tags.DB_INSTANCE.set(s, commandStartedEvent.getDatabaseName());
+    final ServerAddress serverAddress = commandStartedEvent.getConnectionDescription().getServerAddress();
+    Tags.PEER_HOSTNAME.set(s, serverAddress.getHost());
+    final InetAddress inetAddress = serverAddress.getSocketAddress().getAddress();
+    if (inetAddress instanceof Inet4Address)
+      Tags.PEER_HOST_IPV4.set(s, ByteBuffer.wrap(inetAddress.getAddress()).getInt());
+    else
+      Tags.PEER_HOST_IPV6.set(s, inetAddress.getHostAddress());
+
+    Tags.PEER_PORT.set(s, serverAddress.getPort());
+    Tags.DB_TYPE.set(s, "mongo");
+    return true;
+  }
+
   public static void exit(final Object returned) {
-    if (!AgentRuleUtil.callerEquals(4, "com.mongodb.async.client.MongoClientSettings.createFromClientSettings"))
+    if (!asyncClientSettings.matches())
       ((Builder)returned).addCommandListener(new TracingCommandListener.Builder(GlobalTracer.get()).build());
   }
 }
\ No newline at end of file
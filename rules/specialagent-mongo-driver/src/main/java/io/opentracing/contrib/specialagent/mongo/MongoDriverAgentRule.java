@@ -20,28 +20,29 @@ import static net.bytebuddy.matcher.ElementMatchers.*;
 import java.util.Arrays;
 
 import io.opentracing.contrib.specialagent.AgentRule;
+import io.opentracing.contrib.specialagent.DynamicAdvice;
 import net.bytebuddy.agent.builder.AgentBuilder;
-import net.bytebuddy.agent.builder.AgentBuilder.Transformer;
 import net.bytebuddy.asm.Advice;
-import net.bytebuddy.description.type.TypeDescription;
-import net.bytebuddy.dynamic.DynamicType.Builder;
-import net.bytebuddy.utility.JavaModule;
 
 public class MongoDriverAgentRule extends AgentRule {
   @Override
   public Iterable<? extends AgentBuilder> buildAgent(final AgentBuilder builder) throws Exception {
     return Arrays.asList(builder
       .type(hasSuperType(named("com.mongodb.MongoClientSettings")))
-      .transform(new Transformer() {
-        @Override
-        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
-          return builder.visit(Advice.to(MongoDriverAgentRule.class).on(named("builder")));
-        }}));
+      .transform(DynamicAdvice.of(MongoDriverAgentRule.class).on(named("builder")))
+      .type(named("io.opentracing.contrib.mongo.common.TracingCommandListener"))
+      .transform(DynamicAdvice.of(Decorate.class).on(isStatic().and(named("decorate")).and(takesArguments(2)))));
+  }
+
+  public static class Decorate {
+    @Advice.OnMethodEnter(skipOn = Advice.OnNonDefaultValue.class)
+    public static boolean enter(final @Advice.Argument(value = 0) Object span, final @Advice.Argument(value = 1) Object event) {
+      return MongoDriverAgentIntercept.decorate(span, event);
+    }
   }
 
   @Advice.OnMethodExit
   public static void exit(final @Advice.Origin String origin, final @Advice.Return Object returned) {
-    if (isEnabled(origin))
-      MongoDriverAgentIntercept.exit(returned);
+    MongoDriverAgentIntercept.exit(returned);
   }
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.bson.Document;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -37,9 +38,11 @@ import com.mongodb.connection.ClusterSettings;
 
 import de.bwaldvogel.mongo.MongoServer;
 import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.opentracing.contrib.specialagent.AgentRule;
 import io.opentracing.contrib.specialagent.AgentRunner;
 import io.opentracing.mock.MockSpan;
 import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
 
 /**
  * @author rmfitzpatrick
@@ -47,6 +50,11 @@ import io.opentracing.mock.MockTracer;
  */
 @RunWith(AgentRunner.class)
 public class MongoClientTest {
+  @Before
+  public void before(final MockTracer tracer) {
+    tracer.reset();
+  }
+
   @Test
   public void testMongoClient(final MockTracer tracer) {
     final MongoServer server = new MongoServer(new MemoryBackend());
@@ -71,8 +79,44 @@ public class MongoClientTest {
       assertEquals(2, spans.size());
       assertEquals("insert", spans.get(0).operationName());
       assertEquals("find", spans.get(1).operationName());
+      final String statement = (String)spans.get(0).tags().get(Tags.DB_STATEMENT.getKey());
+      assertTrue(statement, statement.startsWith("{\"insert\": \"MyCollection\""));
+      assertTrue(statement, statement.contains("\"name\": \"MyDocument\""));
+      assertEquals("MyDB", spans.get(0).tags().get(Tags.DB_INSTANCE.getKey()));
+      assertEquals(serverAddress.getPort(), spans.get(0).tags().get(Tags.PEER_PORT.getKey()));
+    }
+    finally {
+      server.shutdown();
+    }
+  }
+
+  @Test
+  public void testKeysStatement(final MockTracer tracer) {
+    final MongoServer server = new MongoServer(new MemoryBackend());
+    final InetSocketAddress serverAddress = server.bind();
+    System.setProperty("sa.instrumentation.plugin.mongo-driver.statement", "keys");
+    AgentRule.reloadStatementCapture();
+
+    try {
+      final MongoClientSettings mongoSettings = MongoClientSettings.builder().applyToClusterSettings(new Block<ClusterSettings.Builder>() {
+        @Override
+        public void apply(final ClusterSettings.Builder builder) {
+          builder.hosts(Arrays.asList(new ServerAddress(serverAddress)));
+        }
+      }).build();
+
+      try (final MongoClient mongoClient = MongoClients.create(mongoSettings)) {
+        final MongoCollection<Document> collection = mongoClient.getDatabase("MyDB").getCollection("MyCollection");
+        collection.insertOne(new Document("name", "MyDocument"));
+      }
+
+      final List<MockSpan> spans = tracer.finishedSpans();
+      assertEquals(1, spans.size());
+      assertEquals("{\"insert\": \"MyCollection\"}", spans.get(0).tags().get(Tags.DB_STATEMENT.getKey()));
     }
     finally {
+      System.clearProperty("sa.instrumentation.plugin.mongo-driver.statement");
+      AgentRule.reloadStatementCapture();
       server.shutdown();
     }
   }
@@ -25,16 +25,30 @@ import io.opentracing.util.GlobalTracer;
 import okhttp3.Interceptor;
 
 public class OkHttpAgentIntercept {
+  private static final TracingInterceptor interceptor = new TracingInterceptor(GlobalTracer.get(), Collections.singletonList(OkHttpClientSpanDecorator.STANDARD_TAGS));
+
+  /**
+   * Returns the specified interceptors of an {@code OkHttpClient} with the
+   * {@link TracingInterceptor} added first. The {@code OkHttpClient.Builder}
+   * from which the list was copied is left untouched, so the interceptors of
+   * the caller's builder are not modified.
+   *
+   * @param interceptors The immutable list of interceptors of the client.
+   * @return An immutable copy of the specified list with the
+   *         {@link TracingInterceptor} added first, or the specified list if it
+   *         already contains a {@link TracingInterceptor} (i.e. the client was
+   *         built from the {@code newBuilder()} of a traced client).
+   */
   @SuppressWarnings("unchecked")
-  public static Object exit(final Object returned) {
-    final List<Interceptor> interceptors = (List<Interceptor>)returned;
-    for (final Interceptor interceptor : interceptors)
-      if (interceptor instanceof TracingInterceptor)
-        return returned;
+  public static Object addInterceptor(final Object interceptors) {
+    final List<Interceptor> list = (List<Interceptor>)interceptors;
+    for (final Interceptor existing : list)
+      if (existing instanceof TracingInterceptor)
+        return list;
 
-    final List<Interceptor> newInterceptors = new ArrayList<>(interceptors);
-    final TracingInterceptor interceptor = new TracingInterceptor(GlobalTracer.get(), Collections.singletonList(OkHttpClientSpanDecorator.STANDARD_TAGS));
-    newInterceptors.add(0, interceptor);
-    return Collections.unmodifiableList(newInterceptors);
+    final List<Interceptor> copy = new ArrayList<>(list.size() + 1);
+    copy.add(interceptor);
+    copy.addAll(list);
+    return Collections.unmodifiableList(copy);
   }
 }
\ No newline at end of file
@@ -36,29 +36,15 @@ public class OkHttpAgentRule extends AgentRule {
       .transform(new Transformer() {
         @Override
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
-          return builder.visit(Advice.to(Interceptors.class).on(named("interceptors")));
-        }})
-      .transform(new Transformer() {
-        @Override
-        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
-          return builder.visit(Advice.to(NetworkInterceptors.class).on(named("networkInterceptors")));
+          return builder.visit(Advice.to(OkHttpAgentRule.class).on(isConstructor().and(takesArguments(1)).and(takesArgument(0, named("okhttp3.OkHttpClient$Builder")))));
         }}));
   }
 
-  public static class Interceptors {
-    @Advice.OnMethodExit
-    public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      isVerbose(OkHttpAgentRule.class);
-      if (isEnabled(origin))
-        returned = OkHttpAgentIntercept.exit(returned);
-    }
-  }
-
-  public static class NetworkInterceptors {
-    @Advice.OnMethodExit
-    public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
-        returned = OkHttpAgentIntercept.exit(returned);
+  @Advice.OnMethodExit
+  public static void exit(final @Advice.Origin String origin, @Advice.FieldValue(value = "interceptors", readOnly = false, typing = Typing.DYNAMIC) Object interceptors, @Advice.FieldValue(value = "networkInterceptors", readOnly = false, typing = Typing.DYNAMIC) Object networkInterceptors) {
+    if (isEnabled(OkHttpAgentRule.class, origin)) {
+      interceptors = OkHttpAgentIntercept.addInterceptor(interceptors);
+      networkInterceptors = OkHttpAgentIntercept.addInterceptor(networkInterceptors);
     }
   }
 }
\ No newline at end of file
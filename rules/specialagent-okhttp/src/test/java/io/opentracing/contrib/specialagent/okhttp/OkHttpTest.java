@@ -18,6 +18,7 @@ package io.opentracing.contrib.specialagent.okhttp;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Before;
@@ -28,6 +29,7 @@ import io.opentracing.contrib.specialagent.AgentRunner;
 import io.opentracing.mock.MockSpan;
 import io.opentracing.mock.MockTracer;
 import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -47,12 +49,41 @@ public class OkHttpTest {
     test(client, tracer);
   }
 
+  @Test
+  public void testBuilderUntouched(final MockTracer tracer) throws IOException {
+    final Interceptor interceptor = new Interceptor() {
+      @Override
+      public Response intercept(final Chain chain) throws IOException {
+        return chain.proceed(chain.request());
+      }
+    };
+
+    final OkHttpClient.Builder builder = new OkHttpClient.Builder().addInterceptor(interceptor);
+    final OkHttpClient client = builder.build();
+    assertEquals(Collections.singletonList(interceptor), builder.interceptors());
+    assertTrue(builder.networkInterceptors().isEmpty());
+
+    assertEquals(2, client.interceptors().size());
+    assertSame(interceptor, client.interceptors().get(1));
+    assertEquals(2, builder.build().interceptors().size());
+    assertEquals(1, builder.interceptors().size());
+  }
+
   @Test
   public void testConstructor(final MockTracer tracer) throws IOException {
     final OkHttpClient client = new OkHttpClient();
     test(client, tracer);
   }
 
+  @Test
+  public void testNewBuilder(final MockTracer tracer) throws IOException {
+    final OkHttpClient client = new OkHttpClient();
+    final OkHttpClient newClient = client.newBuilder().build();
+    assertSame(client.interceptors().get(0), newClient.interceptors().get(0));
+    assertSame(client.interceptors(), client.interceptors());
+    test(newClient, tracer);
+  }
+
   private static void test(final OkHttpClient client, final MockTracer tracer) throws IOException {
     try (final MockWebServer server = new MockWebServer()) {
       server.enqueue(new MockResponse().setBody("hello, world!").setResponseCode(200));
@@ -17,9 +17,6 @@ package io.opentracing.contrib.specialagent.rabbitmq;
 
 import static io.opentracing.contrib.rabbitmq.TracingUtils.*;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.AMQP.BasicProperties;
 import com.rabbitmq.client.Consumer;
@@ -30,7 +27,7 @@ import io.opentracing.Span;
 import io.opentracing.Tracer;
 import io.opentracing.contrib.rabbitmq.TracingConsumer;
 import io.opentracing.contrib.rabbitmq.TracingUtils;
-import io.opentracing.tag.Tags;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
 import io.opentracing.util.GlobalTracer;
 
 public class RabbitMQAgentIntercept {
@@ -49,7 +46,7 @@ public class RabbitMQAgentIntercept {
   public static void exitGet(final Object response, final Object queue, final Throwable thrown) {
     final Span span = TracingUtils.buildChildSpan(((GetResponse)response).getProps(), (String)queue, GlobalTracer.get());
     if (thrown != null)
-      captureException(span, thrown);
+      ErrorRecorder.onError(span, thrown);
 
     span.finish();
   }
@@ -79,18 +76,10 @@ public class RabbitMQAgentIntercept {
       return;
 
     if (thrown != null)
-      captureException(context.span, thrown);
+      ErrorRecorder.onError(context.span, thrown);
 
     context.scope.close();
     context.span.finish();
     contextHolder.remove();
   }
-
-  private static void captureException(final Span span, final Throwable thrown) {
-    final Map<String,Object> exceptionLogs = new HashMap<>();
-    exceptionLogs.put("event", Tags.ERROR.getKey());
-    exceptionLogs.put("error.object", thrown);
-    span.log(exceptionLogs);
-    Tags.ERROR.set(span, true);
-  }
 }
\ No newline at end of file
@@ -54,7 +54,7 @@ public class RabbitMQAgentRule extends AgentRule {
   public static class OnEnterConsume {
     @Advice.OnMethodEnter
     public static void enter(final @Advice.Origin String origin, final @Advice.Argument(value = 0) Object queue, @Advice.Argument(value = 6, readOnly = false, typing = Typing.DYNAMIC) Object callback) {
-      if (isEnabled(origin))
+      if (isEnabled(RabbitMQAgentRule.class, origin))
         callback = RabbitMQAgentIntercept.enterConsume(callback, queue);
     }
   }
@@ -62,7 +62,7 @@ public class RabbitMQAgentRule extends AgentRule {
   public static class OnEnterPublish {
     @Advice.OnMethodEnter
     public static void enter(final @Advice.Origin String origin, final @Advice.Argument(value = 0) Object exchange, final @Advice.Argument(value = 1) Object routingKey, @Advice.Argument(value = 4, readOnly = false, typing = Typing.DYNAMIC) Object props) {
-      if (isEnabled(origin))
+      if (isEnabled(RabbitMQAgentRule.class, origin))
         props = RabbitMQAgentIntercept.enterPublish(exchange, routingKey, props);
     }
   }
@@ -70,7 +70,7 @@ public class RabbitMQAgentRule extends AgentRule {
   public static class OnExitPublish {
     @Advice.OnMethodExit(onThrowable = Throwable.class)
     public static void exit(final @Advice.Origin String origin, final @Advice.Thrown Throwable thrown) {
-      if (isEnabled(origin))
+      if (isEnabled(RabbitMQAgentRule.class, origin))
         RabbitMQAgentIntercept.exitPublish(thrown);
     }
   }
@@ -78,7 +78,7 @@ public class RabbitMQAgentRule extends AgentRule {
   public static class OnExitGet {
     @Advice.OnMethodExit(onThrowable = Throwable.class)
     public static void exit(final @Advice.Origin String origin, final @Advice.Thrown Throwable thrown, final @Advice.Argument(value = 0) Object queue, final @Advice.Return Object returned) {
-      if (isEnabled(origin))
+      if (isEnabled(RabbitMQAgentRule.class, origin))
         RabbitMQAgentIntercept.exitGet(returned, queue, thrown);
     }
   }
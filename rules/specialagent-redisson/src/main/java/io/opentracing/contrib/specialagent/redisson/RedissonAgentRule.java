@@ -42,7 +42,7 @@ public class RedissonAgentRule extends AgentRule {
 
   @Advice.OnMethodExit
   public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-    if (isEnabled(origin))
+    if (isEnabled(RedissonAgentRule.class, origin))
       returned = RedissonAgentIntercept.exit(returned);
   }
 }
\ No newline at end of file
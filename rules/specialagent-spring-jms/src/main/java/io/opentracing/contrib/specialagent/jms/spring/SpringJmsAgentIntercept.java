@@ -15,9 +15,6 @@
 
 package io.opentracing.contrib.specialagent.jms.spring;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import javax.jms.Message;
 
 import io.opentracing.References;
@@ -28,6 +25,7 @@ import io.opentracing.Tracer;
 import io.opentracing.Tracer.SpanBuilder;
 import io.opentracing.contrib.jms.common.SpanContextContainer;
 import io.opentracing.contrib.jms.common.TracingMessageUtils;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 
@@ -85,18 +83,10 @@ public class SpringJmsAgentIntercept {
       return;
 
     if (thrown != null)
-      captureException(context.span, thrown);
+      ErrorRecorder.onError(context.span, thrown);
 
     context.scope.close();
     context.span.finish();
     contextHolder.remove();
   }
-
-  private static void captureException(final Span span, final Throwable t) {
-    final Map<String,Object> exceptionLogs = new HashMap<>();
-    exceptionLogs.put("event", Tags.ERROR.getKey());
-    exceptionLogs.put("error.object", t);
-    span.log(exceptionLogs);
-    Tags.ERROR.set(span, true);
-  }
 }
\ No newline at end of file
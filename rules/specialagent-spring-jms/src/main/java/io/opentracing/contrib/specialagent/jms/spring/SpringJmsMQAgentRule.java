@@ -40,13 +40,13 @@ public class SpringJmsMQAgentRule extends AgentRule {
 
   @Advice.OnMethodEnter
   public static void enter(final @Advice.Origin String origin, final @Advice.Argument(value = 0) Object message) {
-    if (isEnabled(origin))
+    if (isEnabled(SpringJmsMQAgentRule.class, origin))
       SpringJmsAgentIntercept.onMessageEnter(message);
   }
 
   @Advice.OnMethodExit(onThrowable = Throwable.class)
   public static void exit(final @Advice.Origin String origin, final @Advice.Thrown Throwable thrown) {
-    if (isEnabled(origin))
+    if (isEnabled(SpringJmsMQAgentRule.class, origin))
       SpringJmsAgentIntercept.onMessageExit(thrown);
   }
 }
\ No newline at end of file
@@ -15,9 +15,6 @@
 
 package io.opentracing.contrib.specialagent.kafka.spring;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 
 import io.opentracing.References;
@@ -27,6 +24,7 @@ import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.Tracer.SpanBuilder;
 import io.opentracing.contrib.kafka.TracingKafkaUtils;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 
@@ -72,7 +70,7 @@ public class SpringKafkaAgentIntercept {
       --context.counter;
       if (context.counter == 0) {
         if (thrown != null) {
-          captureException(context.span, thrown);
+          ErrorRecorder.onError(context.span, thrown);
         }
         context.scope.close();
         context.span.finish();
@@ -80,12 +78,4 @@ public class SpringKafkaAgentIntercept {
       }
     }
   }
-
-  private static void captureException(final Span span, final Throwable t) {
-    final Map<String,Object> exceptionLogs = new HashMap<>();
-    exceptionLogs.put("event", Tags.ERROR.getKey());
-    exceptionLogs.put("error.object", t);
-    span.log(exceptionLogs);
-    Tags.ERROR.set(span, true);
-  }
 }
\ No newline at end of file
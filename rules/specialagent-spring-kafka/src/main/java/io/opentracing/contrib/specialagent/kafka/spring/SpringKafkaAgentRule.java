@@ -40,13 +40,13 @@ public class SpringKafkaAgentRule extends AgentRule {
 
   @Advice.OnMethodEnter
   public static void enter(final @Advice.Origin String origin, final @Advice.Argument(value = 0) Object record) {
-    if (isEnabled(origin))
+    if (isEnabled(SpringKafkaAgentRule.class, origin))
       SpringKafkaAgentIntercept.onMessageEnter(record);
   }
 
   @Advice.OnMethodExit(onThrowable = Throwable.class)
   public static void exit(final @Advice.Origin String origin, final @Advice.Thrown Throwable thrown) {
-    if (isEnabled(origin))
+    if (isEnabled(SpringKafkaAgentRule.class, origin))
       SpringKafkaAgentIntercept.onMessageExit(thrown);
   }
 }
\ No newline at end of file
@@ -48,7 +48,7 @@ public class TypeExcludeFilterAgentRule extends AgentRule {
   public static class TypeExcludeFilter {
     @Advice.OnMethodExit(onThrowable = NoClassDefFoundError.class)
     public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned, @Advice.Thrown(readOnly = false, typing = Typing.DYNAMIC) NoClassDefFoundError thrown) {
-      if (isEnabled(origin)) {
+      if (isEnabled(TypeExcludeFilterAgentRule.class, origin)) {
         AgentRule.logger.log(Level.INFO, thrown.getMessage(), thrown);
         thrown = null;
         returned = Boolean.FALSE;
@@ -59,7 +59,7 @@ public class TypeExcludeFilterAgentRule extends AgentRule {
   public static class DefaultListableBeanFactory {
     @Advice.OnMethodExit(onThrowable = NoClassDefFoundError.class)
     public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned, @Advice.Thrown(readOnly = false, typing = Typing.DYNAMIC) NoClassDefFoundError thrown) {
-      if (isEnabled(origin)) {
+      if (isEnabled(TypeExcludeFilterAgentRule.class, origin)) {
         AgentRule.logger.log(Level.INFO, thrown.getMessage(), thrown);
         thrown = null;
         returned = null;
@@ -15,7 +15,6 @@
 
 package io.opentracing.contrib.specialagent.rabbitmq.spring;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.amqp.core.Message;
@@ -26,6 +25,7 @@ import io.opentracing.Span;
 import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.Tracer.SpanBuilder;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
 import io.opentracing.propagation.Format.Builtin;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
@@ -76,18 +76,10 @@ public class SpringRabbitMQAgentIntercept {
       return;
 
     if (thrown != null)
-      captureException(context.span, thrown);
+      ErrorRecorder.onError(context.span, thrown);
 
     context.scope.close();
     context.span.finish();
     contextHolder.remove();
   }
-
-  private static void captureException(final Span span, final Throwable t) {
-    final Map<String,Object> exceptionLogs = new HashMap<>();
-    exceptionLogs.put("event", Tags.ERROR.getKey());
-    exceptionLogs.put("error.object", t);
-    span.log(exceptionLogs);
-    Tags.ERROR.set(span, true);
-  }
 }
\ No newline at end of file
@@ -41,13 +41,13 @@ public class SpringRabbitMQAgentRule extends AgentRule {
 
   @Advice.OnMethodEnter
   public static void enter(final @Advice.Origin String origin, final @Advice.Argument(value = 0) Object message) {
-    if (isEnabled(origin))
+    if (isEnabled(SpringRabbitMQAgentRule.class, origin))
       SpringRabbitMQAgentIntercept.onMessageEnter(message);
   }
 
   @Advice.OnMethodExit(onThrowable = Throwable.class)
   public static void exit(final @Advice.Origin String origin, @Advice.Thrown(typing = Typing.DYNAMIC) Throwable thrown) {
-    if (isEnabled(origin))
+    if (isEnabled(SpringRabbitMQAgentRule.class, origin))
       SpringRabbitMQAgentIntercept.onMessageExit(thrown);
   }
 }
\ No newline at end of file
@@ -15,15 +15,13 @@
 
 package io.opentracing.contrib.specialagent.spring.scheduling;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.aopalliance.intercept.MethodInvocation;
 import org.springframework.scheduling.support.ScheduledMethodRunnable;
 
 import io.opentracing.Scope;
 import io.opentracing.Span;
 import io.opentracing.Tracer;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 
@@ -58,21 +56,13 @@ public class SpringSchedulingAgentIntercept {
       return;
 
     if (thrown != null)
-      captureException(context.span, thrown);
+      ErrorRecorder.onError(context.span, thrown);
 
     context.scope.close();
     context.span.finish();
     contextHolder.remove();
   }
 
-  static void captureException(final Span span, final Throwable t) {
-    final Map<String,Object> exceptionLogs = new HashMap<>();
-    exceptionLogs.put("event", Tags.ERROR.getKey());
-    exceptionLogs.put("error.object", t);
-    span.log(exceptionLogs);
-    Tags.ERROR.set(span, true);
-  }
-
   public static Object invoke(final Object arg) {
     final MethodInvocation invocation = (MethodInvocation)arg;
     return new TracingMethodInvocation(invocation);
@@ -23,6 +23,7 @@ import org.aopalliance.intercept.MethodInvocation;
 import io.opentracing.Scope;
 import io.opentracing.Span;
 import io.opentracing.Tracer;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 
@@ -57,7 +58,7 @@ public class TracingMethodInvocation implements MethodInvocation {
       return invocation.proceed();
     }
     catch (final Exception e) {
-      SpringSchedulingAgentIntercept.captureException(span, e);
+      ErrorRecorder.onError(span, e);
       throw e;
     }
     finally {
@@ -48,7 +48,7 @@ public class SpringWebFluxChainAgentRule extends AgentRule {
   public static class Chain {
     @Advice.OnMethodEnter
     public static void enter(final @Advice.Origin String origin, @Advice.Argument(typing = Typing.DYNAMIC, readOnly = false, value = 0) Object filters) {
-      if (isEnabled(origin))
+      if (isEnabled(SpringWebFluxChainAgentRule.class, origin))
         filters = SpringWebFluxAgentIntercept.filters(filters);
     }
   }
@@ -56,7 +56,7 @@ public class SpringWebFluxChainAgentRule extends AgentRule {
   public static class FluxClient {
     @Advice.OnMethodEnter
     public static void enter(final @Advice.Origin String origin, final @Advice.This(typing = Typing.DYNAMIC) Object thiz) {
-      if (isEnabled(origin))
+      if (isEnabled(SpringWebFluxChainAgentRule.class, origin))
         SpringWebFluxAgentIntercept.client(thiz);
     }
   }
@@ -42,7 +42,7 @@ public class SpringWebRegistryAgentRule extends AgentRule {
 
   @Advice.OnMethodEnter
   public static void enter(final @Advice.Origin String origin, final @Advice.This(typing = Typing.DYNAMIC) Object thiz) {
-    if (isEnabled(origin))
+    if (isEnabled(SpringWebRegistryAgentRule.class, origin))
       SpringWebMvcAgentIntercept.getInterceptors(thiz);
   }
 }
\ No newline at end of file
@@ -16,7 +16,6 @@
 package io.opentracing.contrib.specialagent.spring.websocket;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 import org.springframework.messaging.simp.stomp.StompHeaders;
@@ -25,6 +24,7 @@ import org.springframework.messaging.support.ChannelInterceptor;
 
 import io.opentracing.Span;
 import io.opentracing.Tracer;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
 import io.opentracing.propagation.Format;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
@@ -63,13 +63,8 @@ public class SpringWebSocketAgentIntercept {
     if (span == null)
       return;
 
-    if (thrown != null) {
-      Tags.ERROR.set(span, Boolean.TRUE);
-      final HashMap<String,Object> errorLogs = new HashMap<>(2);
-      errorLogs.put("event", Tags.ERROR.getKey());
-      errorLogs.put("error.object", thrown);
-      span.log(errorLogs);
-    }
+    if (thrown != null)
+      ErrorRecorder.onError(span, thrown);
 
     span.finish();
     spanHolder.remove();
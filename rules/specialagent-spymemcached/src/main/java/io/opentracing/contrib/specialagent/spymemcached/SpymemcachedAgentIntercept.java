@@ -16,9 +16,14 @@
 package io.opentracing.contrib.specialagent.spymemcached;
 
 import java.util.Collection;
+import java.util.Iterator;
 
 import io.opentracing.Span;
 import io.opentracing.Tracer.SpanBuilder;
+import io.opentracing.contrib.specialagent.AgentRule;
+import io.opentracing.contrib.specialagent.StatementCapture.Appender;
+import io.opentracing.contrib.specialagent.StatementCapture.Encoder;
+import io.opentracing.contrib.specialagent.StatementCapture.Mode;
 import io.opentracing.tag.Tags;
 import io.opentracing.util.GlobalTracer;
 import net.spy.memcached.ops.GetOperation;
@@ -28,19 +33,47 @@ public class SpymemcachedAgentIntercept {
   private static final String DB_TYPE = "memcached";
   private static final String COMPONENT_NAME = "java-memcached";
 
+  /**
+   * Encoder of a collection of keys, which are joined with {@code ","}.
+   */
+  private static final Encoder<Collection<?>> keysEncoder = new Encoder<Collection<?>>() {
+    @Override
+    public void encode(final Collection<?> keys, final Mode mode, final Appender appender) {
+      final Iterator<?> iterator = keys.iterator();
+      for (int i = 0; iterator.hasNext() && !appender.isFull(); ++i) {
+        if (i > 0)
+          appender.append(',');
+
+        appender.append(String.valueOf(iterator.next()));
+      }
+    }
+  };
+
+  private static boolean isSampled() {
+    return GlobalTracer.get().activeSpan() != null || AgentRule.isSampled(SpymemcachedAgentRule.class);
+  }
+
   public static Object store(final Object storeType, final Object key, final Object callback) {
-    final Span span = spanBuilder(storeType.toString()).withTag("key", key.toString()).start();
+    if (!isSampled())
+      return callback;
+
+    final Span span = withKey(spanBuilder(storeType.toString()), key).start();
     return new TracingStoreOperationCallback((OperationCallback)callback, span);
   }
 
-  @SuppressWarnings("unchecked")
   public static Object get(final Object key, final Object callback) {
-    final SpanBuilder spanBuilder = spanBuilder("get");
+    if (!isSampled())
+      return callback;
 
-    if (key instanceof Collection)
-      spanBuilder.withTag("keys", String.join(",", (Collection<? extends CharSequence>)key));
-    else
-      spanBuilder.withTag("key", key.toString()).start();
+    final SpanBuilder spanBuilder = spanBuilder("get");
+    if (key instanceof Collection) {
+      final String keys = AgentRule.getStatementCapture(SpymemcachedAgentRule.class).capture((Collection<?>)key, keysEncoder);
+      if (keys != null)
+        spanBuilder.withTag("keys", keys);
+    }
+    else {
+      withKey(spanBuilder, key);
+    }
 
     final Span span = spanBuilder.start();
     return new TracingGetOperationCallback((GetOperation.Callback)callback, span);
@@ -54,37 +87,53 @@ public class SpymemcachedAgentIntercept {
       .withTag(Tags.DB_TYPE.getKey(), DB_TYPE);
   }
 
+  private static SpanBuilder withKey(final SpanBuilder spanBuilder, final Object key) {
+    final String captured = key == null ? null : AgentRule.getStatementCapture(SpymemcachedAgentRule.class).capture(key.toString());
+    return captured == null ? spanBuilder : spanBuilder.withTag("key", captured);
+  }
+
   public static Object delete(final Object key, final Object callback) {
-    final Span span = spanBuilder("delete").withTag("key", key.toString()).start();
+    if (!isSampled())
+      return callback;
+
+    final Span span = withKey(spanBuilder("delete"), key).start();
     return new TracingDeleteOperationCallback((OperationCallback)callback, span);
   }
 
   public static void exception(final Throwable thrown, final Object callback) {
-    final TracingOperationCallback tracingOperationCallback = (TracingOperationCallback)callback;
-    tracingOperationCallback.onError(thrown);
+    if (callback instanceof TracingOperationCallback)
+      ((TracingOperationCallback)callback).onError(thrown);
   }
 
   public static Object getAndTouch(final Object key, final Object callback) {
-    final Span span = spanBuilder("getAndTouch").withTag("key", key.toString()).start();
+    if (!isSampled())
+      return callback;
+
+    final Span span = withKey(spanBuilder("getAndTouch"), key).start();
     return new TracingGetAndTouchOperationCallback((OperationCallback)callback, span);
   }
 
   public static Object gets(final Object key, final Object callback) {
-    final Span span = spanBuilder("gets").withTag("key", key.toString()).start();
+    if (!isSampled())
+      return callback;
+
+    final Span span = withKey(spanBuilder("gets"), key).start();
     return new TracingGetsOperationCallback((OperationCallback)callback, span);
   }
 
   public static Object tracingCallback(final String operation, final Object key, final Object callback) {
-    final SpanBuilder spanBuilder = spanBuilder(operation);
-    if (key != null)
-      spanBuilder.withTag("key", key.toString());
+    if (!isSampled())
+      return callback;
 
-    final Span span = spanBuilder.start();
+    final Span span = withKey(spanBuilder(operation), key).start();
     return new TracingOperationCallback((OperationCallback)callback, span);
   }
 
   public static Object cas(final Object key, final Object callback) {
-    final Span span = spanBuilder("cas").withTag("key", key.toString()).start();
+    if (!isSampled())
+      return callback;
+
+    final Span span = withKey(spanBuilder("cas"), key).start();
     return new TracingStoreOperationCallback((OperationCallback)callback, span);
   }
 }
\ No newline at end of file
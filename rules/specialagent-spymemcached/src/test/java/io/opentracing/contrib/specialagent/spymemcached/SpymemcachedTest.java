@@ -18,16 +18,25 @@ package io.opentracing.contrib.specialagent.spymemcached;
 import static junit.framework.TestCase.*;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import io.opentracing.contrib.specialagent.AgentRunner;
+import io.opentracing.mock.MockSpan;
 import io.opentracing.mock.MockTracer;
 import net.spy.memcached.MemcachedClient;
 
 @RunWith(AgentRunner.class)
 public class SpymemcachedTest {
+  @Before
+  public void before(final MockTracer tracer) {
+    tracer.reset();
+  }
+
   @Test
   public void test(final MockTracer tracer) throws Exception {
     final MemcachedClient client = new MemcachedClient(new InetSocketAddress("localhost", 11211));
@@ -44,6 +53,26 @@ public class SpymemcachedTest {
     catch (final Exception ignore) {
     }
 
-    assertEquals(2, tracer.finishedSpans().size());
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(2, spans.size());
+    for (final MockSpan span : spans)
+      assertEquals("key", span.tags().get("key"));
+  }
+
+  @Test
+  public void testBulk(final MockTracer tracer) throws Exception {
+    final MemcachedClient client = new MemcachedClient(new InetSocketAddress("localhost", 11211));
+    final List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 1000; ++i)
+      keys.add("key-" + i);
+
+    client.asyncGetBulk(keys).cancel(true);
+
+    final List<MockSpan> spans = tracer.finishedSpans();
+    assertEquals(1, spans.size());
+    final String captured = (String)spans.get(0).tags().get("keys");
+    assertEquals(1024 + 3, captured.length());
+    assertTrue(captured.startsWith("key-0,key-1,"));
+    assertTrue(captured.endsWith("..."));
   }
 }
\ No newline at end of file
@@ -32,7 +32,7 @@ public class ThriftAgentRule extends AgentRule {
   @Override
   public Iterable<? extends AgentBuilder> buildAgent(final AgentBuilder builder) {
     return Arrays.asList(builder
-      .type(hasSuperType(named("org.apache.thrift.async.AsyncMethodCallback")))
+      .type(hasSuperType(named("org.apache.thrift.async.AsyncMethodCallback")).and(not(named("io.opentracing.contrib.specialagent.thrift.ThriftProtocolFactoryAgentIntercept$SpanHolderCallback"))))
       .transform(new Transformer() {
         @Override
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
@@ -43,6 +43,27 @@ public class ThriftAgentRule extends AgentRule {
         public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
           return builder.visit(Advice.to(AsyncMethodCallback.OnError.class).on(named("onError")));
         }})
+      .type(named("org.apache.thrift.async.TAsyncMethodCall"))
+      .transform(new Transformer() {
+        @Override
+        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
+          return builder.visit(Advice.to(AsyncMethodCall.Constructor.class).on(isConstructor().and(takesArgument(3, named("org.apache.thrift.async.AsyncMethodCallback")))));
+        }})
+      .transform(new Transformer() {
+        @Override
+        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
+          return builder.visit(Advice.to(AsyncMethodCall.PrepareMethodCall.class).on(named("prepareMethodCall")));
+        }})
+      .transform(new Transformer() {
+        @Override
+        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
+          return builder.visit(Advice.to(AsyncMethodCall.CleanUpAndFireCallback.class).on(named("cleanUpAndFireCallback")));
+        }})
+      .transform(new Transformer() {
+        @Override
+        public Builder<?> transform(final Builder<?> builder, final TypeDescription typeDescription, final ClassLoader classLoader, final JavaModule module) {
+          return builder.visit(Advice.to(AsyncMethodCall.OnError.class).on(named("onError").and(takesArguments(1))));
+        }})
       .type(named("org.apache.thrift.TProcessorFactory"))
       .transform(new Transformer() {
         @Override
@@ -61,7 +82,7 @@ public class ThriftAgentRule extends AgentRule {
     public static class OnComplete {
       @Advice.OnMethodExit
       public static void exit(final @Advice.Origin String origin) {
-        if (isEnabled(origin))
+        if (isEnabled(ThriftAgentRule.class, origin))
           ThriftAgentIntercept.onComplete();
       }
     }
@@ -69,16 +90,56 @@ public class ThriftAgentRule extends AgentRule {
     public static class OnError {
       @Advice.OnMethodExit
       public static void exit(final @Advice.Origin String origin, final @Advice.Argument(value = 0) Object exception) {
-        if (isEnabled(origin))
+        if (isEnabled(ThriftAgentRule.class, origin))
           ThriftAgentIntercept.onError(exception);
       }
     }
   }
 
+  public static class AsyncMethodCall {
+    public static class Constructor {
+      @Advice.OnMethodEnter
+      public static void enter(final @Advice.Origin String origin, @Advice.Argument(value = 3, readOnly = false, typing = Typing.DYNAMIC) Object callback) {
+        if (isEnabled(ThriftAgentRule.class, origin))
+          callback = ThriftProtocolFactoryAgentIntercept.wrapCallback(callback);
+      }
+    }
+
+    public static class PrepareMethodCall {
+      @Advice.OnMethodEnter
+      public static void enter(final @Advice.Origin String origin, final @Advice.FieldValue(value = "callback", typing = Typing.DYNAMIC) Object callback) {
+        if (isEnabled(ThriftAgentRule.class, origin))
+          ThriftProtocolFactoryAgentIntercept.onPrepareMethodCall(callback);
+      }
+
+      @Advice.OnMethodExit(onThrowable = Throwable.class)
+      public static void exit(final @Advice.Origin String origin, final @Advice.FieldValue(value = "callback", typing = Typing.DYNAMIC) Object callback, final @Advice.Thrown(typing = Typing.DYNAMIC) Throwable thrown) {
+        if (isEnabled(ThriftAgentRule.class, origin))
+          ThriftProtocolFactoryAgentIntercept.onPreparedMethodCall(callback, thrown);
+      }
+    }
+
+    public static class CleanUpAndFireCallback {
+      @Advice.OnMethodEnter
+      public static void enter(final @Advice.Origin String origin, final @Advice.FieldValue(value = "callback", typing = Typing.DYNAMIC) Object callback) {
+        if (isEnabled(ThriftAgentRule.class, origin))
+          ThriftProtocolFactoryAgentIntercept.onFireCallback(callback);
+      }
+    }
+
+    public static class OnError {
+      @Advice.OnMethodEnter
+      public static void enter(final @Advice.Origin String origin, final @Advice.FieldValue(value = "callback", typing = Typing.DYNAMIC) Object callback, final @Advice.Argument(value = 0) Object exception) {
+        if (isEnabled(ThriftAgentRule.class, origin))
+          ThriftProtocolFactoryAgentIntercept.onError(callback, exception);
+      }
+    }
+  }
+
   public static class Processor {
     @Advice.OnMethodExit
     public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
+      if (isEnabled(ThriftAgentRule.class, origin))
         returned = ThriftAgentIntercept.getProcessor(returned);
     }
   }
@@ -86,7 +147,7 @@ public class ThriftAgentRule extends AgentRule {
   public static class ProtocolFactory {
     @Advice.OnMethodExit
     public static void exit(final @Advice.Origin String origin, @Advice.Return(readOnly = false, typing = Typing.DYNAMIC) Object returned) {
-      if (isEnabled(origin))
+      if (isEnabled(ThriftAgentRule.class, origin))
         returned = ThriftProtocolFactoryAgentIntercept.exit(returned);
     }
   }
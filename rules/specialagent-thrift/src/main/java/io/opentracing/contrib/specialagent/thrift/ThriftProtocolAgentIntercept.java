@@ -15,9 +15,7 @@
 
 package io.opentracing.contrib.specialagent.thrift;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Arrays;
 
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TField;
@@ -29,8 +27,9 @@ import org.apache.thrift.protocol.TProtocolDecorator;
 import org.apache.thrift.protocol.TType;
 
 import io.opentracing.Span;
+import io.opentracing.contrib.specialagent.CallerMatcher;
 import io.opentracing.propagation.Format.Builtin;
-import io.opentracing.propagation.TextMapAdapter;
+import io.opentracing.propagation.TextMapInject;
 import io.opentracing.tag.Tags;
 import io.opentracing.thrift.ClientSpanDecorator;
 import io.opentracing.thrift.DefaultClientSpanDecorator;
@@ -38,89 +37,133 @@ import io.opentracing.util.GlobalTracer;
 
 public class ThriftProtocolAgentIntercept {
   private static final short SPAN_FIELD_ID = 3333; // Magic number
+  private static final TField SPAN_FIELD = new TField("span", TType.MAP, SPAN_FIELD_ID);
+  private static final TMap[] SPAN_MAPS = new TMap[8];
   private static final ClientSpanDecorator spanDecorator = new DefaultClientSpanDecorator();
-  private static final ThreadLocal<Span> spanHolder = new ThreadLocal<>();
-  private static final ThreadLocal<Boolean> oneWay = new ThreadLocal<Boolean>() {
+  private static final CallerMatcher protocolDecorator = CallerMatcher.type("org.apache.thrift.protocol.TProtocolDecorator").within(0, 5);
+  private static final ThreadLocal<Context> context = new ThreadLocal<Context>() {
     @Override
-    protected Boolean initialValue() {
-      return Boolean.FALSE;
+    protected Context initialValue() {
+      return new Context();
     }
   };
-  private static ThreadLocal<Boolean> injected = new ThreadLocal<Boolean>() {
+
+  static {
+    for (int i = 0; i < SPAN_MAPS.length; ++i)
+      SPAN_MAPS[i] = new TMap(TType.STRING, TType.STRING, i);
+  }
+
+  /**
+   * The state of the message that is written by a thread, which is reused for
+   * all messages of the thread. The {@code Context} is also the carrier into
+   * which the span context is injected, of which the entries are kept until
+   * they are written to the protocol.
+   */
+  static final class Context implements TextMapInject {
+    private Span span;
+    private boolean oneWay;
+    private boolean injected;
+    private String[] entries = new String[8];
+    private int size;
+
+    private void reset(final Span span, final boolean oneWay) {
+      this.span = span;
+      this.oneWay = oneWay;
+      this.injected = false;
+    }
+
+    private void finish() {
+      span.finish();
+      span = null;
+    }
+
     @Override
-    protected Boolean initialValue() {
-      return Boolean.FALSE;
+    public void put(final String key, final String value) {
+      if (size + 2 > entries.length)
+        entries = Arrays.copyOf(entries, entries.length * 2);
+
+      entries[size++] = key;
+      entries[size++] = value;
     }
-  };
+
+    /**
+     * Writes the span context that was injected into this {@code Context} to
+     * the specified protocol, as a map field with id {@code 3333}.
+     *
+     * @param protocol The protocol.
+     * @throws TException If an error occurs writing to the protocol.
+     */
+    private void write(final TProtocol protocol) throws TException {
+      try {
+        final int count = size / 2;
+        protocol.writeFieldBegin(SPAN_FIELD);
+        protocol.writeMapBegin(count < SPAN_MAPS.length ? SPAN_MAPS[count] : new TMap(TType.STRING, TType.STRING, count));
+        for (int i = 0; i < size; ++i)
+          protocol.writeString(entries[i]);
+
+        protocol.writeMapEnd();
+        protocol.writeFieldEnd();
+      }
+      finally {
+        clear();
+      }
+    }
+
+    private void clear() {
+      Arrays.fill(entries, 0, size, null);
+      size = 0;
+    }
+  }
 
   public static void writeMessageBegin(final Object thiz, final Object message) {
-    if (thiz instanceof TProtocolDecorator || ThriftProtocolFactoryAgentIntercept.callerHasClass("org.apache.thrift.protocol.TProtocolDecorator", 5))
+    if (thiz instanceof TProtocolDecorator || protocolDecorator.matches())
       return;
 
     final TMessage tMessage = (TMessage)message;
     final Span span = GlobalTracer.get().buildSpan(tMessage.name).withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT).start();
-    spanHolder.set(span);
-
-    oneWay.set(tMessage.type == TMessageType.ONEWAY);
-    injected.set(false);
-
+    context.get().reset(span, tMessage.type == TMessageType.ONEWAY);
     spanDecorator.decorate(span, tMessage);
   }
 
   public static void writeMessageEnd() {
-    final Span span = spanHolder.get();
-    if (span != null && oneWay.get()) {
-      span.finish();
-      spanHolder.remove();
-      oneWay.remove();
-      injected.remove();
-    }
+    final Context context = ThriftProtocolAgentIntercept.context.get();
+    if (context.span != null && context.oneWay)
+      context.finish();
   }
 
   public static void writeFieldStop(final Object protocol) throws TException {
-    if (injected.get())
+    final Context context = ThriftProtocolAgentIntercept.context.get();
+    if (context.span == null || context.injected)
       return;
 
-    final TProtocol tProtocol = (TProtocol)protocol;
-    final Span span = spanHolder.get();
-    if (span == null)
-      return;
-
-    final Map<String,String> map = new HashMap<>();
-    GlobalTracer.get().inject(span.context(), Builtin.TEXT_MAP, new TextMapAdapter(map));
-
-    tProtocol.writeFieldBegin(new TField("span", TType.MAP, SPAN_FIELD_ID));
-    tProtocol.writeMapBegin(new TMap(TType.STRING, TType.STRING, map.size()));
-    for (final Entry<String,String> entry : map.entrySet()) {
-      tProtocol.writeString(entry.getKey());
-      tProtocol.writeString(entry.getValue());
+    // The span context is written directly from the entries of the Context,
+    // without an intermediate Map
+    try {
+      GlobalTracer.get().inject(context.span.context(), Builtin.TEXT_MAP_INJECT, context);
+    }
+    catch (final RuntimeException e) {
+      // Entries that were put before the failure must not leak into the next
+      // message of the thread
+      context.clear();
+      throw e;
     }
 
-    tProtocol.writeMapEnd();
-    tProtocol.writeFieldEnd();
-    injected.set(true);
+    context.write((TProtocol)protocol);
+    context.injected = true;
   }
 
   public static void readMessageBegin(final Throwable t) {
-    final Span span = spanHolder.get();
-    if (span == null)
+    final Context context = ThriftProtocolAgentIntercept.context.get();
+    if (context.span == null)
       return;
 
-    spanDecorator.onError(t, span);
-    span.finish();
-    spanHolder.remove();
-    oneWay.remove();
-    injected.remove();
+    spanDecorator.onError(t, context.span);
+    context.finish();
   }
 
   public static void readMessageEnd() {
-    final Span span = spanHolder.get();
-    if (span == null)
-      return;
-
-    span.finish();
-    spanHolder.remove();
-    oneWay.remove();
-    injected.remove();
+    final Context context = ThriftProtocolAgentIntercept.context.get();
+    if (context.span != null)
+      context.finish();
   }
-}
\ No newline at end of file
+}
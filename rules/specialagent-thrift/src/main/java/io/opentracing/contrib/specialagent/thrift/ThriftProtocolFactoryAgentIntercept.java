@@ -15,50 +15,120 @@
 
 package io.opentracing.contrib.specialagent.thrift;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.thrift.async.AsyncMethodCallback;
 import org.apache.thrift.protocol.TProtocol;
 
-import io.opentracing.Tracer;
+import io.opentracing.Span;
+import io.opentracing.thrift.ClientSpanDecorator;
+import io.opentracing.thrift.DefaultClientSpanDecorator;
 import io.opentracing.thrift.SpanHolder;
 import io.opentracing.thrift.SpanProtocol;
 import io.opentracing.util.GlobalTracer;
 
+/**
+ * Intercept of the async client calls, which correlates the span of a call
+ * with its {@code TAsyncMethodCall}: The span is created by the
+ * {@link SpanProtocol} of the request, which is written by
+ * {@code TAsyncMethodCall.prepareMethodCall()} on the caller thread, and the
+ * span is activated on the selector thread while
+ * {@code TAsyncMethodCall.cleanUpAndFireCallback(SelectionKey)} reads the
+ * response and calls the {@code AsyncMethodCallback}.
+ * <p>
+ * The {@link SpanHolder} of a call is carried by the callback of the call,
+ * which is wrapped in a {@link SpanHolderCallback} when the call is
+ * constructed, so that calls share no structure (and no lock) to correlate
+ * their spans.
+ */
 public class ThriftProtocolFactoryAgentIntercept {
-  private static final ConcurrentLinkedQueue<SpanHolder> spanHolders = new ConcurrentLinkedQueue<>();
+  private static final ClientSpanDecorator spanDecorator = new DefaultClientSpanDecorator();
+  private static final ThreadLocal<SpanHolder> preparing = new ThreadLocal<>();
 
-  public static Object exit(final Object protocol) {
-    if (!callerHasClass("org.apache.thrift.async.TAsyncMethodCall", 5))
-      return protocol;
-
-    final Tracer tracer = GlobalTracer.get();
-    final SpanHolder spanHolder;
-    if (Thread.currentThread().getName().startsWith("TAsyncClientManager#SelectorThread")) {
-      spanHolder = spanHolders.poll();
-      if (spanHolder != null) {
-        tracer.scopeManager().activate(spanHolder.getSpan(), true);
-      }
+  /**
+   * The callback of a {@code TAsyncMethodCall}, which carries the
+   * {@link SpanHolder} of the call, and delegates to the callback of the
+   * caller. The span holder is taken once, by whichever of the callback or
+   * the error of the call comes first.
+   */
+  public static final class SpanHolderCallback implements AsyncMethodCallback<Object> {
+    private final AsyncMethodCallback<Object> callback;
+    private final AtomicReference<SpanHolder> spanHolder = new AtomicReference<>(new SpanHolder());
+
+    SpanHolderCallback(final AsyncMethodCallback<Object> callback) {
+      this.callback = callback;
     }
-    else {
-      spanHolder = new SpanHolder();
-      spanHolders.add(spanHolder);
+
+    SpanHolder getSpanHolder() {
+      return spanHolder.get();
     }
 
-    return new SpanProtocol((TProtocol)protocol, tracer, spanHolder, false);
-  }
+    SpanHolder takeSpanHolder() {
+      return spanHolder.getAndSet(null);
+    }
 
-  // FIXME: Look at AgentRuleUtil#callerEquals
-  static boolean callerHasClass(final String className, final int frameMaxIndex) {
-    final StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
-    final int limit = frameMaxIndex + 2;
-    for (int i = 2; i < limit; ++i) {
-      if (stackTraceElements.length < i)
-        return false;
+    @Override
+    public void onComplete(final Object response) {
+      callback.onComplete(response);
+    }
 
-      if (stackTraceElements[i].getClassName().equals(className))
-        return true;
+    @Override
+    public void onError(final Exception exception) {
+      callback.onError(exception);
     }
+  }
+
+  @SuppressWarnings("unchecked")
+  public static Object wrapCallback(final Object callback) {
+    return callback == null || callback instanceof SpanHolderCallback ? callback : new SpanHolderCallback((AsyncMethodCallback<Object>)callback);
+  }
+
+  public static void onPrepareMethodCall(final Object callback) {
+    if (callback instanceof SpanHolderCallback)
+      preparing.set(((SpanHolderCallback)callback).getSpanHolder());
+  }
 
-    return false;
+  public static void onPreparedMethodCall(final Object callback, final Throwable thrown) {
+    preparing.remove();
+    if (thrown != null)
+      onError(callback, thrown);
+  }
+
+  public static Object exit(final Object protocol) {
+    final SpanHolder spanHolder = preparing.get();
+    return spanHolder == null ? protocol : new SpanProtocol((TProtocol)protocol, GlobalTracer.get(), spanHolder, false);
+  }
+
+  @SuppressWarnings("deprecation")
+  public static void onFireCallback(final Object callback) {
+    if (!(callback instanceof SpanHolderCallback))
+      return;
+
+    final SpanHolder spanHolder = ((SpanHolderCallback)callback).takeSpanHolder();
+    if (spanHolder != null && spanHolder.getSpan() != null)
+      GlobalTracer.get().scopeManager().activate(spanHolder.getSpan(), true);
+  }
+
+  /**
+   * Finishes the span of the call of the specified callback with the
+   * specified error, unless the span was already activated to be finished by
+   * the callback.
+   *
+   * @param callback The callback of the {@code TAsyncMethodCall}.
+   * @param exception The error.
+   */
+  public static void onError(final Object callback, final Object exception) {
+    if (!(callback instanceof SpanHolderCallback))
+      return;
+
+    final SpanHolder spanHolder = ((SpanHolderCallback)callback).takeSpanHolder();
+    if (spanHolder == null)
+      return;
+
+    final Span span = spanHolder.getSpan();
+    if (span != null) {
+      spanDecorator.onError((Throwable)exception, span);
+      span.finish();
+    }
   }
-}
\ No newline at end of file
+}
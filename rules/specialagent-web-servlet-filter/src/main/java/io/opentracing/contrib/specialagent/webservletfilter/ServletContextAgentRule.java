@@ -54,7 +54,7 @@ public class ServletContextAgentRule extends AgentRule {
   public static class Jetty {
     @Advice.OnMethodExit
     public static void exit(final @Advice.Origin String origin, final @Advice.This Object thiz) {
-      if (isEnabled(origin))
+      if (isEnabled(ServletContextAgentRule.class, origin))
         JettyAgentIntercept.exit(thiz);
     }
   }
@@ -62,7 +62,7 @@ public class ServletContextAgentRule extends AgentRule {
   public static class ServletContext {
     @Advice.OnMethodExit
     public static void exit(final @Advice.Origin String origin, final @Advice.This Object thiz) {
-      if (isEnabled(origin))
+      if (isEnabled(ServletContextAgentRule.class, origin))
         ServletContextAgentIntercept.exit(thiz);
     }
   }
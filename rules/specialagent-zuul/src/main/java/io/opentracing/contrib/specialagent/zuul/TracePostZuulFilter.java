@@ -19,9 +19,8 @@ import com.netflix.zuul.ZuulFilter;
 import com.netflix.zuul.context.RequestContext;
 import io.opentracing.Scope;
 import io.opentracing.Span;
+import io.opentracing.contrib.specialagent.ErrorRecorder;
 import io.opentracing.tag.Tags;
-import java.util.HashMap;
-import java.util.Map;
 
 public class TracePostZuulFilter extends ZuulFilter {
   private static final String ROUTE_HOST_TAG = "route.host";
@@ -50,12 +49,12 @@ public class TracePostZuulFilter extends ZuulFilter {
       final Span span = (Span) spanObject;
       span.setTag(Tags.HTTP_STATUS.getKey(), context.getResponseStatusCode());
       if (context.getThrowable() != null) {
-        onError(context.getThrowable(), span);
+        ErrorRecorder.onError(span, context.getThrowable());
       }
       else {
         final Object error = context.get("error.exception");
         if (error instanceof Exception)
-          onError((Exception)error, span);
+          ErrorRecorder.onError(span, (Exception)error);
       }
 
       if (context.getRouteHost() != null)
@@ -70,17 +69,4 @@ public class TracePostZuulFilter extends ZuulFilter {
 
     return null;
   }
-
-  private static void onError(final Throwable t, final Span span) {
-    Tags.ERROR.set(span, Boolean.TRUE);
-    if (t != null)
-      span.log(errorLogs(t));
-  }
-
-  private static Map<String,Object> errorLogs(final Throwable t) {
-    final Map<String,Object> errorLogs = new HashMap<>(2);
-    errorLogs.put("event", Tags.ERROR.getKey());
-    errorLogs.put("error.object", t);
-    return errorLogs;
-  }
 }
\ No newline at end of file